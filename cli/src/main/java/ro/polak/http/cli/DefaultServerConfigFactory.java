@@ -36,6 +36,9 @@ import ro.polak.http.configuration.DeploymentDescriptorBuilder;
 import ro.polak.http.configuration.impl.ServerConfigImpl;
 import ro.polak.http.protocol.parser.impl.RangeParser;
 import ro.polak.http.protocol.serializer.impl.RangePartHeaderSerializer;
+import ro.polak.http.resource.cache.FileMetadataCache;
+import ro.polak.http.resource.cache.MappedFileStore;
+import ro.polak.http.resource.cache.StaticContentCache;
 import ro.polak.http.resource.provider.ResourceProvider;
 import ro.polak.http.resource.provider.impl.FileResourceProvider;
 import ro.polak.http.resource.provider.impl.ServletResourceProvider;
@@ -212,9 +215,28 @@ public class DefaultServerConfigFactory implements ServerConfigFactory {
     }
 
     private FileResourceProvider getFileResourceProvider(ServerConfig serverConfig) {
+        StaticContentCache staticContentCache = null;
+        if (serverConfig.getStaticCacheMaxSize() > 0) {
+            staticContentCache = new StaticContentCache(serverConfig.getStaticCacheMaxSize(),
+                    serverConfig.getStaticCacheMaxEntrySize());
+            staticContentCache.watch(new File(serverConfig.getDocumentRootPath()));
+        }
+
+        MappedFileStore mappedFileStore = null;
+        if (serverConfig.getStaticMappedMaxSize() > 0) {
+            mappedFileStore = new MappedFileStore(serverConfig.getStaticMappedMaxSize(),
+                    serverConfig.getStaticMappedMinFileSize());
+        }
+
+        FileMetadataCache fileMetadataCache = null;
+        if (serverConfig.getStaticMetadataTtl() > 0) {
+            fileMetadataCache = new FileMetadataCache(serverConfig.getStaticMetadataTtl(),
+                    serverConfig.getStaticMetadataMaxEntries());
+        }
+
         return new FileResourceProvider(new RangeParser(), new RangeHelper(),
                 new RangePartHeaderSerializer(), serverConfig.getMimeTypeMapping(),
-                serverConfig.getDocumentRootPath());
+                serverConfig.getDocumentRootPath(), staticContentCache, mappedFileStore, fileMetadataCache);
     }
 
     private ServletResourceProvider getServletResourceProvider(ServerConfig serverConfig) {
@@ -7,12 +7,22 @@
 
 package ro.polak.http;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 
 /**
  * HTTP headers representation
+ * <p/>
+ * The well-known headers are stored in fixed slots addressed by a perfect hash of the case folded
+ * name, looking them up takes constant time and allocates nothing. Any other header is stored in
+ * a case insensitive map. A header can have multiple values, the names are iterated in the order
+ * they were first set.
  *
  * @author Piotr Polak piotr [at] polak [dot] ro
  * @url https://tools.ietf.org/html/rfc2616#section-4.2
@@ -37,28 +47,120 @@ public class Headers {
     public static final String HEADER_RANGE = "Range";
     public static final String HEADER_ACCEPT_RANGES = "Accept-Ranges";
     public static final String HEADER_CONTENT_RANGE = "Content-Range";
+    public static final String HEADER_ACCEPT = "Accept";
+    public static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    public static final String HEADER_AUTHORIZATION = "Authorization";
+    public static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+    public static final String HEADER_DATE = "Date";
+    public static final String HEADER_ETAG = "ETag";
+    public static final String HEADER_EXPECT = "Expect";
+    public static final String HEADER_EXPIRES = "Expires";
+    public static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+    public static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    public static final String HEADER_IF_RANGE = "If-Range";
+    public static final String HEADER_KEEP_ALIVE = "Keep-Alive";
+    public static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    public static final String HEADER_REFERER = "Referer";
+    public static final String HEADER_USER_AGENT = "User-Agent";
+
+    private static final String[] WELL_KNOWN_HEADERS = {
+            HEADER_ALLOW, HEADER_SERVER, HEADER_CONTENT_DISPOSITION, HEADER_LOCATION, HEADER_CONTENT_LENGTH,
+            HEADER_CONTENT_TYPE, HEADER_CONNECTION, HEADER_SET_COOKIE, HEADER_CACHE_CONTROL,
+            HEADER_ACCEPT_LANGUAGE, HEADER_PRAGMA, HEADER_COOKIE, HEADER_TRANSFER_ENCODING, HEADER_HOST,
+            HEADER_RANGE, HEADER_ACCEPT_RANGES, HEADER_CONTENT_RANGE, HEADER_ACCEPT, HEADER_ACCEPT_ENCODING,
+            HEADER_AUTHORIZATION, HEADER_CONTENT_ENCODING, HEADER_DATE, HEADER_ETAG, HEADER_EXPECT,
+            HEADER_EXPIRES, HEADER_IF_MODIFIED_SINCE, HEADER_IF_NONE_MATCH, HEADER_IF_RANGE,
+            HEADER_KEEP_ALIVE, HEADER_LAST_MODIFIED, HEADER_REFERER, HEADER_USER_AGENT
+    };
+
+    private static final int SLOT_BITS = 6;
+    private static final int NUMBER_OF_SLOTS = 1 << SLOT_BITS;
+    private static final String[] SLOT_NAMES = new String[NUMBER_OF_SLOTS];
+    private static final int MAX_MULTIPLIER_ATTEMPTS = 1 << 16;
+    private static final int HASH_MULTIPLIER;
 
-    // TreeMap is used to obtain case insensitive map
-    private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    static {
+        // Finds a multiplier mapping every well-known name to a distinct slot, computed once per class load
+        int multiplier = 0x9E3779B1;
+        int attempts = 1;
+        while (!assignSlots(multiplier)) {
+            if (++attempts > MAX_MULTIPLIER_ATTEMPTS) {
+                throw new ExceptionInInitializerError("Unable to assign distinct slots to "
+                        + WELL_KNOWN_HEADERS.length + " well-known headers, increase SLOT_BITS");
+            }
+            multiplier += 2;
+        }
+        HASH_MULTIPLIER = multiplier;
+    }
+
+    private final Entry[] slots = new Entry[NUMBER_OF_SLOTS];
+    private final List<Entry> entries = new ArrayList<>();
+    private Map<String, Entry> otherHeaders;
 
     /**
-     * Sets a header.
+     * Sets a header, replacing all of its previous values.
      *
      * @param name  header name
      * @param value header value
      */
     public void setHeader(String name, String value) {
-        headers.put(name, value);
+        Entry entry = getEntry(name);
+        if (entry == null) {
+            putEntry(new Entry(name, value));
+        } else {
+            entry.value = value;
+            entry.additionalValues = null;
+        }
+    }
+
+    /**
+     * Adds a header value, preserving the previous values of the header.
+     *
+     * @param name  header name
+     * @param value header value
+     */
+    public void addHeader(String name, String value) {
+        Entry entry = getEntry(name);
+        if (entry == null) {
+            putEntry(new Entry(name, value));
+        } else {
+            if (entry.additionalValues == null) {
+                entry.additionalValues = new ArrayList<>(2);
+            }
+            entry.additionalValues.add(value);
+        }
     }
 
     /**
      * Returns header's value
      *
      * @param name name of the header
-     * @return header's value
+     * @return header's first value
      */
     public String getHeader(String name) {
-        return headers.get(name);
+        Entry entry = getEntry(name);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Returns all the values of the header.
+     *
+     * @param name name of the header
+     * @return values in the order they were added, an empty list for an inexistent header
+     */
+    public List<String> getHeaderValues(String name) {
+        Entry entry = getEntry(name);
+        if (entry == null) {
+            return Collections.emptyList();
+        }
+        if (entry.additionalValues == null) {
+            return Collections.singletonList(entry.value);
+        }
+
+        List<String> values = new ArrayList<>(entry.additionalValues.size() + 1);
+        values.add(entry.value);
+        values.addAll(entry.additionalValues);
+        return values;
     }
 
     /**
@@ -67,7 +169,11 @@ public class Headers {
      * @return
      */
     public Set<String> keySet() {
-        return headers.keySet();
+        Set<String> names = new LinkedHashSet<>();
+        for (Entry entry : entries) {
+            names.add(entry.name);
+        }
+        return names;
     }
 
     /**
@@ -77,6 +183,85 @@ public class Headers {
      * @return
      */
     public boolean containsHeader(String name) {
-        return headers.containsKey(name);
+        return getEntry(name) != null;
+    }
+
+    private Entry getEntry(String name) {
+        int slot = getSlot(name);
+        if (slot != -1) {
+            return slots[slot];
+        }
+        return otherHeaders == null ? null : otherHeaders.get(name);
+    }
+
+    private void putEntry(Entry entry) {
+        int slot = getSlot(entry.name);
+        if (slot != -1) {
+            slots[slot] = entry;
+        } else {
+            if (otherHeaders == null) {
+                otherHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            }
+            otherHeaders.put(entry.name, entry);
+        }
+        entries.add(entry);
+    }
+
+    /**
+     * Returns the slot of a well-known header.
+     *
+     * @param name
+     * @return the slot or -1 for any other header
+     */
+    private static int getSlot(String name) {
+        int slot = getSlot(hash(name), HASH_MULTIPLIER);
+        String slotName = SLOT_NAMES[slot];
+        if (slotName != null && (slotName == name || slotName.equalsIgnoreCase(name))) {
+            return slot;
+        }
+        return -1;
+    }
+
+    private static int getSlot(int hash, int multiplier) {
+        return (hash * multiplier) >>> (Integer.SIZE - SLOT_BITS);
+    }
+
+    private static int hash(String name) {
+        int hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            hash = 31 * hash + c;
+        }
+        return hash;
+    }
+
+    private static boolean assignSlots(int multiplier) {
+        Arrays.fill(SLOT_NAMES, null);
+        for (String name : WELL_KNOWN_HEADERS) {
+            int slot = getSlot(hash(name), multiplier);
+            if (SLOT_NAMES[slot] != null) {
+                return false;
+            }
+            SLOT_NAMES[slot] = name;
+        }
+        return true;
+    }
+
+    /**
+     * Header name and its values.
+     */
+    private static class Entry {
+
+        private final String name;
+        private String value;
+        private List<String> additionalValues;
+
+        Entry(final String name, final String value) {
+            this.name = name;
+            this.value = value;
+        }
     }
 }
@@ -0,0 +1,29 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http;
+
+import java.net.Socket;
+
+/**
+ * Takes over persistent connections that have no pending requests so that they do not occupy
+ * a worker thread while idle.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public interface IdleConnectionHandler {
+
+    /**
+     * Takes over an idle persistent connection.
+     *
+     * @param socket         the socket of the connection, all the buffered output has been flushed
+     * @param requestsServed the number of requests served over the connection so far
+     * @return false when the connection can not be taken over and should be closed
+     */
+    boolean takeOver(Socket socket, int requestsServed);
+}
@@ -7,25 +7,39 @@
 
 package ro.polak.http;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import ro.polak.http.exception.protocol.PayloadTooLargeProtocolException;
 import ro.polak.http.protocol.parser.MalformedInputException;
 import ro.polak.http.protocol.parser.Parser;
+import ro.polak.http.servlet.Part;
+import ro.polak.http.servlet.PartIterator;
 import ro.polak.http.servlet.UploadedFile;
 import ro.polak.http.utilities.IOUtilities;
 import ro.polak.http.utilities.StringUtilities;
 
 /**
  * Multipart request handler
+ * <p/>
+ * The body is read in chunks of the buffer length. The delimiters are searched within the buffer
+ * using the Boyer-Moore-Horspool algorithm, the bytes preceding a delimiter are passed to the part
+ * destination in contiguous slices. A delimiter split across two reads is found because the bytes
+ * that could start it are kept in the buffer until more data arrives.
+ * <p/>
+ * The body is either handled at once, the files being saved in the temporary uploads directory,
+ * or streamed part by part using {@link #getPartIterator()}.
  *
  * @author Piotr Polak piotr [at] polak [dot] ro
  * @link http://www.w3.org/Protocols/rfc1341/7_2_Multipart.html
@@ -33,55 +47,83 @@ import ro.polak.http.utilities.StringUtilities;
  */
 public class MultipartRequestHandler {
 
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
     private static final String NEW_LINE = "\r\n";
     private static final String BOUNDARY_BEGIN_MARK = "--";
     private static final String HEADERS_DELIMINATOR = NEW_LINE + NEW_LINE;
 
     private final InputStream in;
     private final Parser<MultipartHeadersPart> multipartHeadersPartParser;
-    private final int expectedPostLength;
-    private final int bufferLength;
+    private final long expectedPostLength;
     private final String temporaryUploadsDirectory;
+    private final int memoryThreshold;
+    private final UploadMemoryBudget memoryBudget;
     private final Map<String, String> post;
-
-    private File currentFile;
-    private FileOutputStream fileOutputStream;
-    private int allBytesRead = 0;
-    private StringBuilder headersStringBuffered;
-    private StringBuilder valueStringBuffered;
-    private String endBoundary;
-    private String beginBoundary;
-    private MultipartHeadersPart multipartHeadersPart;
+    private final Delimiter beginBoundary;
+    private final Delimiter endBoundary;
+    private final Delimiter headersDelimiter;
+    private final byte[] buffer;
+
+    private int position = 0;
+    private int limit = 0;
+    private boolean isEndOfStream = false;
+    private long allBytesRead = 0;
     private Collection<UploadedFile> uploadedFiles;
 
     private boolean wasHandledBefore;
 
     /**
-     * Constructor.
-     *  @param in
+     * Constructor, all the uploaded files are stored in the temporary directory.
+     *
+     * @param multipartHeadersPartParser
+     * @param in
      * @param expectedPostLength
      * @param boundary
      * @param temporaryUploadsDirectory
+     * @param bufferLength               the size of the read buffer
      */
     public MultipartRequestHandler(final Parser<MultipartHeadersPart> multipartHeadersPartParser,
-                                   final InputStream in, final int expectedPostLength,
+                                   final InputStream in, final long expectedPostLength,
                                    final String boundary, final String temporaryUploadsDirectory,
                                    final int bufferLength) {
+        this(multipartHeadersPartParser, in, expectedPostLength, boundary, temporaryUploadsDirectory,
+                bufferLength, 0, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param multipartHeadersPartParser
+     * @param in
+     * @param expectedPostLength
+     * @param boundary
+     * @param temporaryUploadsDirectory
+     * @param bufferLength               the size of the read buffer
+     * @param memoryThreshold            the size up to which the uploaded files are kept in memory
+     * @param memoryBudget               the memory shared by the concurrent uploads, null disables memory storage
+     */
+    public MultipartRequestHandler(final Parser<MultipartHeadersPart> multipartHeadersPartParser,
+                                   final InputStream in, final long expectedPostLength,
+                                   final String boundary, final String temporaryUploadsDirectory,
+                                   final int bufferLength, final int memoryThreshold,
+                                   final UploadMemoryBudget memoryBudget) {
         this.in = in;
         this.expectedPostLength = expectedPostLength;
         this.temporaryUploadsDirectory = temporaryUploadsDirectory;
         this.multipartHeadersPartParser = multipartHeadersPartParser;
+        this.memoryThreshold = memoryThreshold;
+        this.memoryBudget = memoryBudget;
+
+        beginBoundary = new Delimiter(BOUNDARY_BEGIN_MARK + boundary);
+        endBoundary = new Delimiter(NEW_LINE + BOUNDARY_BEGIN_MARK + boundary);
+        headersDelimiter = new Delimiter(HEADERS_DELIMINATOR);
 
-        endBoundary = NEW_LINE + BOUNDARY_BEGIN_MARK + boundary;
-        beginBoundary = BOUNDARY_BEGIN_MARK + boundary;
+        // The buffer must be able to hold a delimiter together with the bytes preceding it
+        buffer = new byte[Math.max(bufferLength, endBoundary.length() * 2)];
 
-        allBytesRead = 0;
         wasHandledBefore = false;
-        headersStringBuffered = new StringBuilder();
-        valueStringBuffered = new StringBuilder();
         uploadedFiles = new ArrayList<>();
         post = new HashMap<>();
-        this.bufferLength = bufferLength;
     }
 
     /**
@@ -90,15 +132,22 @@ public class MultipartRequestHandler {
      * @throws IOException
      */
     public void handle() throws IOException, MalformedInputException {
-        if (wasHandledBefore) {
-            throw new IllegalStateException("Handle method was not expected to be called more than once");
-        }
-        wasHandledBefore = true;
-
+        markHandled();
         skipToTheFirstPart();
         handleBody();
     }
 
+    /**
+     * Returns an iterator streaming the parts directly from the request body, no temporary files
+     * are created. Can not be combined with {@link #handle()}.
+     *
+     * @return
+     */
+    public PartIterator getPartIterator() {
+        markHandled();
+        return new StreamingPartIterator();
+    }
+
     /**
      * Returns Map representation of POST attributes.
      *
@@ -117,163 +166,420 @@ public class MultipartRequestHandler {
         return uploadedFiles;
     }
 
-    private void skipToTheFirstPart() throws IOException {
-        byte[] smallBuffer = new byte[1]; // Used for reading the input stream character by character
-        int charPosition = 0;
-        while (true) {
-            int numberOfBytesRead = in.read(smallBuffer);
-            if (numberOfBytesRead == -1) {
-                Statistics.addBytesReceived(allBytesRead);
-                throw new IOException("Premature end of stream before reaching the end of the first boundary");
-            }
-
-            allBytesRead += numberOfBytesRead;
+    private void markHandled() {
+        if (wasHandledBefore) {
+            throw new IllegalStateException("Handle method was not expected to be called more than once");
+        }
+        wasHandledBefore = true;
+    }
 
-            if (allBytesRead > expectedPostLength) {
+    private void skipToTheFirstPart() throws IOException {
+        if (!scanTo(beginBoundary, null)) {
+            if (allBytesRead == expectedPostLength) {
+                // The boundary lies beyond the declared length, the bytes that follow belong to the next request
                 throw new PayloadTooLargeProtocolException("Payload of too large");
             }
+            throw new IOException("Premature end of stream before reaching the end of the first boundary");
+        }
+    }
 
-            if (beginBoundary.charAt(charPosition) == smallBuffer[0]) {
-                if (++charPosition == beginBoundary.length()) {
-                    break;
+    private void handleBody() throws IOException, MalformedInputException {
+        ByteArrayOutputStream value = new ByteArrayOutputStream();
+        MultipartHeadersPart multipartHeadersPart;
+
+        while ((multipartHeadersPart = readPartHeaders()) != null) {
+            if (multipartHeadersPart.getContentType() != null) {
+                UploadOutputStream uploadOutputStream = new UploadOutputStream();
+                boolean isComplete = false;
+                try {
+                    isComplete = scanTo(endBoundary, uploadOutputStream);
+                } finally {
+                    uploadOutputStream.close();
+                    if (!isComplete) {
+                        uploadOutputStream.discard();
+                    }
+                }
+                if (!isComplete) {
+                    return;
                 }
+                uploadedFiles.add(uploadOutputStream.toUploadedFile(multipartHeadersPart));
             } else {
-                charPosition = 0;
+                value.reset();
+                if (!scanTo(endBoundary, value)) {
+                    return;
+                }
+                post.put(multipartHeadersPart.getName(), value.toString(CHARSET.name()));
             }
         }
     }
 
-    private void handleBody() throws IOException, MalformedInputException {
-        int start;
-        int numberOfBytesRead;
-        boolean wasBoundaryBeginningEncounteredInPreviousIteration = false;
-        int boundaryMatchedCharacterIndex = 0;
-        int tempBufferCharPosition = 0;
-        boolean isHeadersReadingState = true;
+    /**
+     * Reads the headers of the part following the boundary just consumed.
+     *
+     * @return the headers or null when there are no more parts
+     * @throws IOException
+     * @throws MalformedInputException
+     */
+    private MultipartHeadersPart readPartHeaders() throws IOException, MalformedInputException {
+        if (isClosingBoundary()) {
+            // The epilogue is discarded
+            while (!isEndOfStream) {
+                position = limit;
+                fillBuffer();
+            }
+            return null;
+        }
+
+        ByteArrayOutputStream headers = new ByteArrayOutputStream();
+        if (!scanTo(headersDelimiter, headers)) {
+            return null;
+        }
+
+        return multipartHeadersPartParser.parse(headers.toString(CHARSET.name()));
+    }
+
+    /**
+     * Tells whether the boundary just consumed is the closing one, followed by "--".
+     *
+     * @return
+     * @throws IOException
+     */
+    private boolean isClosingBoundary() throws IOException {
+        while (limit - position < BOUNDARY_BEGIN_MARK.length() && !isEndOfStream) {
+            fillBuffer();
+        }
+
+        return limit - position >= BOUNDARY_BEGIN_MARK.length()
+                && buffer[position] == '-' && buffer[position + 1] == '-';
+    }
+
+    /**
+     * Passes the bytes preceding the delimiter to the destination and consumes the delimiter.
+     *
+     * @param delimiter
+     * @param destination the destination or null when the bytes are to be discarded
+     * @return false when the body ends before the delimiter is found
+     * @throws IOException
+     */
+    private boolean scanTo(Delimiter delimiter, OutputStream destination) throws IOException {
+        while (true) {
+            int index = delimiter.indexOf(buffer, position, limit);
+            if (index != -1) {
+                write(destination, index);
+                position = index + delimiter.length();
+                return true;
+            }
+
+            if (isEndOfStream) {
+                write(destination, limit);
+                return false;
+            }
 
-        byte[] buffer = new byte[bufferLength];
-        byte[] tempBuffer = new byte[endBoundary.length()];
+            // Keeps the bytes that could be the beginning of a delimiter split across reads
+            write(destination, Math.max(position, limit - delimiter.length() + 1));
+            fillBuffer();
+        }
+    }
 
-        String currentDeliminator = HEADERS_DELIMINATOR;
+    private void write(OutputStream destination, int end) throws IOException {
+        if (destination != null && end > position) {
+            destination.write(buffer, position, end - position);
+        }
+        position = end;
+    }
 
-        while ((numberOfBytesRead = in.read(buffer, 0, buffer.length)) != -1) {
+    private void fillBuffer() throws IOException {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
 
+        // Never read past the declared length, the bytes that follow belong to the next request
+        int numberOfBytesRead = in.read(buffer, limit,
+                (int) Math.min(buffer.length - limit, expectedPostLength - allBytesRead));
+        if (numberOfBytesRead > 0) {
+            limit += numberOfBytesRead;
             allBytesRead += numberOfBytesRead;
+        }
 
-            if (allBytesRead > expectedPostLength) {
-                Statistics.addBytesReceived(allBytesRead);
-                throw new PayloadTooLargeProtocolException("Payload of too large");
+        if (numberOfBytesRead <= 0 || allBytesRead == expectedPostLength) {
+            isEndOfStream = true;
+        }
+    }
+
+    /**
+     * Destination of an uploaded file, kept in memory until it exceeds the threshold or the memory
+     * budget is exhausted, then written to the temporary directory.
+     */
+    private class UploadOutputStream extends OutputStream {
+
+        private final ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        private File file;
+        private FileOutputStream fileOutputStream;
+
+        UploadOutputStream() throws IOException {
+            if (memoryBudget == null || memoryThreshold <= 0) {
+                switchToFile();
             }
+        }
 
-            start = 0;
-
-            for (int i = 0; i < numberOfBytesRead; i++) {
-                if (currentDeliminator.charAt(boundaryMatchedCharacterIndex) == buffer[i]) {
-                    if (++boundaryMatchedCharacterIndex == currentDeliminator.length()) {
-                        int nextStart = i + 1;
-                        int end = nextStart - currentDeliminator.length();
-                        currentDeliminator = pushBufferOnEndOfState(buffer, start, end, isHeadersReadingState);
-                        isHeadersReadingState = !isHeadersReadingState;
-
-                        start = nextStart;
-                        tempBufferCharPosition = 0;
-                        wasBoundaryBeginningEncounteredInPreviousIteration = false;
-                        boundaryMatchedCharacterIndex = 0;
-                    } else {
-                        tempBuffer[tempBufferCharPosition++] = buffer[i];
-                    }
-                } else {
-                    if (wasBoundaryBeginningEncounteredInPreviousIteration) {
-                        if (tempBufferCharPosition > 0) {
-                            pushBufferToDestination(tempBuffer, 0, tempBufferCharPosition, isHeadersReadingState);
-                        }
-                        wasBoundaryBeginningEncounteredInPreviousIteration = false;
-                    }
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
 
-                    boundaryMatchedCharacterIndex = 0;
-                    tempBufferCharPosition = 0;
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (file == null) {
+                if (memory.size() + len <= memoryThreshold && memoryBudget.reserve(len)) {
+                    memory.write(b, off, len);
+                    return;
                 }
+                switchToFile();
             }
+            fileOutputStream.write(b, off, len);
+        }
 
-            if (boundaryMatchedCharacterIndex > 0) {
-                // An incomplete part of the delimiter was found at the end of the buffer
-                wasBoundaryBeginningEncounteredInPreviousIteration = true;
-            }
+        @Override
+        public void close() {
+            IOUtilities.closeSilently(fileOutputStream);
+        }
 
-            int end = numberOfBytesRead - boundaryMatchedCharacterIndex;
-            if (end > start) {
-                pushBufferToDestination(buffer, start, end, isHeadersReadingState);
+        /**
+         * Removes the incomplete upload.
+         */
+        void discard() {
+            if (file == null) {
+                memoryBudget.release(memory.size());
+            } else if (!file.delete()) {
+                file.deleteOnExit();
             }
+        }
 
-            if (allBytesRead == expectedPostLength) {
-                break;
+        UploadedFile toUploadedFile(MultipartHeadersPart multipartHeadersPart) {
+            if (file == null) {
+                return new UploadedFile(multipartHeadersPart.getName(), multipartHeadersPart.getFileName(),
+                        memory.toByteArray(), memoryBudget);
             }
+            return new UploadedFile(multipartHeadersPart.getName(), multipartHeadersPart.getFileName(), file);
         }
 
-        Statistics.addBytesReceived(allBytesRead);
+        private void switchToFile() throws IOException {
+            file = new File(temporaryUploadsDirectory + StringUtilities.generateRandom());
+            fileOutputStream = new FileOutputStream(file);
+            if (memory.size() > 0) {
+                memory.writeTo(fileOutputStream);
+                memoryBudget.release(memory.size());
+                memory.reset();
+            }
+        }
     }
 
-    private void pushBufferToDestination(byte[] bytes, int start, int end, boolean isHeadersReadingState) throws IOException {
-        if (isHeadersReadingState) {
-            for (int i = start; i < end; i++) {
-                headersStringBuffered.append((char) bytes[i]);
+    /**
+     * Iterator reading the parts directly from the shared buffer.
+     */
+    private class StreamingPartIterator implements PartIterator {
+
+        private boolean isStarted = false;
+        private boolean isFinished = false;
+        private StreamingPart current;
+        private StreamingPart next;
+
+        @Override
+        public boolean hasNext() throws IOException {
+            if (next != null) {
+                return true;
             }
-        } else {
-            if (currentFile != null) {
-                fileOutputStream.write(bytes, start, end);
-            } else {
-                for (int i = start; i < end; i++) {
-                    valueStringBuffered.append((char) bytes[i]);
-                }
+            if (isFinished) {
+                return false;
+            }
+
+            if (!isStarted) {
+                isStarted = true;
+                skipToTheFirstPart();
+            } else if (current != null && !current.inputStream.isFinished && !scanTo(endBoundary, null)) {
+                isFinished = true;
+                return false;
             }
+
+            MultipartHeadersPart multipartHeadersPart;
+            try {
+                multipartHeadersPart = readPartHeaders();
+            } catch (MalformedInputException e) {
+                throw new IOException("Malformed part headers", e);
+            }
+
+            if (multipartHeadersPart == null) {
+                isFinished = true;
+                return false;
+            }
+
+            next = new StreamingPart(multipartHeadersPart, new PartInputStream());
+            return true;
+        }
+
+        @Override
+        public Part next() throws IOException {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            current = next;
+            next = null;
+            return current;
         }
     }
 
-    private String pushBufferOnEndOfState(byte[] bytes, int start, int end, boolean isHeadersReadingState) throws IOException, MalformedInputException {
-        if (isHeadersReadingState) {
-            pushBufferOnEndOfStateHeaders(bytes, start, end);
-            return endBoundary;
-        } else {
-            pushBufferOnEndOfStateBody(bytes, start, end);
-            return HEADERS_DELIMINATOR;
+    /**
+     * Part read directly from the request body.
+     */
+    private static class StreamingPart implements Part {
+
+        private final MultipartHeadersPart multipartHeadersPart;
+        private final PartInputStream inputStream;
+
+        StreamingPart(final MultipartHeadersPart multipartHeadersPart, final PartInputStream inputStream) {
+            this.multipartHeadersPart = multipartHeadersPart;
+            this.inputStream = inputStream;
+        }
+
+        @Override
+        public String getName() {
+            return multipartHeadersPart.getName();
+        }
+
+        @Override
+        public String getFileName() {
+            return multipartHeadersPart.getFileName();
+        }
+
+        @Override
+        public String getContentType() {
+            return multipartHeadersPart.getContentType();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return inputStream;
         }
     }
 
-    private void pushBufferOnEndOfStateBody(byte[] bytes, int start, int end) throws IOException {
-        int len = end - start;
-        if (currentFile != null) {
-            if (len > 0) {
-                fileOutputStream.write(bytes, start, len);
+    /**
+     * Contents of a single part, the bytes are served from the shared buffer up to the boundary.
+     */
+    private class PartInputStream extends InputStream {
+
+        private boolean isFinished = false;
+        private boolean isBoundaryAtEnd = false;
+        private int end = 0;
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
             }
-            IOUtilities.closeSilently(fileOutputStream);
+            if (isFinished || (position >= end && !locateReadableBytes())) {
+                return -1;
+            }
+
+            int numberOfBytes = Math.min(len, end - position);
+            System.arraycopy(buffer, position, b, off, numberOfBytes);
+            position += numberOfBytes;
+            return numberOfBytes;
+        }
 
-            uploadedFiles.add(new UploadedFile(multipartHeadersPart.getName(), multipartHeadersPart.getFileName(), currentFile));
-            currentFile = null;
-        } else {
-            if (len > 0) {
-                for (int i = start; i < end; i++) {
-                    valueStringBuffered.append((char) bytes[i]);
+        @Override
+        public int available() {
+            return isFinished ? 0 : Math.max(end - position, 0);
+        }
+
+        /**
+         * Finds the bytes that can be served without reaching into the boundary.
+         *
+         * @return false when the part has ended
+         * @throws IOException
+         */
+        private boolean locateReadableBytes() throws IOException {
+            while (true) {
+                if (isBoundaryAtEnd) {
+                    position += endBoundary.length();
+                    isFinished = true;
+                    return false;
+                }
+
+                int index = endBoundary.indexOf(buffer, position, limit);
+                if (index != -1) {
+                    end = index;
+                    isBoundaryAtEnd = true;
+                } else if (isEndOfStream) {
+                    if (limit == position) {
+                        throw new IOException("Premature end of the multipart body");
+                    }
+                    end = limit;
+                } else {
+                    // Keeps the bytes that could be the beginning of a boundary split across reads
+                    end = Math.max(position, limit - endBoundary.length() + 1);
+                }
+
+                if (end > position) {
+                    return true;
+                }
+                if (!isBoundaryAtEnd) {
+                    fillBuffer();
                 }
             }
-            post.put(multipartHeadersPart.getName(), valueStringBuffered.toString());
         }
     }
 
-    private void pushBufferOnEndOfStateHeaders(byte[] bytes, int start, int end)
-            throws FileNotFoundException, MalformedInputException {
-        for (int i = start; i < end; i++) {
-            headersStringBuffered.append((char) bytes[i]);
-        }
+    /**
+     * Delimiter searched using the Boyer-Moore-Horspool algorithm.
+     */
+    private static class Delimiter {
+
+        private final byte[] bytes;
+        private final int[] skipTable = new int[256];
 
-        multipartHeadersPart = multipartHeadersPartParser.parse(headersStringBuffered.toString());
+        Delimiter(final String delimiter) {
+            bytes = delimiter.getBytes(CHARSET);
+
+            Arrays.fill(skipTable, bytes.length);
+            for (int i = 0; i < bytes.length - 1; i++) {
+                skipTable[bytes[i] & 0xFF] = bytes.length - 1 - i;
+            }
+        }
 
-        if (multipartHeadersPart.getContentType() != null) {
-            currentFile = new File(temporaryUploadsDirectory + StringUtilities.generateRandom());
-            fileOutputStream = new FileOutputStream(currentFile);
-        } else {
-            valueStringBuffered.setLength(0);
+        int length() {
+            return bytes.length;
         }
 
-        headersStringBuffered.setLength(0);
+        /**
+         * Returns the position of the delimiter within the given range of data.
+         *
+         * @param data
+         * @param from
+         * @param to
+         * @return the position or -1 when not found
+         */
+        int indexOf(byte[] data, int from, int to) {
+            int last = bytes.length - 1;
+            int i = from;
+            while (i + last < to) {
+                int j = last;
+                while (data[i + j] == bytes[j]) {
+                    if (j == 0) {
+                        return i;
+                    }
+                    j--;
+                }
+                i += skipTable[data[i + last] & 0xFF];
+            }
+            return -1;
+        }
     }
 }
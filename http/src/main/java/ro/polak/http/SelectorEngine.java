@@ -0,0 +1,313 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ro.polak.http.configuration.ServerConfig;
+import ro.polak.http.utilities.IOUtilities;
+
+/**
+ * Selector based connection engine.
+ * <p/>
+ * Accepts the connections and reads the request heads in non-blocking mode using a single thread.
+ * A connection is switched to blocking mode and dispatched to a worker only once its request head
+ * has been received, the worker hands the connection back once it becomes idle. This way idle
+ * and slow clients do not occupy the worker threads.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public class SelectorEngine implements IdleConnectionHandler {
+
+    private static final Logger LOGGER = Logger.getLogger(SelectorEngine.class.getName());
+    private static final int HEAD_BUFFER_SIZE = 8192;
+    private static final long SELECT_TIMEOUT_MILLIS = 1000;
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private final ServerSocketChannel serverSocketChannel;
+    private final ServerConfig serverConfig;
+    private final ServiceContainer serviceContainer;
+    private final Queue<Connection> idleConnections = new ConcurrentLinkedQueue<>();
+    private final Selector selector;
+    private volatile boolean isRunning = true;
+    private long lastTimeoutCheckMillis = 0;
+
+    /**
+     * Default constructor.
+     *
+     * @param serverSocketChannel bound server socket channel
+     * @param serverConfig
+     * @param serviceContainer
+     * @throws IOException
+     */
+    public SelectorEngine(final ServerSocketChannel serverSocketChannel,
+                          final ServerConfig serverConfig,
+                          final ServiceContainer serviceContainer) throws IOException {
+        this.serverSocketChannel = serverSocketChannel;
+        this.serverConfig = serverConfig;
+        this.serviceContainer = serviceContainer;
+        selector = Selector.open();
+    }
+
+    /**
+     * Runs the event loop until the engine is stopped.
+     *
+     * @throws IOException
+     */
+    public void run() throws IOException {
+        try {
+            serverSocketChannel.configureBlocking(false);
+            serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+            while (isRunning) {
+                selector.select(SELECT_TIMEOUT_MILLIS);
+                registerIdleConnections();
+
+                List<Connection> readyConnections = handleSelectedKeys();
+                if (!readyConnections.isEmpty()) {
+                    // Deregisters the cancelled keys, otherwise the channels can not be switched to blocking mode
+                    selector.selectNow();
+                    for (Connection connection : readyConnections) {
+                        dispatch(connection);
+                    }
+                }
+
+                closeTimedOutConnections();
+            }
+        } finally {
+            isRunning = false;
+            closeAllConnections();
+        }
+    }
+
+    /**
+     * Stops the event loop and closes the connections waiting for a request.
+     */
+    public void stop() {
+        isRunning = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public boolean takeOver(Socket socket, int requestsServed) {
+        SocketChannel channel = socket.getChannel();
+        if (!isRunning || channel == null) {
+            return false;
+        }
+
+        Connection connection = new Connection(channel, requestsServed);
+        idleConnections.add(connection);
+        if (!isRunning && idleConnections.remove(connection)) {
+            // The event loop has finished in the meantime
+            return false;
+        }
+
+        selector.wakeup();
+        return true;
+    }
+
+    private List<Connection> handleSelectedKeys() {
+        List<Connection> readyConnections = new ArrayList<>();
+
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            SelectionKey key = iterator.next();
+            iterator.remove();
+
+            if (!key.isValid()) {
+                continue;
+            }
+
+            if (key.isAcceptable()) {
+                acceptConnections();
+            } else if (key.isReadable()) {
+                Connection connection = (Connection) key.attachment();
+                try {
+                    if (readHead(connection)) {
+                        key.cancel();
+                        readyConnections.add(connection);
+                    }
+                } catch (IOException e) {
+                    key.cancel();
+                    connection.close();
+                }
+            }
+        }
+
+        return readyConnections;
+    }
+
+    private void acceptConnections() {
+        try {
+            SocketChannel channel;
+            while ((channel = serverSocketChannel.accept()) != null) {
+                register(new Connection(channel, 0));
+            }
+        } catch (IOException e) {
+            if (isRunning) {
+                LOGGER.log(Level.SEVERE, "Communication error", e);
+            }
+        }
+    }
+
+    private void registerIdleConnections() {
+        Connection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            register(connection);
+        }
+    }
+
+    private void register(Connection connection) {
+        try {
+            connection.channel.configureBlocking(false);
+            connection.channel.register(selector, SelectionKey.OP_READ, connection);
+            connection.lastActivityMillis = System.currentTimeMillis();
+        } catch (IOException e) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Reads the available bytes of the connection.
+     *
+     * @param connection
+     * @return whether the connection is ready to be dispatched to a worker
+     * @throws IOException
+     */
+    private boolean readHead(Connection connection) throws IOException {
+        if (connection.head == null) {
+            // Allocated lazily, idle connections do not hold any buffer
+            connection.head = ByteBuffer.allocate(HEAD_BUFFER_SIZE);
+        }
+
+        ByteBuffer head = connection.head;
+        int scanFrom = Math.max(0, head.position() - 3);
+        if (connection.channel.read(head) == -1) {
+            throw new IOException("Connection closed by the client");
+        }
+
+        connection.lastActivityMillis = System.currentTimeMillis();
+
+        // An oversized head is dispatched anyway so that the worker responds with a proper error
+        return !head.hasRemaining() || isHeadComplete(head, scanFrom);
+    }
+
+    private boolean isHeadComplete(ByteBuffer head, int scanFrom) {
+        byte[] bytes = head.array();
+        int length = head.position();
+
+        // Empty lines preceding the request line are ignored by the parser
+        int start = 0;
+        while (start < length && (bytes[start] == CR || bytes[start] == LF)) {
+            start++;
+        }
+
+        for (int i = Math.max(start, scanFrom); i + 3 < length; i++) {
+            if (bytes[i] == CR && bytes[i + 1] == LF && bytes[i + 2] == CR && bytes[i + 3] == LF) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void dispatch(Connection connection) {
+        Socket socket = connection.channel.socket();
+        InputStream in;
+        try {
+            connection.channel.configureBlocking(true);
+            in = new SequenceInputStream(
+                    new ByteArrayInputStream(connection.head.array(), 0, connection.head.position()),
+                    socket.getInputStream());
+        } catch (IOException e) {
+            connection.close();
+            return;
+        }
+
+        serviceContainer.getExecutorService().execute(
+                new ServerRunnable(socket,
+                        serverConfig,
+                        serviceContainer.getRequestWrapperFactory(),
+                        serviceContainer.getResponseFactory(),
+                        serviceContainer.getHttpErrorHandlerResolver(),
+                        serviceContainer.getPathHelper(),
+                        in,
+                        connection.requestsServed,
+                        this));
+    }
+
+    private void closeTimedOutConnections() {
+        long now = System.currentTimeMillis();
+        if (now - lastTimeoutCheckMillis < SELECT_TIMEOUT_MILLIS) {
+            return;
+        }
+        lastTimeoutCheckMillis = now;
+
+        long timeoutMillis = serverConfig.getKeepAliveTimeout() * 1000L;
+        for (SelectionKey key : selector.keys()) {
+            Connection connection = (Connection) key.attachment();
+            if (connection != null && key.isValid() && now - connection.lastActivityMillis > timeoutMillis) {
+                key.cancel();
+                connection.close();
+            }
+        }
+    }
+
+    private void closeAllConnections() {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() != null) {
+                ((Connection) key.attachment()).close();
+            }
+        }
+
+        Connection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            connection.close();
+        }
+
+        IOUtilities.closeSilently(selector);
+    }
+
+    /**
+     * State of a connection waiting for a request.
+     */
+    private static class Connection {
+
+        private final SocketChannel channel;
+        private final int requestsServed;
+        private ByteBuffer head;
+        private long lastActivityMillis;
+
+        Connection(final SocketChannel channel, final int requestsServed) {
+            this.channel = channel;
+            this.requestsServed = requestsServed;
+            lastActivityMillis = System.currentTimeMillis();
+        }
+
+        void close() {
+            IOUtilities.closeSilently(channel);
+        }
+    }
+}
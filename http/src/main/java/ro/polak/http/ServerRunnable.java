@@ -7,8 +7,11 @@
 
 package ro.polak.http;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -17,7 +20,10 @@ import ro.polak.http.errorhandler.HttpErrorHandlerResolver;
 import ro.polak.http.exception.AccessDeniedException;
 import ro.polak.http.exception.MethodNotAllowedException;
 import ro.polak.http.exception.NotFoundException;
-import ro.polak.http.resource.provider.ResourceProvider;
+import ro.polak.http.impl.ConnectionInputStream;
+import ro.polak.http.impl.ConnectionOutputStream;
+import ro.polak.http.impl.BodyInputStream;
+import ro.polak.http.resource.router.ResolvedRoute;
 import ro.polak.http.servlet.impl.HttpRequestImpl;
 import ro.polak.http.servlet.impl.HttpResponseImpl;
 import ro.polak.http.servlet.HttpServletRequest;
@@ -25,9 +31,10 @@ import ro.polak.http.servlet.factory.HttpServletRequestImplFactory;
 import ro.polak.http.servlet.HttpServletResponse;
 import ro.polak.http.servlet.factory.HttpServletResponseImplFactory;
 import ro.polak.http.utilities.IOUtilities;
+import ro.polak.http.utilities.StringUtilities;
 
 /**
- * Server thread.
+ * Server thread, serves the requests of a single (possibly persistent) connection.
  *
  * @author Piotr Polak piotr [at] polak [dot] ro
  * @since 200802
@@ -35,6 +42,11 @@ import ro.polak.http.utilities.IOUtilities;
 public class ServerRunnable implements Runnable {
 
     private static final Logger LOGGER = Logger.getLogger(ServerRunnable.class.getName());
+    private static final int BUFFER_SIZE = 8192;
+    private static final long MAX_DISCARDED_BODY_LENGTH = 64 * 1024;
+    private static final String HTTP_1_1 = "HTTP/1.1";
+    private static final String CONNECTION_KEEP_ALIVE = "keep-alive";
+    private static final String CONNECTION_CLOSE = "close";
 
     private final ServerConfig serverConfig;
     private final Socket socket;
@@ -42,6 +54,9 @@ public class ServerRunnable implements Runnable {
     private final HttpServletResponseImplFactory responseFactory;
     private final HttpErrorHandlerResolver httpErrorHandlerResolver;
     private final PathHelper pathHelper;
+    private final InputStream inputStream;
+    private final int requestsServed;
+    private final IdleConnectionHandler idleConnectionHandler;
 
     /**
      * Default constructor.
@@ -57,70 +72,224 @@ public class ServerRunnable implements Runnable {
                           final HttpServletResponseImplFactory responseFactory,
                           final HttpErrorHandlerResolver httpErrorHandlerResolver,
                           final PathHelper pathHelper) {
+        this(socket, serverConfig, requestFactory, responseFactory, httpErrorHandlerResolver, pathHelper,
+                null, 0, null);
+    }
+
+    /**
+     * Constructor for connections that are not bound to a single worker thread.
+     *
+     * @param socket
+     * @param serverConfig
+     * @param requestFactory
+     * @param httpErrorHandlerResolver
+     * @param pathHelper
+     * @param inputStream           the input of the connection, including the bytes already read from the socket
+     * @param requestsServed        the number of requests already served over the connection
+     * @param idleConnectionHandler takes over the connection once there are no pending requests
+     */
+    public ServerRunnable(final Socket socket,
+                          final ServerConfig serverConfig,
+                          final HttpServletRequestImplFactory requestFactory,
+                          final HttpServletResponseImplFactory responseFactory,
+                          final HttpErrorHandlerResolver httpErrorHandlerResolver,
+                          final PathHelper pathHelper,
+                          final InputStream inputStream,
+                          final int requestsServed,
+                          final IdleConnectionHandler idleConnectionHandler) {
         this.socket = socket;
         this.serverConfig = serverConfig;
         this.requestFactory = requestFactory;
         this.responseFactory = responseFactory;
         this.httpErrorHandlerResolver = httpErrorHandlerResolver;
         this.pathHelper = pathHelper;
+        this.inputStream = inputStream;
+        this.requestsServed = requestsServed;
+        this.idleConnectionHandler = idleConnectionHandler;
     }
 
     @Override
     public void run() {
-        HttpResponseImpl response = null;
-
+        boolean isTakenOver = false;
         try {
             try {
-                response = responseFactory.createFromSocket(socket);
-                HttpRequestImpl request = requestFactory.createFromSocket(socket);
+                isTakenOver = handleConnection();
+            } finally {
+                if (!isTakenOver) {
+                    IOUtilities.closeSilently(socket);
+                }
+            }
+        } catch (EOFException e) {
+            // The client has closed the persistent connection, there is nothing to do
+        } catch (SocketTimeoutException e) {
+            LOGGER.log(Level.FINE, "Closing idle connection {0}", new Object[]{
+                    e.getMessage()
+            });
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, "Encountered IOException when handling request {0}", new Object[]{
+                    e.getMessage()
+            });
+        }
+    }
 
-                LOGGER.log(Level.INFO, "Handling request {0} {1}", new Object[]{
-                        request.getMethod(), request.getRequestURI()
-                });
+    /**
+     * Serves the requests of the connection until it is no longer to be kept alive
+     * or until it is taken over by the idle connection handler.
+     *
+     * @return whether the connection has been taken over and must not be closed
+     * @throws IOException
+     */
+    private boolean handleConnection() throws IOException {
+        InputStream in = new ConnectionInputStream(
+                inputStream != null ? inputStream : socket.getInputStream(), BUFFER_SIZE);
+        ConnectionOutputStream out = new ConnectionOutputStream(socket.getOutputStream(), BUFFER_SIZE,
+                socket.getChannel());
 
-                String requestedPath = request.getRequestURI();
+        boolean isTakenOver = false;
+        try {
+            int requestNumber = requestsServed;
+            while (handleRequest(in, out, ++requestNumber)) {
+                if (idleConnectionHandler != null && in.available() == 0) {
+                    // Nothing read ahead is lost, the connection can wait for the next request elsewhere
+                    out.flushConnection();
+                    isTakenOver = idleConnectionHandler.takeOver(socket, requestNumber);
+                    return isTakenOver;
+                }
 
-                if (pathHelper.isPathContainingIllegalCharacters(requestedPath)) {
-                    throw new AccessDeniedException();
+                if (requestNumber == requestsServed + 1) {
+                    // From now on the connection is idle between the requests
+                    socket.setSoTimeout(serverConfig.getKeepAliveTimeout() * 1000);
                 }
+            }
+        } finally {
+            if (!isTakenOver) {
+                flushSilently(out);
+            }
+        }
 
-                validateRequest(request);
+        return false;
+    }
 
-                setDefaultResponseHeaders(request, response);
+    /**
+     * Reads and serves a single request.
+     *
+     * @param in            the input stream of the connection
+     * @param out           the output stream of the connection
+     * @param requestNumber the sequence number of the request within the connection
+     * @return true when the connection should be kept alive for the next request
+     * @throws IOException
+     */
+    private boolean handleRequest(InputStream in, ConnectionOutputStream out, int requestNumber)
+            throws IOException {
+        HttpResponseImpl response = null;
+        HttpRequestImpl request = null;
 
-                ResourceProvider resourceProvider = getResourceProvider(requestedPath);
-                if (resourceProvider != null) {
-                    resourceProvider.load(requestedPath, request, response);
-                } else {
-                    handleDirectoryIndex(response, request, requestedPath);
-                }
-            } catch (RuntimeException e) {
-                if (response != null) {
-                    httpErrorHandlerResolver.getHandler(e).serve(response);
-                }
+        try {
+            response = responseFactory.createFromSocket(socket, out);
+            request = requestFactory.createFromSocket(socket, in);
 
-                throw e; // Make it logged by the main thread
-            } finally {
-                IOUtilities.closeSilently(socket);
+            // The response of a pipelined request is sent together with the following responses
+            out.setFlushDeferred(in.available() > getUnreadBodyLength(request));
+
+            if (request.isContinueExpected() && getUnreadBodyLength(request) > 0) {
+                // Sent once the body is read, a request rejected before that is not sent at all
+                ((BodyInputStream) request.getInputStream()).setContinueExpected(out);
             }
-        } catch (IOException e) {
-            LOGGER.log(Level.INFO, "Encountered IOException when handling request {0}", new Object[]{
-                    e.getMessage()
+
+            LOGGER.log(Level.INFO, "Handling request {0} {1}", new Object[]{
+                    request.getMethod(), request.getRequestURI()
             });
+
+            setDefaultResponseHeaders(request, response, requestNumber);
+
+            // Checked once decoded so that escaped dot segments are caught too
+            String requestedPath = StringUtilities.percentDecode(request.getRequestURI());
+
+            if (pathHelper.isPathContainingIllegalCharacters(requestedPath)) {
+                throw new AccessDeniedException();
+            }
+
+            validateRequest(request);
+
+            ResolvedRoute<?> route = serverConfig.getResourceRouter().resolve(requestedPath);
+            if (route != null) {
+                route.load(request, response);
+            } else {
+                handleDirectoryIndex(response, request, requestedPath);
+            }
+        } catch (AccessDeniedException | NotFoundException | MethodNotAllowedException e) {
+            // Regular HTTP outcomes, the connection can still be reused unless the body was never sent
+            if (isContinuePending(request)) {
+                response.setKeepAlive(false);
+            }
+            httpErrorHandlerResolver.getHandler(e).serve(response);
+        } catch (RuntimeException e) {
+            if (response != null) {
+                httpErrorHandlerResolver.getHandler(e).serve(response);
+            }
+
+            throw e; // Make it logged by the main thread
+        } finally {
+            // The buffer grown by the servlet is not kept for the following requests
+            out.restoreBufferSize();
+        }
+
+        return response.isCommitted() && response.isKeepAlive()
+                && !isContinuePending(request) && discardUnreadBody(request);
+    }
+
+    /**
+     * Tells whether the client is still waiting for 100 Continue, it is not known whether the body
+     * is going to be sent so the connection can not be reused.
+     *
+     * @param request
+     * @return
+     */
+    private boolean isContinuePending(HttpRequestImpl request) {
+        return request.getInputStream() instanceof BodyInputStream
+                && ((BodyInputStream) request.getInputStream()).isContinuePending();
+    }
+
+    private long getUnreadBodyLength(HttpRequestImpl request) {
+        if (request.getInputStream() instanceof BodyInputStream) {
+            return ((BodyInputStream) request.getInputStream()).getRemaining();
+        }
+        return 0;
+    }
+
+    /**
+     * Consumes the part of the body not read by the servlet so that the next request can be read.
+     *
+     * @param request
+     * @return false when the remaining body is too large, it is cheaper to close the connection
+     * @throws IOException
+     */
+    private boolean discardUnreadBody(HttpRequestImpl request) throws IOException {
+        if (request.getInputStream() instanceof BodyInputStream) {
+            return ((BodyInputStream) request.getInputStream()).discard(MAX_DISCARDED_BODY_LENGTH);
+        }
+        return true;
+    }
+
+    private void flushSilently(ConnectionOutputStream out) {
+        try {
+            out.flushConnection();
+        } catch (IOException e) {
+            // The connection is being closed anyway
         }
     }
 
     private void handleDirectoryIndex(HttpResponseImpl response, HttpRequestImpl request,
                                       String requestedPath) throws IOException {
-        DirectoryIndexDescriptor indexDescriptor = loadDirectoryIndexResource(requestedPath);
-        if (indexDescriptor == null) {
+        ResolvedRoute<?> indexRoute = loadDirectoryIndexResource(requestedPath);
+        if (indexRoute == null) {
             throw new NotFoundException();
         } else {
             if (!pathHelper.isDirectoryPath(requestedPath)) {
-                sendRedirectToDirectorySlashedPath(response, requestedPath);
+                // The location keeps the original encoding of the path
+                sendRedirectToDirectorySlashedPath(response, request.getRequestURI());
             } else {
-                indexDescriptor.getResourceProvider().load(
-                        indexDescriptor.getDirectoryPath(), request, response);
+                indexRoute.load(request, response);
             }
         }
     }
@@ -136,33 +305,58 @@ public class ServerRunnable implements Runnable {
      *
      * @param request
      * @param response
+     * @param requestNumber
      */
-    private void setDefaultResponseHeaders(HttpRequestImpl request, HttpResponseImpl response) {
-        boolean isKeepAlive = false;
-        if (request.getHeaders().containsHeader(Headers.HEADER_CONNECTION)) {
-            isKeepAlive = request.getHeaders().getHeader(Headers.HEADER_CONNECTION).equalsIgnoreCase("keep-alive");
-        }
+    private void setDefaultResponseHeaders(HttpRequestImpl request, HttpResponseImpl response, int requestNumber) {
+        boolean isKeepAlive = serverConfig.isKeepAlive()
+                && isKeepAliveRequested(request)
+                && !isMessageLengthAmbiguous(request)
+                && requestNumber < serverConfig.getKeepAliveMaxRequests();
 
-        response.setKeepAlive(isKeepAlive && serverConfig.isKeepAlive());
+        response.setKeepAlive(isKeepAlive);
         response.getHeaders().setHeader(Headers.HEADER_SERVER, WebServer.SIGNATURE);
     }
 
-    private DirectoryIndexDescriptor loadDirectoryIndexResource(String path) {
-        String normalizedDirectoryPath = pathHelper.getNormalizedDirectoryPath(path);
-        for (String index : serverConfig.getDirectoryIndex()) {
-            String directoryIndexPath = normalizedDirectoryPath + index;
-            ResourceProvider resourceProvider = getResourceProvider(directoryIndexPath);
-            if (resourceProvider != null) {
-                return new DirectoryIndexDescriptor(resourceProvider, directoryIndexPath);
+    /**
+     * Tells whether the client expects the connection to persist. HTTP/1.1 connections are
+     * persistent unless closed explicitly, HTTP/1.0 connections must be kept alive explicitly.
+     *
+     * @param request
+     * @return
+     */
+    private boolean isKeepAliveRequested(HttpRequestImpl request) {
+        String connection = request.getHeaders().getHeader(Headers.HEADER_CONNECTION);
+        if (connection != null) {
+            for (String token : connection.split(",")) {
+                if (token.trim().equalsIgnoreCase(CONNECTION_CLOSE)) {
+                    return false;
+                } else if (token.trim().equalsIgnoreCase(CONNECTION_KEEP_ALIVE)) {
+                    return true;
+                }
             }
         }
-        return null;
+
+        return HTTP_1_1.equalsIgnoreCase(request.getProtocol());
+    }
+
+    /**
+     * Tells whether the request declares both a transfer coding and a content length. The body is
+     * read as chunked but the connection must be closed afterwards, RFC 7230 section 3.3.3.
+     *
+     * @param request
+     * @return
+     */
+    private boolean isMessageLengthAmbiguous(HttpRequestImpl request) {
+        return request.getHeaders().containsHeader(Headers.HEADER_TRANSFER_ENCODING)
+                && request.getHeaders().containsHeader(Headers.HEADER_CONTENT_LENGTH);
     }
 
-    private ResourceProvider getResourceProvider(String path) {
-        for (ResourceProvider resourceProvider : serverConfig.getResourceProviders()) {
-            if (resourceProvider.canLoad(path)) {
-                return resourceProvider;
+    private ResolvedRoute<?> loadDirectoryIndexResource(String path) {
+        String normalizedDirectoryPath = pathHelper.getNormalizedDirectoryPath(path);
+        for (String index : serverConfig.getDirectoryIndex()) {
+            ResolvedRoute<?> route = serverConfig.getResourceRouter().resolve(normalizedDirectoryPath + index);
+            if (route != null) {
+                return route;
             }
         }
         return null;
@@ -202,25 +396,4 @@ public class ServerRunnable implements Runnable {
     protected Socket getSocket() {
         return socket;
     }
-
-    /**
-     * Helper class describing directory index
-     */
-    private static class DirectoryIndexDescriptor {
-        private ResourceProvider resourceProvider;
-        private String directoryPath;
-
-        public DirectoryIndexDescriptor(ResourceProvider resourceProvider, String indexFilePath) {
-            this.resourceProvider = resourceProvider;
-            this.directoryPath = indexFilePath;
-        }
-
-        public ResourceProvider getResourceProvider() {
-            return resourceProvider;
-        }
-
-        public String getDirectoryPath() {
-            return directoryPath;
-        }
-    }
 }
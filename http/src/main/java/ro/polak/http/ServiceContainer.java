@@ -7,14 +7,17 @@
 
 package ro.polak.http;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import ro.polak.http.configuration.ServerConfig;
 import ro.polak.http.errorhandler.HttpErrorHandlerResolver;
 import ro.polak.http.errorhandler.impl.HttpErrorHandlerResolverImpl;
+import ro.polak.http.executor.ExecutorServiceFactory;
+import ro.polak.http.executor.impl.BoundedExecutorServiceFactory;
+import ro.polak.http.executor.impl.VirtualThreadExecutorServiceFactory;
+import ro.polak.http.executor.impl.WorkStealingExecutorServiceFactory;
 import ro.polak.http.protocol.parser.impl.CookieParser;
 import ro.polak.http.protocol.parser.impl.HeadersParser;
 import ro.polak.http.protocol.parser.impl.MultipartHeadersPartParser;
@@ -37,9 +40,11 @@ import ro.polak.http.utilities.DateProvider;
  */
 public class ServiceContainer {
 
+    private static final Logger LOGGER = Logger.getLogger(ServiceContainer.class.getName());
+
     private HttpServletRequestImplFactory requestWrapperFactory;
     private HttpServletResponseImplFactory responseFactory;
-    private ThreadPoolExecutor threadPoolExecutor;
+    private ExecutorService executorService;
     private HttpErrorHandlerResolver httpErrorHandlerResolver;
     private PathHelper pathHelper;
 
@@ -52,7 +57,10 @@ public class ServiceContainer {
                 new RequestStatusParser(),
                 new CookieParser(),
                 new MultipartHeadersPartParser(headersParser),
-                serverConfig.getTempPath()
+                serverConfig.getTempPath(),
+                serverConfig.getUploadMemoryThreshold(),
+                serverConfig.getUploadMemoryLimit(),
+                serverConfig.getUploadBufferSize()
         );
 
         responseFactory = new HttpServletResponseImplFactory(
@@ -64,12 +72,8 @@ public class ServiceContainer {
                 )
         );
 
-        threadPoolExecutor = new ThreadPoolExecutor(1, serverConfig.getMaxServerThreads(),
-                20, TimeUnit.SECONDS,
-                new ArrayBlockingQueue<Runnable>(serverConfig.getMaxServerThreads() * 3),
-                Executors.defaultThreadFactory(),
-                new ServiceUnavailableHandler(responseFactory)
-        );
+        executorService = getExecutorServiceFactory(serverConfig.getExecutor())
+                .createExecutorService(serverConfig, new ServiceUnavailableHandler(responseFactory));
 
         httpErrorHandlerResolver = new HttpErrorHandlerResolverImpl(serverConfig);
 
@@ -85,8 +89,8 @@ public class ServiceContainer {
         return responseFactory;
     }
 
-    public ThreadPoolExecutor getThreadPoolExecutor() {
-        return threadPoolExecutor;
+    public ExecutorService getExecutorService() {
+        return executorService;
     }
 
     public HttpErrorHandlerResolver getHttpErrorHandlerResolver() {
@@ -96,4 +100,23 @@ public class ServiceContainer {
     public PathHelper getPathHelper() {
         return pathHelper;
     }
-}
\ No newline at end of file
+
+    private ExecutorServiceFactory getExecutorServiceFactory(String executor) {
+        if (executor == null || ServerConfig.EXECUTOR_BOUNDED.equalsIgnoreCase(executor)) {
+            return new BoundedExecutorServiceFactory();
+        } else if (ServerConfig.EXECUTOR_WORK_STEALING.equalsIgnoreCase(executor)) {
+            return new WorkStealingExecutorServiceFactory();
+        } else if (ServerConfig.EXECUTOR_VIRTUAL.equalsIgnoreCase(executor)) {
+            return new VirtualThreadExecutorServiceFactory();
+        }
+
+        try {
+            return (ExecutorServiceFactory) Class.forName(executor).newInstance();
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException
+                | ClassCastException e) {
+            LOGGER.log(Level.SEVERE, "Unable to instantiate executor " + executor
+                    + ", falling back to " + ServerConfig.EXECUTOR_BOUNDED, e);
+            return new BoundedExecutorServiceFactory();
+        }
+    }
+}
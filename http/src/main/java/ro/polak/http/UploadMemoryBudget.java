@@ -0,0 +1,70 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memory shared by the uploaded files kept in memory across all the concurrent requests.
+ * <p/>
+ * A part is kept in memory only as long as its bytes can be reserved, otherwise it is written
+ * to disk. The memory is given back once the uploaded file is moved or destroyed.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public class UploadMemoryBudget {
+
+    private final long limit;
+    private final AtomicLong used = new AtomicLong();
+
+    /**
+     * Default constructor.
+     *
+     * @param limit the number of bytes that can be reserved at once
+     */
+    public UploadMemoryBudget(final long limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Reserves the given number of bytes.
+     *
+     * @param numberOfBytes
+     * @return false when the limit would be exceeded, nothing is reserved then
+     */
+    public boolean reserve(long numberOfBytes) {
+        while (true) {
+            long current = used.get();
+            if (current + numberOfBytes > limit) {
+                return false;
+            }
+            if (used.compareAndSet(current, current + numberOfBytes)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back the given number of previously reserved bytes.
+     *
+     * @param numberOfBytes
+     */
+    public void release(long numberOfBytes) {
+        used.addAndGet(-numberOfBytes);
+    }
+
+    /**
+     * Returns the number of bytes currently reserved.
+     *
+     * @return
+     */
+    public long getUsed() {
+        return used.get();
+    }
+}
@@ -37,6 +37,7 @@ public class WebServer extends Thread {
     private final ServerConfig serverConfig;
 
     private boolean listen;
+    private volatile SelectorEngine selectorEngine;
 
     /**
      * @param serverSocket
@@ -52,24 +53,61 @@ public class WebServer extends Thread {
         ServiceContainer serviceContainer = new ServiceContainer(serverConfig);
 
         try {
-            while (listen) {
-                try {
-                    serviceContainer.getThreadPoolExecutor().execute(
-                            new ServerRunnable(serverSocket.accept(),
-                                    serverConfig,
-                                    serviceContainer.getRequestWrapperFactory(),
-                                    serviceContainer.getResponseFactory(),
-                                    serviceContainer.getHttpErrorHandlerResolver(),
-                                    serviceContainer.getPathHelper()));
-                } catch (IOException e) {
-                    if (listen) {
-                        LOGGER.log(Level.SEVERE, "Communication error", e);
-                    }
-                }
+            if (isSelectorEngineEnabled()) {
+                runSelectorEngine(serviceContainer);
+            } else {
+                acceptConnections(serviceContainer);
             }
         } finally {
             IOUtilities.closeSilently(serverSocket);
-            serviceContainer.getThreadPoolExecutor().shutdown();
+            serviceContainer.getExecutorService().shutdown();
+        }
+    }
+
+    private boolean isSelectorEngineEnabled() {
+        if (!ServerConfig.ENGINE_NIO.equals(serverConfig.getEngine())) {
+            return false;
+        }
+
+        if (serverSocket.getChannel() == null) {
+            LOGGER.log(Level.WARNING, "The server socket is not backed by a channel, "
+                    + "falling back to the " + ServerConfig.ENGINE_BLOCKING + " engine");
+            return false;
+        }
+
+        return true;
+    }
+
+    private void acceptConnections(ServiceContainer serviceContainer) {
+        while (listen) {
+            try {
+                serviceContainer.getExecutorService().execute(
+                        new ServerRunnable(serverSocket.accept(),
+                                serverConfig,
+                                serviceContainer.getRequestWrapperFactory(),
+                                serviceContainer.getResponseFactory(),
+                                serviceContainer.getHttpErrorHandlerResolver(),
+                                serviceContainer.getPathHelper()));
+            } catch (IOException e) {
+                if (listen) {
+                    LOGGER.log(Level.SEVERE, "Communication error", e);
+                }
+            }
+        }
+    }
+
+    private void runSelectorEngine(ServiceContainer serviceContainer) {
+        try {
+            selectorEngine = new SelectorEngine(serverSocket.getChannel(), serverConfig, serviceContainer);
+            if (listen) {
+                selectorEngine.run();
+            }
+        } catch (IOException e) {
+            if (listen) {
+                LOGGER.log(Level.SEVERE, "Communication error", e);
+            }
+        } finally {
+            selectorEngine = null;
         }
     }
 
@@ -150,6 +188,10 @@ public class WebServer extends Thread {
      */
     public void stopServer() {
         listen = false;
+        SelectorEngine engine = selectorEngine;
+        if (engine != null) {
+            engine.stop();
+        }
         IOUtilities.closeSilently(serverSocket);
         for(ResourceProvider resourceProvider : getServerConfig().getResourceProviders()) {
             resourceProvider.shutdown();
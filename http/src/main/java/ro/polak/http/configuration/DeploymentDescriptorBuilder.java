@@ -51,6 +51,9 @@ public class DeploymentDescriptorBuilder {
     }
 
     public List<ServletContextImpl> build() {
+        for (ServletContextImpl servletContextImpl : servletContextImpls) {
+            servletContextImpl.compileMappings();
+        }
         return servletContextImpls;
     }
 
@@ -11,6 +11,7 @@ import java.util.List;
 
 import ro.polak.http.MimeTypeMapping;
 import ro.polak.http.resource.provider.ResourceProvider;
+import ro.polak.http.resource.router.ResourceRouter;
 
 /**
  * Server configuration.
@@ -20,6 +21,31 @@ import ro.polak.http.resource.provider.ResourceProvider;
  */
 public interface ServerConfig {
 
+    /**
+     * Thread per connection engine, a worker thread blocks on the socket for the whole connection.
+     */
+    String ENGINE_BLOCKING = "blocking";
+
+    /**
+     * Selector based engine, the connections are dispatched to the workers once a request head is received.
+     */
+    String ENGINE_NIO = "nio";
+
+    /**
+     * Thread pool bounded by the maximum number of server threads.
+     */
+    String EXECUTOR_BOUNDED = "bounded";
+
+    /**
+     * Work stealing fork join pool.
+     */
+    String EXECUTOR_WORK_STEALING = "workStealing";
+
+    /**
+     * A virtual thread per request, falls back to the bounded pool when not supported by the runtime.
+     */
+    String EXECUTOR_VIRTUAL = "virtual";
+
     /**
      * Returns base path.
      *
@@ -62,6 +88,21 @@ public interface ServerConfig {
      */
     int getMaxServerThreads();
 
+    /**
+     * Returns the connection engine, either {@link #ENGINE_BLOCKING} or {@link #ENGINE_NIO}.
+     *
+     * @return
+     */
+    String getEngine();
+
+    /**
+     * Returns the executor the requests are served by, either one of the EXECUTOR_ constants
+     * or the fully qualified class name of an {@link ro.polak.http.executor.ExecutorServiceFactory}.
+     *
+     * @return
+     */
+    String getExecutor();
+
     /**
      * Returns whether the server should keep the connections alive.
      *
@@ -69,6 +110,84 @@ public interface ServerConfig {
      */
     boolean isKeepAlive();
 
+    /**
+     * Returns the number of seconds a persistent connection waits for the next request.
+     *
+     * @return
+     */
+    int getKeepAliveTimeout();
+
+    /**
+     * Returns the maximum number of requests served over a single persistent connection.
+     *
+     * @return
+     */
+    int getKeepAliveMaxRequests();
+
+    /**
+     * Returns the size in bytes up to which an uploaded file is kept in memory, 0 stores all the
+     * uploaded files in the temporary directory.
+     *
+     * @return
+     */
+    int getUploadMemoryThreshold();
+
+    /**
+     * Returns the number of bytes the uploaded files of all the concurrent requests can keep in memory.
+     *
+     * @return
+     */
+    long getUploadMemoryLimit();
+
+    /**
+     * Returns the size in bytes of the buffer a multipart request body is read with.
+     *
+     * @return
+     */
+    int getUploadBufferSize();
+
+    /**
+     * Returns the number of bytes of the static files kept in memory, 0 disables the static content cache.
+     *
+     * @return
+     */
+    long getStaticCacheMaxSize();
+
+    /**
+     * Returns the size in bytes of the largest static file kept in memory.
+     *
+     * @return
+     */
+    long getStaticCacheMaxEntrySize();
+
+    /**
+     * Returns the number of bytes of the large static files kept memory mapped, 0 disables mapping.
+     *
+     * @return
+     */
+    long getStaticMappedMaxSize();
+
+    /**
+     * Returns the size in bytes of the smallest static file to be memory mapped.
+     *
+     * @return
+     */
+    long getStaticMappedMinFileSize();
+
+    /**
+     * Returns the number of milliseconds the static file metadata is cached for, 0 disables the cache.
+     *
+     * @return
+     */
+    long getStaticMetadataTtl();
+
+    /**
+     * Returns the maximum number of existing and of missing static files whose metadata is cached.
+     *
+     * @return
+     */
+    int getStaticMetadataMaxEntries();
+
     /**
      * Returns error 404 file path.
      *
@@ -104,6 +223,13 @@ public interface ServerConfig {
      */
     List<ResourceProvider> getResourceProviders();
 
+    /**
+     * Returns the router resolving the resource provider of a path.
+     *
+     * @return
+     */
+    ResourceRouter getResourceRouter();
+
     /**
      * Returns arbitrary attribute by name.
      *
@@ -21,6 +21,7 @@ import ro.polak.http.MimeTypeMapping;
 import ro.polak.http.configuration.ServerConfig;
 import ro.polak.http.impl.MimeTypeMappingImpl;
 import ro.polak.http.resource.provider.ResourceProvider;
+import ro.polak.http.resource.router.ResourceRouter;
 import ro.polak.http.servlet.impl.HttpRequestImpl;
 import ro.polak.http.utilities.IOUtilities;
 
@@ -45,7 +46,20 @@ public class ServerConfigImpl implements ServerConfig {
     private static final String ATTRIBUTE_PORT = "server.port";
     private static final String ATTRIBUTE_STATIC_PATH = "server.static.path";
     private static final String ATTRIBUTE_MAX_THREADS = "server.maxThreads";
+    private static final String ATTRIBUTE_ENGINE = "server.engine";
+    private static final String ATTRIBUTE_EXECUTOR = "server.executor";
     private static final String ATTRIBUTE_KEEP_ALIVE = "server.keepAlive.enabled";
+    private static final String ATTRIBUTE_KEEP_ALIVE_TIMEOUT = "server.keepAlive.timeout";
+    private static final String ATTRIBUTE_KEEP_ALIVE_MAX_REQUESTS = "server.keepAlive.maxRequests";
+    private static final String ATTRIBUTE_UPLOAD_MEMORY_THRESHOLD = "server.upload.memoryThreshold";
+    private static final String ATTRIBUTE_UPLOAD_MEMORY_LIMIT = "server.upload.memoryLimit";
+    private static final String ATTRIBUTE_UPLOAD_BUFFER_SIZE = "server.upload.bufferSize";
+    private static final String ATTRIBUTE_STATIC_CACHE_MAX_SIZE = "server.static.cache.maxSize";
+    private static final String ATTRIBUTE_STATIC_CACHE_MAX_ENTRY_SIZE = "server.static.cache.maxEntrySize";
+    private static final String ATTRIBUTE_STATIC_MAPPED_MAX_SIZE = "server.static.mapped.maxSize";
+    private static final String ATTRIBUTE_STATIC_MAPPED_MIN_FILE_SIZE = "server.static.mapped.minFileSize";
+    private static final String ATTRIBUTE_STATIC_METADATA_TTL = "server.static.metadata.ttl";
+    private static final String ATTRIBUTE_STATIC_METADATA_MAX_ENTRIES = "server.static.metadata.maxEntries";
     private static final String ATTRIBUTE_ERROR_DOCUMENT_404 = "server.errorDocument.404";
     private static final String ATTRIBUTE_ERROR_DOCUMENT_403 = "server.errorDocument.403";
     private static final String ATTRIBUTE_DEFAULT_MIME_TYPE = "server.mimeType.defaultMimeType";
@@ -59,10 +73,24 @@ public class ServerConfigImpl implements ServerConfig {
     private int listenPort;
     private MimeTypeMapping mimeTypeMapping;
     private int maxServerThreads;
+    private String engine;
+    private String executor;
     private boolean keepAlive;
+    private int keepAliveTimeout;
+    private int keepAliveMaxRequests;
+    private int uploadMemoryThreshold;
+    private long uploadMemoryLimit;
+    private int uploadBufferSize;
+    private long staticCacheMaxSize;
+    private long staticCacheMaxEntrySize;
+    private long staticMappedMaxSize;
+    private long staticMappedMinFileSize;
+    private long staticMetadataTtl;
+    private int staticMetadataMaxEntries;
     private String errorDocument404Path;
     private String errorDocument403Path;
     private List<ResourceProvider> resourceProviders = Collections.emptyList();
+    private ResourceRouter resourceRouter = new ResourceRouter(resourceProviders);
     private Properties properties = new Properties();
 
     public ServerConfigImpl(String basePath, String tempPath, Properties properties) {
@@ -73,7 +101,20 @@ public class ServerConfigImpl implements ServerConfig {
         assignListenPort(properties, 8080);
         assignDocumentRoot(basePath, properties, basePath + "www" + File.separator);
         assignMaxThreads(properties, 10);
+        assignEngine(properties, ENGINE_BLOCKING);
+        assignExecutor(properties, EXECUTOR_BOUNDED);
         assignKeepAlive(properties, false);
+        assignKeepAliveTimeout(properties, 5);
+        assignKeepAliveMaxRequests(properties, 100);
+        assignUploadMemoryThreshold(properties, 16 * 1024);
+        assignUploadMemoryLimit(properties, 4 * 1024 * 1024);
+        assignUploadBufferSize(properties, 16 * 1024);
+        assignStaticCacheMaxSize(properties, 0);
+        assignStaticCacheMaxEntrySize(properties, 256 * 1024);
+        assignStaticMappedMaxSize(properties, 0);
+        assignStaticMappedMinFileSize(properties, 1024 * 1024);
+        assignStaticMetadataTtl(properties, 1000);
+        assignStaticMetadataMaxEntries(properties, 4096);
         assign404Document(basePath, properties);
         assign403Document(basePath, properties);
         try {
@@ -157,6 +198,22 @@ public class ServerConfigImpl implements ServerConfig {
         }
     }
 
+    private void assignEngine(Properties properties, String defaultValue) {
+        if (getResolvedProperty(properties, ATTRIBUTE_ENGINE) != null) {
+            engine = getResolvedProperty(properties, ATTRIBUTE_ENGINE).trim().toLowerCase();
+        } else {
+            engine = defaultValue;
+        }
+    }
+
+    private void assignExecutor(Properties properties, String defaultValue) {
+        if (getResolvedProperty(properties, ATTRIBUTE_EXECUTOR) != null) {
+            executor = getResolvedProperty(properties, ATTRIBUTE_EXECUTOR).trim();
+        } else {
+            executor = defaultValue;
+        }
+    }
+
     private void assignKeepAlive(Properties properties, boolean defaultValue) {
         if (getResolvedProperty(properties, ATTRIBUTE_KEEP_ALIVE) != null) {
             keepAlive =
@@ -166,6 +223,105 @@ public class ServerConfigImpl implements ServerConfig {
         }
     }
 
+    private void assignKeepAliveTimeout(Properties properties, int defaultValue) {
+        if (getResolvedProperty(properties, ATTRIBUTE_KEEP_ALIVE_TIMEOUT) != null) {
+            keepAliveTimeout =
+                    Integer.parseInt(getResolvedProperty(properties, ATTRIBUTE_KEEP_ALIVE_TIMEOUT));
+        } else {
+            keepAliveTimeout = defaultValue;
+        }
+    }
+
+    private void assignKeepAliveMaxRequests(Properties properties, int defaultValue) {
+        if (getResolvedProperty(properties, ATTRIBUTE_KEEP_ALIVE_MAX_REQUESTS) != null) {
+            keepAliveMaxRequests =
+                    Integer.parseInt(getResolvedProperty(properties, ATTRIBUTE_KEEP_ALIVE_MAX_REQUESTS));
+        } else {
+            keepAliveMaxRequests = defaultValue;
+        }
+    }
+
+    private void assignUploadMemoryThreshold(Properties properties, int defaultValue) {
+        if (getResolvedProperty(properties, ATTRIBUTE_UPLOAD_MEMORY_THRESHOLD) != null) {
+            uploadMemoryThreshold =
+                    Integer.parseInt(getResolvedProperty(properties, ATTRIBUTE_UPLOAD_MEMORY_THRESHOLD));
+        } else {
+            uploadMemoryThreshold = defaultValue;
+        }
+    }
+
+    private void assignUploadMemoryLimit(Properties properties, long defaultValue) {
+        if (getResolvedProperty(properties, ATTRIBUTE_UPLOAD_MEMORY_LIMIT) != null) {
+            uploadMemoryLimit =
+                    Long.parseLong(getResolvedProperty(properties, ATTRIBUTE_UPLOAD_MEMORY_LIMIT));
+        } else {
+            uploadMemoryLimit = defaultValue;
+        }
+    }
+
+    private void assignUploadBufferSize(Properties properties, int defaultValue) {
+        if (getResolvedProperty(properties, ATTRIBUTE_UPLOAD_BUFFER_SIZE) != null) {
+            uploadBufferSize =
+                    Integer.parseInt(getResolvedProperty(properties, ATTRIBUTE_UPLOAD_BUFFER_SIZE));
+        } else {
+            uploadBufferSize = defaultValue;
+        }
+    }
+
+    private void assignStaticCacheMaxSize(Properties properties, long defaultValue) {
+        if (getResolvedProperty(properties, ATTRIBUTE_STATIC_CACHE_MAX_SIZE) != null) {
+            staticCacheMaxSize =
+                    Long.parseLong(getResolvedProperty(properties, ATTRIBUTE_STATIC_CACHE_MAX_SIZE));
+        } else {
+            staticCacheMaxSize = defaultValue;
+        }
+    }
+
+    private void assignStaticCacheMaxEntrySize(Properties properties, long defaultValue) {
+        if (getResolvedProperty(properties, ATTRIBUTE_STATIC_CACHE_MAX_ENTRY_SIZE) != null) {
+            staticCacheMaxEntrySize =
+                    Long.parseLong(getResolvedProperty(properties, ATTRIBUTE_STATIC_CACHE_MAX_ENTRY_SIZE));
+        } else {
+            staticCacheMaxEntrySize = defaultValue;
+        }
+    }
+
+    private void assignStaticMappedMaxSize(Properties properties, long defaultValue) {
+        if (getResolvedProperty(properties, ATTRIBUTE_STATIC_MAPPED_MAX_SIZE) != null) {
+            staticMappedMaxSize =
+                    Long.parseLong(getResolvedProperty(properties, ATTRIBUTE_STATIC_MAPPED_MAX_SIZE));
+        } else {
+            staticMappedMaxSize = defaultValue;
+        }
+    }
+
+    private void assignStaticMappedMinFileSize(Properties properties, long defaultValue) {
+        if (getResolvedProperty(properties, ATTRIBUTE_STATIC_MAPPED_MIN_FILE_SIZE) != null) {
+            staticMappedMinFileSize =
+                    Long.parseLong(getResolvedProperty(properties, ATTRIBUTE_STATIC_MAPPED_MIN_FILE_SIZE));
+        } else {
+            staticMappedMinFileSize = defaultValue;
+        }
+    }
+
+    private void assignStaticMetadataTtl(Properties properties, long defaultValue) {
+        if (getResolvedProperty(properties, ATTRIBUTE_STATIC_METADATA_TTL) != null) {
+            staticMetadataTtl =
+                    Long.parseLong(getResolvedProperty(properties, ATTRIBUTE_STATIC_METADATA_TTL));
+        } else {
+            staticMetadataTtl = defaultValue;
+        }
+    }
+
+    private void assignStaticMetadataMaxEntries(Properties properties, int defaultValue) {
+        if (getResolvedProperty(properties, ATTRIBUTE_STATIC_METADATA_MAX_ENTRIES) != null) {
+            staticMetadataMaxEntries =
+                    Integer.parseInt(getResolvedProperty(properties, ATTRIBUTE_STATIC_METADATA_MAX_ENTRIES));
+        } else {
+            staticMetadataMaxEntries = defaultValue;
+        }
+    }
+
     private void assignMaxThreads(Properties properties, int defaultValue) {
         if (getResolvedProperty(properties, ATTRIBUTE_MAX_THREADS) != null) {
             maxServerThreads =
@@ -232,11 +388,76 @@ public class ServerConfigImpl implements ServerConfig {
         return maxServerThreads;
     }
 
+    @Override
+    public String getEngine() {
+        return engine;
+    }
+
+    @Override
+    public String getExecutor() {
+        return executor;
+    }
+
     @Override
     public boolean isKeepAlive() {
         return keepAlive;
     }
 
+    @Override
+    public int getKeepAliveTimeout() {
+        return keepAliveTimeout;
+    }
+
+    @Override
+    public int getKeepAliveMaxRequests() {
+        return keepAliveMaxRequests;
+    }
+
+    @Override
+    public int getUploadMemoryThreshold() {
+        return uploadMemoryThreshold;
+    }
+
+    @Override
+    public long getUploadMemoryLimit() {
+        return uploadMemoryLimit;
+    }
+
+    @Override
+    public int getUploadBufferSize() {
+        return uploadBufferSize;
+    }
+
+    @Override
+    public long getStaticCacheMaxSize() {
+        return staticCacheMaxSize;
+    }
+
+    @Override
+    public long getStaticCacheMaxEntrySize() {
+        return staticCacheMaxEntrySize;
+    }
+
+    @Override
+    public long getStaticMappedMaxSize() {
+        return staticMappedMaxSize;
+    }
+
+    @Override
+    public long getStaticMappedMinFileSize() {
+        return staticMappedMinFileSize;
+    }
+
+    @Override
+    public long getStaticMetadataTtl() {
+        return staticMetadataTtl;
+    }
+
+    @Override
+    public int getStaticMetadataMaxEntries() {
+        return staticMetadataMaxEntries;
+    }
+
     @Override
     public String getErrorDocument404Path() {
         return errorDocument404Path;
@@ -262,8 +483,14 @@ public class ServerConfigImpl implements ServerConfig {
         return resourceProviders;
     }
 
+    @Override
+    public ResourceRouter getResourceRouter() {
+        return resourceRouter;
+    }
+
     public void setResourceProviders(List<ResourceProvider> resourceProviders) {
         this.resourceProviders = resourceProviders;
+        resourceRouter = new ResourceRouter(resourceProviders);
     }
 
     @Override
@@ -9,11 +9,13 @@ package ro.polak.http.controller.impl;
 
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.net.ServerSocketFactory;
 
+import ro.polak.http.configuration.ServerConfig;
 import ro.polak.http.configuration.ServerConfigFactory;
 import ro.polak.http.WebServer;
 import ro.polak.http.controller.Controller;
@@ -59,15 +61,22 @@ public class ControllerImpl implements Controller {
         if (webServer != null) {
             throw new IllegalStateException("Webserver already started!");
         }
+        ServerConfig serverConfig = serverConfigFactory.getServerConfig();
         ServerSocket serverSocket;
         try {
-            serverSocket = serverSocketFactory.createServerSocket();
+            if (ServerConfig.ENGINE_NIO.equals(serverConfig.getEngine()) || isDefaultFactory(serverSocketFactory)) {
+                // The selector engine requires a channel backed socket, the blocking engine uses
+                // the channel to send static files without copying them through the heap
+                serverSocket = ServerSocketChannel.open().socket();
+            } else {
+                serverSocket = serverSocketFactory.createServerSocket();
+            }
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Unable to create server socket ", e);
             return;
         }
 
-        webServer = new WebServer(serverSocket, serverConfigFactory.getServerConfig());
+        webServer = new WebServer(serverSocket, serverConfig);
         if (webServer.startServer()) {
             gui.start();
         } else {
@@ -75,6 +84,16 @@ public class ControllerImpl implements Controller {
         }
     }
 
+    /**
+     * Tells whether the factory creates plain server sockets that can be replaced by channel backed ones.
+     *
+     * @param serverSocketFactory
+     * @return
+     */
+    private boolean isDefaultFactory(ServerSocketFactory serverSocketFactory) {
+        return serverSocketFactory.getClass() == ServerSocketFactory.getDefault().getClass();
+    }
+
     @Override
     public void stop() throws IllegalStateException {
         if (webServer == null) {
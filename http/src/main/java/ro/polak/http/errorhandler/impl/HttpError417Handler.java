@@ -0,0 +1,24 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.errorhandler.impl;
+
+import ro.polak.http.errorhandler.AbstractPlainTextHttpErrorHandler;
+import ro.polak.http.servlet.HttpServletResponse;
+
+/**
+ * 417 Expectation Failed
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public class HttpError417Handler extends AbstractPlainTextHttpErrorHandler {
+
+    public HttpError417Handler() {
+        super(HttpServletResponse.STATUS_EXPECTATION_FAILED, "Error 417 - Expectation Failed");
+    }
+}
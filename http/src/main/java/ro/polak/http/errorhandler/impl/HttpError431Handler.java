@@ -0,0 +1,25 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.errorhandler.impl;
+
+import ro.polak.http.errorhandler.AbstractPlainTextHttpErrorHandler;
+import ro.polak.http.servlet.HttpServletResponse;
+
+/**
+ * 431 Request Header Fields Too Large
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public class HttpError431Handler extends AbstractPlainTextHttpErrorHandler {
+
+    public HttpError431Handler() {
+        super(HttpServletResponse.STATUS_REQUEST_HEADER_FIELDS_TOO_LARGE,
+                "Error 431 Request Header Fields Too Large");
+    }
+}
@@ -16,10 +16,12 @@ import ro.polak.http.errorhandler.HttpErrorHandlerResolver;
 import ro.polak.http.exception.AccessDeniedException;
 import ro.polak.http.exception.MethodNotAllowedException;
 import ro.polak.http.exception.NotFoundException;
+import ro.polak.http.exception.protocol.ExpectationFailedProtocolException;
 import ro.polak.http.exception.protocol.LengthRequiredException;
 import ro.polak.http.exception.protocol.PayloadTooLargeProtocolException;
 import ro.polak.http.exception.protocol.ProtocolException;
 import ro.polak.http.exception.protocol.RangeNotSatisfiableProtocolException;
+import ro.polak.http.exception.protocol.RequestHeaderFieldsTooLargeProtocolException;
 import ro.polak.http.exception.protocol.StatusLineTooLongProtocolException;
 import ro.polak.http.exception.protocol.UnsupportedProtocolException;
 import ro.polak.http.exception.protocol.UriTooLongProtocolException;
@@ -102,6 +104,10 @@ public class HttpErrorHandlerResolverImpl implements HttpErrorHandlerResolver {
             return new HttpError413Handler();
         } else if (e instanceof RangeNotSatisfiableProtocolException) {
             return new HttpError416Handler();
+        } else if (e instanceof RequestHeaderFieldsTooLargeProtocolException) {
+            return new HttpError431Handler();
+        } else if (e instanceof ExpectationFailedProtocolException) {
+            return new HttpError417Handler();
         }
 
         return new HttpError400Handler();
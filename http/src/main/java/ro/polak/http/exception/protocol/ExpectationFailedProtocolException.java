@@ -0,0 +1,18 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.exception.protocol;
+
+/**
+ * Expectation of the Expect header can not be met.
+ */
+public class ExpectationFailedProtocolException extends ProtocolException {
+
+    public ExpectationFailedProtocolException(String message) {
+        super(message);
+    }
+}
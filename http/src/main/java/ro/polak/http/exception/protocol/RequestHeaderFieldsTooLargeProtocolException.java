@@ -0,0 +1,18 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.exception.protocol;
+
+/**
+ * Request headers exceed their size or count limit.
+ */
+public class RequestHeaderFieldsTooLargeProtocolException extends ProtocolException {
+
+    public RequestHeaderFieldsTooLargeProtocolException(String message) {
+        super(message);
+    }
+}
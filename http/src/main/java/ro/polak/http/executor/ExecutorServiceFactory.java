@@ -0,0 +1,35 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.executor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+
+import ro.polak.http.configuration.ServerConfig;
+
+/**
+ * Creates the executor service the requests are served by.
+ * <p/>
+ * Custom implementations can be plugged in by setting the fully qualified name of the class
+ * as the server.executor property, the class must have a public no-argument constructor.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public interface ExecutorServiceFactory {
+
+    /**
+     * Creates a new executor service.
+     *
+     * @param serverConfig
+     * @param rejectedExecutionHandler handler that must be called for every task that can not be executed
+     * @return
+     */
+    ExecutorService createExecutorService(ServerConfig serverConfig,
+                                          RejectedExecutionHandler rejectedExecutionHandler);
+}
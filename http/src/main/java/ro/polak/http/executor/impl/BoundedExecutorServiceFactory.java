@@ -0,0 +1,38 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.executor.impl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import ro.polak.http.configuration.ServerConfig;
+import ro.polak.http.executor.ExecutorServiceFactory;
+
+/**
+ * Thread pool bounded by the maximum number of server threads, having a bounded queue.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public class BoundedExecutorServiceFactory implements ExecutorServiceFactory {
+
+    @Override
+    public ExecutorService createExecutorService(ServerConfig serverConfig,
+                                                 RejectedExecutionHandler rejectedExecutionHandler) {
+        return new ThreadPoolExecutor(1, serverConfig.getMaxServerThreads(),
+                20, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(serverConfig.getMaxServerThreads() * 3),
+                Executors.defaultThreadFactory(),
+                rejectedExecutionHandler
+        );
+    }
+}
@@ -0,0 +1,75 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.executor.impl;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes the tasks rejected by an executor service that has no notion of a rejection handler
+ * to the given handler, the same way {@link java.util.concurrent.ThreadPoolExecutor} does.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public class RejectionHandlingExecutorService extends AbstractExecutorService {
+
+    private final ExecutorService executorService;
+    private final RejectedExecutionHandler rejectedExecutionHandler;
+
+    /**
+     * Default constructor.
+     *
+     * @param executorService
+     * @param rejectedExecutionHandler
+     */
+    public RejectionHandlingExecutorService(final ExecutorService executorService,
+                                            final RejectedExecutionHandler rejectedExecutionHandler) {
+        this.executorService = executorService;
+        this.rejectedExecutionHandler = rejectedExecutionHandler;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        try {
+            executorService.execute(command);
+        } catch (RejectedExecutionException e) {
+            // There is no thread pool executor to pass
+            rejectedExecutionHandler.rejectedExecution(command, null);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        executorService.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return executorService.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return executorService.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return executorService.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executorService.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,66 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.executor.impl;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ro.polak.http.configuration.ServerConfig;
+import ro.polak.http.executor.ExecutorServiceFactory;
+
+/**
+ * Starts a new virtual thread for every task, the number of concurrent tasks is not limited.
+ * <p/>
+ * Virtual threads are only available on modern JVMs, on any other runtime
+ * (including Android) the factory falls back to the bounded pool.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public class VirtualThreadExecutorServiceFactory implements ExecutorServiceFactory {
+
+    private static final Logger LOGGER = Logger.getLogger(VirtualThreadExecutorServiceFactory.class.getName());
+    private static final String FACTORY_METHOD_NAME = "newVirtualThreadPerTaskExecutor";
+
+    private final ExecutorServiceFactory fallbackFactory;
+
+    /**
+     * Default constructor.
+     */
+    public VirtualThreadExecutorServiceFactory() {
+        this(new BoundedExecutorServiceFactory());
+    }
+
+    /**
+     * @param fallbackFactory factory used when virtual threads are not supported
+     */
+    public VirtualThreadExecutorServiceFactory(final ExecutorServiceFactory fallbackFactory) {
+        this.fallbackFactory = fallbackFactory;
+    }
+
+    @Override
+    public ExecutorService createExecutorService(ServerConfig serverConfig,
+                                                 RejectedExecutionHandler rejectedExecutionHandler) {
+        try {
+            // Resolved at runtime, the code is compiled against an API level that has no virtual threads
+            ExecutorService executorService = (ExecutorService) Executors.class
+                    .getMethod(FACTORY_METHOD_NAME).invoke(null);
+            return new RejectionHandlingExecutorService(executorService, rejectedExecutionHandler);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            LOGGER.log(Level.WARNING, "Virtual threads are not supported by the runtime, "
+                    + "falling back to {0}", new Object[]{
+                    fallbackFactory.getClass().getSimpleName()
+            });
+            return fallbackFactory.createExecutorService(serverConfig, rejectedExecutionHandler);
+        }
+    }
+}
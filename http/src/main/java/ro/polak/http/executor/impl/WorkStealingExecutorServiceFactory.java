@@ -0,0 +1,34 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.executor.impl;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionHandler;
+
+import ro.polak.http.configuration.ServerConfig;
+import ro.polak.http.executor.ExecutorServiceFactory;
+
+/**
+ * Work stealing pool having the parallelism of the maximum number of server threads.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public class WorkStealingExecutorServiceFactory implements ExecutorServiceFactory {
+
+    @Override
+    public ExecutorService createExecutorService(ServerConfig serverConfig,
+                                                 RejectedExecutionHandler rejectedExecutionHandler) {
+        // The tasks are never joined, asynchronous mode gives them FIFO ordering
+        ForkJoinPool pool = new ForkJoinPool(serverConfig.getMaxServerThreads(),
+                ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+
+        return new RejectionHandlingExecutorService(pool, rejectedExecutionHandler);
+    }
+}
@@ -0,0 +1,139 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.impl;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import ro.polak.http.servlet.HttpServletResponse;
+
+/**
+ * Request body read out of the connection input stream.
+ * <p/>
+ * The stream ends where the body ends so that the bytes that follow are left for the next request
+ * of the persistent connection. Closing the stream does not close the connection.
+ * <p/>
+ * A client that expects 100 Continue waits for it before sending the body. The interim response is
+ * sent only when the body is first read, so a request rejected before that gets its final status
+ * without the body being transferred.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public abstract class BodyInputStream extends FilterInputStream {
+
+    /**
+     * Remaining length of a body whose length is not known in advance.
+     */
+    public static final long UNKNOWN_LENGTH = Long.MAX_VALUE;
+
+    private static final int SKIP_BUFFER_SIZE = 4096;
+    private static final byte[] CONTINUE_RESPONSE = (HttpServletResponse.STATUS_CONTINUE + "\r\n\r\n")
+            .getBytes(Charset.forName("ISO-8859-1"));
+
+    private OutputStream continueOutputStream;
+
+    /**
+     * Default constructor.
+     *
+     * @param in the input stream of the connection
+     */
+    protected BodyInputStream(final InputStream in) {
+        super(in);
+    }
+
+    /**
+     * Returns the number of the body bytes not read yet.
+     *
+     * @return the number of bytes or {@link #UNKNOWN_LENGTH}
+     */
+    public abstract long getRemaining();
+
+    /**
+     * Makes the stream send 100 Continue to the given output of the connection before the body is first read.
+     *
+     * @param out
+     */
+    public void setContinueExpected(OutputStream out) {
+        continueOutputStream = out;
+    }
+
+    /**
+     * Tells whether the client still waits for 100 Continue before sending the body.
+     *
+     * @return
+     */
+    public boolean isContinuePending() {
+        return continueOutputStream != null;
+    }
+
+    /**
+     * Sends the 100 Continue interim response if the client waits for it, to be called before reading the body.
+     *
+     * @throws IOException
+     */
+    protected void sendContinueIfExpected() throws IOException {
+        if (continueOutputStream != null) {
+            OutputStream out = continueOutputStream;
+            continueOutputStream = null;
+            out.write(CONTINUE_RESPONSE);
+            out.flush();
+        }
+    }
+
+    /**
+     * Reads and discards the rest of the body, provided it is not longer than the given limit.
+     *
+     * @param maxLength
+     * @return whether the whole body has been consumed
+     * @throws IOException
+     */
+    public boolean discard(long maxLength) throws IOException {
+        long remaining = getRemaining();
+        if (remaining != UNKNOWN_LENGTH && remaining > maxLength) {
+            return false;
+        }
+
+        byte[] buffer = new byte[(int) Math.min(SKIP_BUFFER_SIZE, Math.max(Math.min(remaining, maxLength), 1))];
+        long discarded = 0;
+        int numberOfBytesRead;
+        while ((numberOfBytesRead = read(buffer, 0, buffer.length)) != -1) {
+            discarded += numberOfBytesRead;
+            if (discarded > maxLength) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        // Not supported
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("Mark/reset not supported");
+    }
+
+    /**
+     * Does not close the connection, the unread bytes of the body are left in the stream.
+     */
+    @Override
+    public void close() {
+        // The connection is managed by the server
+    }
+}
@@ -0,0 +1,204 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import ro.polak.http.Statistics;
+import ro.polak.http.exception.protocol.PayloadTooLargeProtocolException;
+import ro.polak.http.exception.protocol.ProtocolException;
+import ro.polak.http.exception.protocol.RequestHeaderFieldsTooLargeProtocolException;
+
+/**
+ * Request body sent using the chunked transfer coding, decodes the chunks as they arrive.
+ * <p/>
+ * The chunk extensions and the trailer fields are read and ignored.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @url https://tools.ietf.org/html/rfc7230#section-4.1
+ * @since 201806
+ */
+public class ChunkedInputStream extends BodyInputStream {
+
+    private static final int CHUNK_SIZE_LINE_MAX_LENGTH = 1024;
+    private static final int TRAILER_MAX_LENGTH = 8 * 1024;
+    private static final int MAX_HEX_DIGITS = 15;
+    private static final char CR = '\r';
+    private static final char LF = '\n';
+
+    private final long maxLength;
+    private long length = 0;
+    private long chunkRemaining = 0;
+    private boolean isFirstChunk = true;
+    private boolean isFinished = false;
+
+    /**
+     * Default constructor.
+     *
+     * @param in        the input stream of the connection
+     * @param maxLength the maximum length of the decoded body
+     */
+    public ChunkedInputStream(final InputStream in, final long maxLength) {
+        super(in);
+        this.maxLength = maxLength;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (isFinished) {
+            return -1;
+        }
+        sendContinueIfExpected();
+        if (chunkRemaining == 0 && !readChunkHeader()) {
+            return -1;
+        }
+
+        int numberOfBytesRead = in.read(b, off, (int) Math.min(len, chunkRemaining));
+        if (numberOfBytesRead == -1) {
+            throw new IOException("Premature end of stream, " + chunkRemaining + " bytes of the chunk are missing");
+        }
+        chunkRemaining -= numberOfBytesRead;
+        Statistics.addBytesReceived(numberOfBytesRead);
+        return numberOfBytesRead;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(Math.max(n, 1), 2048)];
+        long skipped = 0;
+        int numberOfBytesRead;
+        while (skipped < n && (numberOfBytesRead = read(buffer, 0, (int) Math.min(buffer.length, n - skipped))) != -1) {
+            skipped += numberOfBytesRead;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (isFinished) {
+            return 0;
+        }
+        return (int) Math.min(in.available(), chunkRemaining);
+    }
+
+    @Override
+    public long getRemaining() {
+        return isFinished ? 0 : UNKNOWN_LENGTH;
+    }
+
+    /**
+     * Reads the size line of the next chunk, the trailer follows the last chunk.
+     *
+     * @return false when the last chunk has been reached
+     * @throws IOException
+     */
+    private boolean readChunkHeader() throws IOException {
+        if (!isFirstChunk && readLine(0) == null) {
+            throw new ProtocolException("Malformed chunk, missing line terminator after the chunk data");
+        }
+        isFirstChunk = false;
+
+        String chunkSizeLine = readLine(CHUNK_SIZE_LINE_MAX_LENGTH);
+        if (chunkSizeLine == null) {
+            throw new ProtocolException("Chunk size line exceeds " + CHUNK_SIZE_LINE_MAX_LENGTH + " characters");
+        }
+
+        long chunkSize = parseChunkSize(chunkSizeLine);
+        if (chunkSize == 0) {
+            readTrailer();
+            isFinished = true;
+            return false;
+        }
+
+        length += chunkSize;
+        if (length > maxLength) {
+            throw new PayloadTooLargeProtocolException("Payload exceeds the limit of " + maxLength + "b");
+        }
+
+        chunkRemaining = chunkSize;
+        return true;
+    }
+
+    private long parseChunkSize(String line) {
+        int end = line.indexOf(';');
+        if (end == -1) {
+            end = line.length();
+        }
+        while (end > 0 && (line.charAt(end - 1) == ' ' || line.charAt(end - 1) == '\t')) {
+            end--;
+        }
+
+        if (end == 0 || end > MAX_HEX_DIGITS) {
+            throw new ProtocolException("Malformed chunk size " + line);
+        }
+
+        long size = 0;
+        for (int i = 0; i < end; i++) {
+            int digit = Character.digit(line.charAt(i), 16);
+            if (digit == -1) {
+                throw new ProtocolException("Malformed chunk size " + line);
+            }
+            size = (size << 4) + digit;
+        }
+        return size;
+    }
+
+    private void readTrailer() throws IOException {
+        int trailerLength = 0;
+        String line;
+        do {
+            line = readLine(TRAILER_MAX_LENGTH - trailerLength);
+            if (line == null) {
+                throw new RequestHeaderFieldsTooLargeProtocolException("Exceeded max trailer size of " + TRAILER_MAX_LENGTH);
+            }
+            trailerLength += line.length();
+        } while (line.length() != 0);
+    }
+
+    /**
+     * Reads a line, the line terminator is not included.
+     *
+     * @param maxLength the maximum length of the line
+     * @return the line or null when it exceeds the maximum length
+     * @throws IOException
+     */
+    private String readLine(int maxLength) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int numberOfBytesRead = 0;
+        try {
+            int b;
+            while ((b = in.read()) != LF) {
+                if (b == -1) {
+                    throw new IOException("Premature end of stream, the chunked body is incomplete");
+                }
+                ++numberOfBytesRead;
+                if (b == CR) {
+                    continue;
+                }
+                if (line.length() == maxLength) {
+                    return null;
+                }
+                line.append((char) b);
+            }
+            ++numberOfBytesRead;
+        } finally {
+            Statistics.addBytesReceived(numberOfBytesRead);
+        }
+        return line.toString();
+    }
+}
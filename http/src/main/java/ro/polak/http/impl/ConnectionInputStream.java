@@ -0,0 +1,132 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.impl;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Buffered input of a single client connection.
+ * <p/>
+ * The buffered bytes can be scanned in place and only the bytes that have been used are consumed,
+ * the remaining ones are left to the request body and to the pipelined requests. The connection
+ * also keeps the buffer the request heads are collected in, it is reused by all of its requests.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public class ConnectionInputStream extends BufferedInputStream {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int HEAD_BUFFER_SIZE = 1024;
+
+    private byte[] headBuffer;
+
+    /**
+     * Default constructor.
+     *
+     * @param in
+     */
+    public ConnectionInputStream(final InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor with the given buffer size. A stream with a buffer of a single byte never reads
+     * ahead of the consumed bytes.
+     *
+     * @param in
+     * @param size
+     */
+    public ConnectionInputStream(final InputStream in, final int size) {
+        super(in, size);
+    }
+
+    /**
+     * Makes sure there is at least one buffered byte, reading from the underlying stream if needed.
+     *
+     * @return false when the end of the stream has been reached
+     * @throws IOException
+     */
+    public synchronized boolean fill() throws IOException {
+        if (pos < count) {
+            return true;
+        }
+        if (super.read() == -1) {
+            return false;
+        }
+        pos--;
+        return true;
+    }
+
+    /**
+     * Returns the buffer, the unconsumed bytes span from {@link #getPosition()} to {@link #getLimit()}.
+     *
+     * @return
+     */
+    public synchronized byte[] getBuffer() {
+        return buf;
+    }
+
+    /**
+     * Returns the position of the first unconsumed byte of the buffer.
+     *
+     * @return
+     */
+    public synchronized int getPosition() {
+        return pos;
+    }
+
+    /**
+     * Returns the position following the last buffered byte.
+     *
+     * @return
+     */
+    public synchronized int getLimit() {
+        return count;
+    }
+
+    /**
+     * Consumes the given number of the buffered bytes.
+     *
+     * @param length
+     */
+    public synchronized void consume(int length) {
+        if (length < 0 || length > count - pos) {
+            throw new IllegalArgumentException("Unable to consume " + length + " out of "
+                    + (count - pos) + " buffered bytes");
+        }
+        pos += length;
+    }
+
+    /**
+     * Returns the buffer the request head is collected in.
+     *
+     * @return
+     */
+    public byte[] getHeadBuffer() {
+        if (headBuffer == null) {
+            headBuffer = new byte[HEAD_BUFFER_SIZE];
+        }
+        return headBuffer;
+    }
+
+    /**
+     * Doubles the head buffer up to the given maximum length, the collected bytes are kept.
+     *
+     * @param maxLength
+     * @return the grown buffer
+     */
+    public byte[] growHeadBuffer(int maxLength) {
+        byte[] buffer = getHeadBuffer();
+        headBuffer = Arrays.copyOf(buffer, Math.max(buffer.length, Math.min(buffer.length * 2, maxLength)));
+        return headBuffer;
+    }
+}
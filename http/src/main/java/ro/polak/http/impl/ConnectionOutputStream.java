@@ -0,0 +1,148 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Buffered output of a single client connection.
+ * <p/>
+ * While the flush is deferred, the responses to pipelined requests are accumulated in the buffer
+ * and sent to the client using as few socket writes as possible.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public class ConnectionOutputStream extends BufferedOutputStream {
+
+    /**
+     * The buffer is never grown above this size regardless of what the servlet asks for.
+     */
+    public static final int MAX_BUFFER_SIZE = 1024 * 1024;
+
+    private final WritableByteChannel channel;
+    private final int defaultBufferSize;
+    private boolean isFlushDeferred = false;
+
+    /**
+     * Default constructor.
+     *
+     * @param out
+     * @param size
+     */
+    public ConnectionOutputStream(final OutputStream out, final int size) {
+        this(out, size, null);
+    }
+
+    /**
+     * Constructor for connections backed by a channel.
+     *
+     * @param out
+     * @param size
+     * @param channel the channel the output stream writes to, can be null
+     */
+    public ConnectionOutputStream(final OutputStream out, final int size, final WritableByteChannel channel) {
+        super(out, size);
+        this.channel = channel;
+        defaultBufferSize = size;
+    }
+
+    /**
+     * Returns the channel of the connection or null if the connection is not backed by a channel.
+     * The buffer must be flushed using {@link #flushConnection()} prior to writing to the channel.
+     *
+     * @return
+     */
+    public WritableByteChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Returns the current buffer size.
+     *
+     * @return
+     */
+    public synchronized int getBufferSize() {
+        return buf.length;
+    }
+
+    /**
+     * Grows the buffer to the given size capped at {@link #MAX_BUFFER_SIZE}, the buffered bytes are kept.
+     * The buffer is only shrunk by {@link #restoreBufferSize()}.
+     *
+     * @param size
+     */
+    public synchronized void setBufferSize(int size) {
+        size = Math.min(size, MAX_BUFFER_SIZE);
+        if (size > buf.length) {
+            buf = Arrays.copyOf(buf, size);
+        }
+    }
+
+    /**
+     * Shrinks a grown buffer back to the size the stream was created with once the response ends,
+     * so that a single large response does not pin the memory for the rest of the connection.
+     * The buffered bytes are kept.
+     */
+    public synchronized void restoreBufferSize() {
+        if (buf.length > defaultBufferSize) {
+            buf = Arrays.copyOf(buf, Math.max(count, defaultBufferSize));
+        }
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        if (count > 0 && len >= buf.length && channel instanceof GatheringByteChannel) {
+            ByteBuffer[] buffers = new ByteBuffer[]{ByteBuffer.wrap(buf, 0, count), ByteBuffer.wrap(b, off, len)};
+            while (buffers[1].hasRemaining()) {
+                ((GatheringByteChannel) channel).write(buffers);
+            }
+            count = 0;
+            return;
+        }
+
+        super.write(b, off, len);
+    }
+
+    /**
+     * Defers flushing, flush calls are ignored until the buffer is full or the connection is flushed.
+     *
+     * @param isFlushDeferred
+     */
+    public synchronized void setFlushDeferred(boolean isFlushDeferred) {
+        this.isFlushDeferred = isFlushDeferred;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (!isFlushDeferred) {
+            super.flush();
+        }
+    }
+
+    /**
+     * Writes all buffered bytes to the connection regardless of whether the flush is deferred.
+     *
+     * @throws IOException
+     */
+    public synchronized void flushConnection() throws IOException {
+        super.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushConnection();
+        out.close();
+    }
+}
@@ -0,0 +1,93 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import ro.polak.http.Statistics;
+
+/**
+ * Request body of a known length, reads no further than the declared Content-Length.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public class ContentLengthInputStream extends BodyInputStream {
+
+    private long remaining;
+
+    /**
+     * Default constructor.
+     *
+     * @param in            the input stream of the connection
+     * @param contentLength the length of the body
+     */
+    public ContentLengthInputStream(final InputStream in, final long contentLength) {
+        super(in);
+        remaining = contentLength;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (remaining == 0) {
+            return -1;
+        }
+
+        sendContinueIfExpected();
+        int b = in.read();
+        if (b == -1) {
+            throw new IOException("Premature end of stream, " + remaining + " bytes of the body are missing");
+        }
+        consumed(1);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (remaining == 0) {
+            return -1;
+        }
+
+        sendContinueIfExpected();
+        int numberOfBytesRead = in.read(b, off, (int) Math.min(len, remaining));
+        if (numberOfBytesRead == -1) {
+            throw new IOException("Premature end of stream, " + remaining + " bytes of the body are missing");
+        }
+        consumed(numberOfBytesRead);
+        return numberOfBytesRead;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n > 0 && remaining > 0) {
+            sendContinueIfExpected();
+        }
+        long skipped = in.skip(Math.min(n, remaining));
+        consumed(skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(in.available(), remaining);
+    }
+
+    @Override
+    public long getRemaining() {
+        return remaining;
+    }
+
+    private void consumed(long numberOfBytes) {
+        remaining -= numberOfBytes;
+        Statistics.addBytesReceived(numberOfBytes);
+    }
+}
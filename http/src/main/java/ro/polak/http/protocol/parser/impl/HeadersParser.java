@@ -7,9 +7,6 @@
 
 package ro.polak.http.protocol.parser.impl;
 
-import java.util.StringTokenizer;
-import java.util.regex.Pattern;
-
 import ro.polak.http.Headers;
 import ro.polak.http.protocol.parser.MalformedInputException;
 import ro.polak.http.protocol.parser.Parser;
@@ -22,12 +19,12 @@ import ro.polak.http.protocol.parser.Parser;
  */
 public class HeadersParser implements Parser<Headers> {
 
-    private static final String NEW_LINE = "\r\n";
+    private static final char CR = '\r';
+    private static final char LF = '\n';
     private static final char SPACE = ' ';
     private static final char TAB = '\t';
-    private static final String VALUE_SEPARATOR = ":";
+    private static final char VALUE_SEPARATOR = ':';
     private static final char COMA = ',';
-    private static final Pattern LTRIM_PATTERN = Pattern.compile("^\\s+");
 
     /**
      * Parses message headers.
@@ -55,54 +52,68 @@ public class HeadersParser implements Parser<Headers> {
 
         Headers headers = new Headers();
 
-        // Mandatory \r https://www.w3.org/Protocols/rfc2616/rfc2616-sec2.html#sec2.2
-        StringTokenizer st = new StringTokenizer(headersString, NEW_LINE);
         String lastHeaderName = null;
         StringBuilder lastHeaderValue = new StringBuilder();
 
-        while (st.hasMoreElements()) {
-            String line = st.nextToken();
-            char firstChar = line.charAt(0);
+        int length = headersString.length();
+        int lineStart = 0;
+        while (lineStart < length) {
+            // Mandatory \r https://www.w3.org/Protocols/rfc2616/rfc2616-sec2.html#sec2.2
+            // Any sequence of line terminators is skipped
+            char firstChar = headersString.charAt(lineStart);
+            if (firstChar == CR || firstChar == LF) {
+                lineStart++;
+                continue;
+            }
+
+            int lineEnd = lineStart + 1;
+            while (lineEnd < length && headersString.charAt(lineEnd) != CR && headersString.charAt(lineEnd) != LF) {
+                lineEnd++;
+            }
 
             // Multiline headers start with a space or a tab
             if (firstChar == SPACE || firstChar == TAB) {
                 // Protection against header string starting with the space or tab character
                 if (null != lastHeaderName) {
-                    lastHeaderValue.append(" ");
-                    lastHeaderValue.append(ltrim(line));
+                    lastHeaderValue.append(SPACE);
+                    lastHeaderValue.append(headersString, ltrim(headersString, lineStart, lineEnd), lineEnd);
                     headers.setHeader(lastHeaderName, lastHeaderValue.toString()); // Overwrite the previous value
                 }
             } else {
                 // Cleans up the previous value
                 lastHeaderValue.setLength(0);
 
-                String headerLineValues[] = line.split(VALUE_SEPARATOR, 2);
+                int separatorPosition = headersString.indexOf(VALUE_SEPARATOR, lineStart);
+                if (separatorPosition != -1 && separatorPosition < lineEnd) {
+                    lastHeaderName = headersString.substring(lineStart, separatorPosition);
 
-                if (headerLineValues.length < 2) {
-                    continue;
-                }
+                    if (joinRepeatingHeaders && headers.containsHeader(lastHeaderName)) {
+                        lastHeaderValue.append(headers.getHeader(lastHeaderName)).append(COMA);
+                    }
 
-                lastHeaderName = headerLineValues[0];
-
-                if (joinRepeatingHeaders && headers.containsHeader(lastHeaderName)) {
-                    lastHeaderValue.append(headers.getHeader(lastHeaderName)).append(COMA);
+                    lastHeaderValue.append(headersString, ltrim(headersString, separatorPosition + 1, lineEnd), lineEnd);
+                    headers.setHeader(lastHeaderName, lastHeaderValue.toString());
                 }
-
-                lastHeaderValue.append(ltrim(headerLineValues[1].substring(0, headerLineValues[1].length())));
-                headers.setHeader(lastHeaderName, lastHeaderValue.toString());
             }
+
+            lineStart = lineEnd;
         }
 
         return headers;
     }
 
     /**
-     * Left trims the given string.
+     * Returns the position of the first non white space character of the given range.
      *
      * @param text
+     * @param start
+     * @param end
      * @return
      */
-    private String ltrim(String text) {
-        return LTRIM_PATTERN.matcher(text).replaceAll("");
+    private int ltrim(String text, int start, int end) {
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        return start;
     }
 }
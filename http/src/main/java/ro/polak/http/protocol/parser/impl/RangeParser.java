@@ -36,30 +36,45 @@ public class RangeParser implements Parser<List<Range>> {
 
         String[] rangesString = inputNormalized.substring(START_WORD.length()).split(RANGES_SEPARATOR);
         for (String rangeString : rangesString) {
-            if (rangeString.indexOf(RANGE_SEPARATOR) == -1) {
+            int separatorPosition = rangeString.indexOf(RANGE_SEPARATOR);
+            if (separatorPosition == -1) {
                 throw new MalformedInputException("Invalid range value " + rangeString);
             }
 
-            String[] values = rangeString.split(RANGE_SEPARATOR);
+            String from = rangeString.substring(0, separatorPosition).trim();
+            String to = rangeString.substring(separatorPosition + 1).trim();
 
-            if (values.length != 2) {
+            if (from.isEmpty() && to.isEmpty()) {
                 throw new MalformedInputException("Invalid range value " + rangeString);
             }
 
-            rangeList.add(getRange(values));
+            rangeList.add(new Range(getValue(from), getValue(to)));
         }
 
         return rangeList;
     }
 
-    private Range getRange(String[] values) throws MalformedInputException {
-        try {
-            Range range = new Range();
-            range.setFrom(Long.parseLong(values[0].trim()));
-            range.setTo(Long.parseLong(values[1].trim()));
+    /**
+     * Parses a single range position, an empty value stands for an open range boundary.
+     *
+     * @param value
+     * @return
+     * @throws MalformedInputException
+     */
+    private long getValue(String value) throws MalformedInputException {
+        if (value.isEmpty()) {
+            return Range.UNSPECIFIED;
+        }
 
-            return range;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new MalformedInputException("Invalid range value, unable to parse numeric value " + value);
+            }
+        }
 
+        try {
+            return Long.parseLong(value);
         } catch (NumberFormatException e) {
             throw new MalformedInputException("Invalid range value, unable to parse numeric values " + e.getMessage());
         }
@@ -20,8 +20,8 @@ import ro.polak.http.protocol.parser.Parser;
 public class RequestStatusParser implements Parser<RequestStatus> {
 
     private static final int NUMBER_OF_CHUNKS = 3;
-    private static final String STATUS_SEPARATOR = " ";
-    private static final String QUERY_STRING_START = "?";
+    private static final char STATUS_SEPARATOR = ' ';
+    private static final char QUERY_STRING_START = '?';
 
     /**
      * Parses status line.
@@ -32,32 +32,28 @@ public class RequestStatusParser implements Parser<RequestStatus> {
      */
     @Override
     public RequestStatus parse(String input) throws MalformedInputException {
-        RequestStatus status = new RequestStatus();
-        status.setQueryString("");
-        String uri;
-
+        int methodEnd = input.indexOf(STATUS_SEPARATOR);
+        int uriEnd = methodEnd == -1 ? -1 : input.indexOf(STATUS_SEPARATOR, methodEnd + 1);
 
-        String statusArray[] = input.split(STATUS_SEPARATOR, NUMBER_OF_CHUNKS);
-
-        if (statusArray.length < NUMBER_OF_CHUNKS) {
+        if (uriEnd == -1) {
             throw new MalformedInputException("Input status string should be composed out of " +
                     NUMBER_OF_CHUNKS + " chunks. Received " + input);
         }
 
-        // First element of the array is the HTTP method
-        status.setMethod(statusArray[0].toUpperCase());
-        // Second element of the array is the HTTP queryString
-        uri = statusArray[1];
-
+        RequestStatus status = new RequestStatus();
+        status.setMethod(input.substring(0, methodEnd).toUpperCase());
         // Protocol is the third part of the status line
-        status.setProtocol(statusArray[2].trim());
-
-        int questionMarkPosition = uri.indexOf(QUERY_STRING_START);
-        if (questionMarkPosition > -1) {
-            status.setQueryString(uri.substring(questionMarkPosition + 1));
-            uri = uri.substring(0, questionMarkPosition);
+        status.setProtocol(input.substring(uriEnd + 1).trim());
+
+        int questionMarkPosition = input.indexOf(QUERY_STRING_START, methodEnd + 1);
+        if (questionMarkPosition > -1 && questionMarkPosition < uriEnd) {
+            status.setQueryString(input.substring(questionMarkPosition + 1, uriEnd));
+            status.setUri(input.substring(methodEnd + 1, questionMarkPosition));
+        } else {
+            status.setQueryString("");
+            status.setUri(input.substring(methodEnd + 1, uriEnd));
         }
-        status.setUri(uri);
+
         return status;
     }
 }
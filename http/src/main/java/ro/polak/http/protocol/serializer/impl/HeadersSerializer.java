@@ -33,10 +33,13 @@ public class HeadersSerializer implements Serializer<Headers> {
         Set<String> names = headers.keySet();
         StringBuilder sb = new StringBuilder();
         for (String name : names) {
-            sb.append(name)
-                    .append(KEY_VALUE_SEPARATOR)
-                    .append(headers.getHeader(name))
-                    .append(NEW_LINE);
+            // Multiple values, such as Set-Cookie, can not be joined and are serialized as separate lines
+            for (String value : headers.getHeaderValues(name)) {
+                sb.append(name)
+                        .append(KEY_VALUE_SEPARATOR)
+                        .append(value)
+                        .append(NEW_LINE);
+            }
         }
         sb.append(NEW_LINE);
 
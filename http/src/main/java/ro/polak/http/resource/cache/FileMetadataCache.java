@@ -0,0 +1,150 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.resource.cache;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Short lived cache of file metadata, saves the stat calls made when resolving resources.
+ * <p/>
+ * The paths known to be missing are kept apart from the existing files so that a flood of
+ * requests for missing resources can not evict the entries of the existing ones.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public class FileMetadataCache {
+
+    private final long ttl;
+    private final Map<String, Metadata> files;
+    private final Map<String, Long> missingFiles;
+
+    /**
+     * Default constructor.
+     *
+     * @param ttl        the number of milliseconds the metadata is considered up to date
+     * @param maxEntries the maximum number of both existing and missing files kept
+     */
+    public FileMetadataCache(final long ttl, final int maxEntries) {
+        this.ttl = ttl;
+        files = new BoundedMap<>(maxEntries);
+        missingFiles = new BoundedMap<>(maxEntries);
+    }
+
+    /**
+     * Returns the metadata of the file, reads it from the file system when not known or expired.
+     *
+     * @param path
+     * @param file
+     * @return
+     */
+    public Metadata get(String path, File file) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Long missingSince = missingFiles.get(path);
+            if (missingSince != null && now - missingSince < ttl) {
+                return Metadata.MISSING;
+            }
+            Metadata metadata = files.get(path);
+            if (metadata != null && now - metadata.checkedAt < ttl) {
+                return metadata;
+            }
+        }
+
+        Metadata metadata = Metadata.of(file, now);
+        synchronized (this) {
+            if (metadata.isFile()) {
+                missingFiles.remove(path);
+                files.put(path, metadata);
+            } else {
+                files.remove(path);
+                missingFiles.put(path, now);
+            }
+        }
+        return metadata;
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public synchronized void invalidateAll() {
+        files.clear();
+        missingFiles.clear();
+    }
+
+    /**
+     * Metadata of a single file.
+     */
+    public static final class Metadata {
+
+        private static final Metadata MISSING = new Metadata(false, 0, 0, 0);
+
+        private final boolean isFile;
+        private final long length;
+        private final long lastModified;
+        private final long checkedAt;
+
+        private Metadata(final boolean isFile, final long length, final long lastModified, final long checkedAt) {
+            this.isFile = isFile;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.checkedAt = checkedAt;
+        }
+
+        /**
+         * Reads the current metadata of the file.
+         *
+         * @param file
+         * @return
+         */
+        public static Metadata of(File file) {
+            return of(file, System.currentTimeMillis());
+        }
+
+        private static Metadata of(File file, long now) {
+            if (!file.isFile()) {
+                return MISSING;
+            }
+            return new Metadata(true, file.length(), file.lastModified(), now);
+        }
+
+        /**
+         * Tells whether the path denotes an existing regular file.
+         *
+         * @return
+         */
+        public boolean isFile() {
+            return isFile;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+
+    private static final class BoundedMap<K, V> extends LinkedHashMap<K, V> {
+
+        private final int maxEntries;
+
+        BoundedMap(final int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxEntries;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.resource.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ro.polak.http.utilities.IOUtilities;
+
+/**
+ * Off-heap store of memory mapped large static files.
+ * <p/>
+ * A file is mapped once it has been requested a few times, the total number of mapped bytes is
+ * capped and the least recently used mappings are evicted. An evicted mapping is no longer served
+ * and its memory is released by the platform once the buffer is garbage collected, as there is
+ * no public API to unmap a buffer explicitly.
+ * <p/>
+ * Reading a mapping of a file truncated meanwhile raises an InternalError instead of an
+ * IOException, the caller is expected to catch it and to invalidate the mapping.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public class MappedFileStore {
+
+    private static final int MAP_AFTER_HITS = 2;
+    private static final int MAX_TRACKED_FILES = 1024;
+
+    private final long maxSize;
+    private final long minFileSize;
+    private final LinkedHashMap<String, Mapping> mappings = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Integer> hits = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            return size() > MAX_TRACKED_FILES;
+        }
+    };
+    private long size;
+
+    /**
+     * Default constructor.
+     *
+     * @param maxSize     the total number of mapped bytes
+     * @param minFileSize the size of the smallest file to be mapped
+     */
+    public MappedFileStore(final long maxSize, final long minFileSize) {
+        this.maxSize = maxSize;
+        this.minFileSize = minFileSize;
+    }
+
+    /**
+     * Returns a read only view of the mapped file, maps the file when it has been requested
+     * frequently enough. Returns null when the file is not mapped.
+     *
+     * @param path
+     * @param file
+     * @param metadata the current metadata of the file
+     * @return
+     * @throws IOException
+     */
+    public ByteBuffer get(String path, File file, FileMetadataCache.Metadata metadata) throws IOException {
+        long length = metadata.getLength();
+        if (!metadata.isFile() || length < minFileSize || length > maxSize || length > Integer.MAX_VALUE) {
+            return null;
+        }
+        long lastModified = metadata.getLastModified();
+
+        synchronized (this) {
+            Mapping mapping = mappings.get(path);
+            if (mapping != null) {
+                if (mapping.lastModified == lastModified && mapping.buffer.capacity() == length) {
+                    return mapping.buffer.duplicate();
+                }
+                remove(path);
+            }
+
+            Integer numberOfHits = hits.get(path);
+            numberOfHits = numberOfHits == null ? 1 : numberOfHits + 1;
+            if (numberOfHits < MAP_AFTER_HITS) {
+                hits.put(path, numberOfHits);
+                return null;
+            }
+            hits.remove(path);
+        }
+
+        MappedByteBuffer buffer = map(file, length);
+        if (file.lastModified() != lastModified || file.length() != length) {
+            return null;
+        }
+
+        synchronized (this) {
+            Mapping previous = mappings.put(path, new Mapping(buffer, lastModified));
+            if (previous != null) {
+                size -= previous.buffer.capacity();
+            }
+            size += length;
+            evict();
+        }
+
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Drops the mapping of the given path.
+     *
+     * @param path
+     */
+    public synchronized void invalidate(String path) {
+        remove(path);
+        hits.remove(path);
+    }
+
+    /**
+     * Returns the total number of mapped bytes.
+     *
+     * @return
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Drops all the mappings.
+     */
+    public synchronized void clear() {
+        mappings.clear();
+        hits.clear();
+        size = 0;
+    }
+
+    private MappedByteBuffer map(File file, long length) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            // The mapping remains valid once the channel is closed
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } finally {
+            IOUtilities.closeSilently(randomAccessFile);
+        }
+    }
+
+    private void evict() {
+        Iterator<Mapping> iterator = mappings.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            size -= iterator.next().buffer.capacity();
+            iterator.remove();
+        }
+    }
+
+    private void remove(String path) {
+        Mapping mapping = mappings.remove(path);
+        if (mapping != null) {
+            size -= mapping.buffer.capacity();
+        }
+    }
+
+    private static final class Mapping {
+
+        private final ByteBuffer buffer;
+        private final long lastModified;
+
+        Mapping(final ByteBuffer buffer, final long lastModified) {
+            this.buffer = buffer.asReadOnlyBuffer();
+            this.lastModified = lastModified;
+        }
+    }
+}
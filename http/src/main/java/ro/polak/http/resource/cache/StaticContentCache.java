@@ -0,0 +1,275 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.resource.cache;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ro.polak.http.utilities.DateUtilities;
+import ro.polak.http.utilities.IOUtilities;
+
+/**
+ * Bounded in-memory cache of small static files.
+ * <p/>
+ * The least recently used entries are evicted once the total size is exceeded. Entries are
+ * invalidated by a watcher of the document root where the platform supports it. On every hit the
+ * entry is also checked against the file modification time and length known to the caller.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public class StaticContentCache implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(StaticContentCache.class.getName());
+
+    private final long maxSize;
+    private final long maxEntrySize;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+    private volatile Closeable watcher;
+
+    /**
+     * Default constructor.
+     *
+     * @param maxSize      the total number of bytes of all the cached files
+     * @param maxEntrySize the size of the largest file to be cached
+     */
+    public StaticContentCache(final long maxSize, final long maxEntrySize) {
+        this.maxSize = maxSize;
+        this.maxEntrySize = Math.min(maxEntrySize, maxSize);
+    }
+
+    /**
+     * Starts watching the document root for changes, returns false when the platform provides
+     * no file watching and the cache relies on the modification time check only.
+     *
+     * @param root
+     * @return
+     */
+    public boolean watch(File root) {
+        try {
+            watcher = new StaticContentWatcher(this, root);
+            return true;
+        } catch (IOException | LinkageError e) {
+            LOGGER.log(Level.INFO, "Unable to watch {0} for changes, falling back to modification time checks",
+                    root.getAbsolutePath());
+            return false;
+        }
+    }
+
+    /**
+     * Returns the up to date cached entry for the given path or null.
+     *
+     * @param path
+     * @param metadata the current metadata of the file
+     * @return
+     */
+    public Entry get(String path, FileMetadataCache.Metadata metadata) {
+        String key = getKey(path);
+        if (key == null) {
+            return null;
+        }
+
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            return null;
+        }
+
+        if (metadata.getLastModified() != entry.lastModified || metadata.getLength() != entry.length) {
+            remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Reads the file into the cache, returns null when the file is not eligible for caching.
+     *
+     * @param path
+     * @param file
+     * @param metadata    the current metadata of the file
+     * @param contentType
+     * @return
+     * @throws IOException
+     */
+    public Entry load(String path, File file, FileMetadataCache.Metadata metadata, String contentType)
+            throws IOException {
+        long lastModified = metadata.getLastModified();
+        long length = metadata.getLength();
+        if (length > maxEntrySize || !metadata.isFile()) {
+            return null;
+        }
+        String key = getKey(path);
+        if (key == null) {
+            return null;
+        }
+
+        byte[] contents = new byte[(int) length];
+        InputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            int numberOfBytesRead;
+            while (offset < contents.length
+                    && (numberOfBytesRead = in.read(contents, offset, contents.length - offset)) != -1) {
+                offset += numberOfBytesRead;
+            }
+            if (offset < contents.length || in.read() != -1) {
+                return null;
+            }
+        } finally {
+            IOUtilities.closeSilently(in);
+        }
+
+        // The file has been modified while being read
+        if (file.lastModified() != lastModified || file.length() != length) {
+            return null;
+        }
+
+        Entry entry = new Entry(contents, contentType, lastModified);
+        put(key, entry);
+        return entry;
+    }
+
+    /**
+     * Removes the entry of the given path and all the entries below it.
+     *
+     * @param path
+     */
+    public synchronized void invalidate(String path) {
+        String key = getKey(path);
+        if (key == null) {
+            invalidateAll();
+            return;
+        }
+
+        String prefix = key.endsWith("/") ? key : key + "/";
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> mapEntry = iterator.next();
+            if (mapEntry.getKey().equals(key) || mapEntry.getKey().startsWith(prefix)) {
+                size -= mapEntry.getValue().length;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Returns the total number of cached bytes.
+     *
+     * @return
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Closeable currentWatcher = watcher;
+        watcher = null;
+        if (currentWatcher != null) {
+            currentWatcher.close();
+        }
+        invalidateAll();
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            size -= previous.length;
+        }
+        size += entry.length;
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            size -= iterator.next().length;
+            iterator.remove();
+        }
+    }
+
+    private synchronized void remove(String key, Entry entry) {
+        if (entries.get(key) == entry) {
+            entries.remove(key);
+            size -= entry.length;
+        }
+    }
+
+    /**
+     * Normalizes the path so that the same file is always cached under the same key.
+     *
+     * @param path
+     * @return the key or null if the path can not be cached
+     */
+    private String getKey(String path) {
+        if (path.contains("..")) {
+            return null;
+        }
+
+        StringBuilder key = new StringBuilder(path.length() + 1);
+        for (String segment : path.split("[/\\\\]")) {
+            if (!segment.isEmpty() && !segment.equals(".")) {
+                key.append('/').append(segment);
+            }
+        }
+        return key.length() == 0 ? "/" : key.toString();
+    }
+
+    /**
+     * Cached file contents together with the precomputed response headers.
+     */
+    public static final class Entry {
+
+        private final byte[] contents;
+        private final String contentType;
+        private final long length;
+        private final long lastModified;
+        private final String lastModifiedFormatted;
+
+        Entry(final byte[] contents, final String contentType, final long lastModified) {
+            this.contents = contents;
+            this.contentType = contentType;
+            this.length = contents.length;
+            this.lastModified = lastModified;
+            this.lastModifiedFormatted = DateUtilities.dateFormat(lastModified);
+        }
+
+        public byte[] getContents() {
+            return contents;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public String getLastModified() {
+            return lastModifiedFormatted;
+        }
+    }
+}
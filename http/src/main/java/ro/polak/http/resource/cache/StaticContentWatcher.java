@@ -0,0 +1,116 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.resource.cache;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Invalidates the cache entries of the files changed below the document root.
+ * <p/>
+ * Kept apart from the cache as java.nio.file is not available on all the supported platforms.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+class StaticContentWatcher implements Runnable, Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(StaticContentWatcher.class.getName());
+
+    private final StaticContentCache cache;
+    private final Path root;
+    private final WatchService watchService;
+    private volatile boolean isClosed = false;
+
+    /**
+     * Registers the document root and its subdirectories and starts watching them.
+     *
+     * @param cache
+     * @param root
+     * @throws IOException
+     */
+    StaticContentWatcher(final StaticContentCache cache, final File root) throws IOException {
+        this.cache = cache;
+        this.root = root.getAbsoluteFile().toPath().normalize();
+        watchService = this.root.getFileSystem().newWatchService();
+        try {
+            register(this.root.toFile());
+        } catch (IOException e) {
+            watchService.close();
+            throw e;
+        }
+
+        Thread thread = new Thread(this, "StaticContentWatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!isClosed) {
+                WatchKey key = watchService.take();
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    handleEvent(directory, event);
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        isClosed = true;
+        watchService.close();
+    }
+
+    private void handleEvent(Path directory, WatchEvent<?> event) {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            cache.invalidateAll();
+            return;
+        }
+
+        Path path = directory.resolve((Path) event.context());
+        cache.invalidate("/" + root.relativize(path).toString().replace(File.separatorChar, '/'));
+
+        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && path.toFile().isDirectory()) {
+            try {
+                register(path.toFile());
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to watch " + path + ", relying on modification time checks", e);
+                cache.invalidateAll();
+            }
+        }
+    }
+
+    private void register(File directory) throws IOException {
+        directory.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        File[] children = directory.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (child.isDirectory()) {
+                    register(child);
+                }
+            }
+        }
+    }
+}
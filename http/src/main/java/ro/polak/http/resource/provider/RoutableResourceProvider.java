@@ -0,0 +1,28 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.resource.provider;
+
+import java.util.List;
+
+import ro.polak.http.resource.router.Route;
+
+/**
+ * Resource provider serving its resources under known path prefixes.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public interface RoutableResourceProvider extends ResourceProvider {
+
+    /**
+     * Returns the routes of the resource provider, called once when the router is built.
+     *
+     * @return
+     */
+    List<Route<?>> getRoutes();
+}
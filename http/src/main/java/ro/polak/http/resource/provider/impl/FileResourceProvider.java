@@ -7,26 +7,33 @@
 
 package ro.polak.http.resource.provider.impl;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.List;
 
 import ro.polak.http.Headers;
 import ro.polak.http.MimeTypeMapping;
+import ro.polak.http.exception.NotFoundException;
 import ro.polak.http.exception.protocol.ProtocolException;
 import ro.polak.http.exception.protocol.RangeNotSatisfiableProtocolException;
 import ro.polak.http.protocol.parser.MalformedInputException;
 import ro.polak.http.protocol.parser.impl.RangeParser;
 import ro.polak.http.protocol.serializer.impl.RangePartHeaderSerializer;
+import ro.polak.http.resource.cache.FileMetadataCache;
+import ro.polak.http.resource.cache.MappedFileStore;
+import ro.polak.http.resource.cache.StaticContentCache;
 import ro.polak.http.resource.provider.ResourceProvider;
 import ro.polak.http.servlet.impl.HttpRequestImpl;
 import ro.polak.http.servlet.impl.HttpResponseImpl;
 import ro.polak.http.servlet.HttpServletResponse;
 import ro.polak.http.servlet.Range;
 import ro.polak.http.servlet.helper.RangeHelper;
+import ro.polak.http.utilities.DateUtilities;
 import ro.polak.http.utilities.IOUtilities;
 import ro.polak.http.utilities.StringUtilities;
 import ro.polak.http.utilities.FileUtilities;
@@ -41,12 +48,20 @@ import ro.polak.http.utilities.FileUtilities;
  */
 public class FileResourceProvider implements ResourceProvider {
 
+    /**
+     * Requests asking for more (non overlapping) ranges are served the complete content instead.
+     */
+    private static final int MAX_RANGES = 16;
+
     private final RangeParser rangeParser;
     private final RangeHelper rangeHelper;
     private final RangePartHeaderSerializer rangePartHeaderSerializer;
 
     private final MimeTypeMapping mimeTypeMapping;
     private final String basePath;
+    private final StaticContentCache staticContentCache;
+    private final MappedFileStore mappedFileStore;
+    private final FileMetadataCache fileMetadataCache;
 
     /**
      * Default constructor.
@@ -61,63 +76,185 @@ public class FileResourceProvider implements ResourceProvider {
                                 final RangePartHeaderSerializer rangePartHeaderSerializer,
                                 final MimeTypeMapping mimeTypeMapping,
                                 final String basePath) {
+        this(rangeParser, rangeHelper, rangePartHeaderSerializer, mimeTypeMapping, basePath, null, null, null);
+    }
+
+    /**
+     * Constructor keeping the small files in the given cache and mapping the large ones.
+     *
+     * @param rangeParser
+     * @param rangeHelper
+     * @param rangePartHeaderSerializer
+     * @param mimeTypeMapping
+     * @param basePath
+     * @param staticContentCache can be null
+     * @param mappedFileStore    can be null
+     * @param fileMetadataCache  can be null
+     */
+    public FileResourceProvider(final RangeParser rangeParser,
+                                final RangeHelper rangeHelper,
+                                final RangePartHeaderSerializer rangePartHeaderSerializer,
+                                final MimeTypeMapping mimeTypeMapping,
+                                final String basePath,
+                                final StaticContentCache staticContentCache,
+                                final MappedFileStore mappedFileStore,
+                                final FileMetadataCache fileMetadataCache) {
         this.rangeParser = rangeParser;
         this.rangeHelper = rangeHelper;
         this.rangePartHeaderSerializer = rangePartHeaderSerializer;
         this.mimeTypeMapping = mimeTypeMapping;
         this.basePath = basePath;
+        this.staticContentCache = staticContentCache;
+        this.mappedFileStore = mappedFileStore;
+        this.fileMetadataCache = fileMetadataCache;
     }
 
     @Override
     public boolean canLoad(String path) {
-        File file = getFile(path);
-        return file.exists() && file.isFile();
+        return getMetadata(path, getFile(path)).isFile();
     }
 
     @Override
     public void load(String path, HttpRequestImpl request, HttpResponseImpl response) throws IOException {
         File file = getFile(path);
+        // Shared by the caches, the served length is taken from the opened file
+        FileMetadataCache.Metadata metadata = getMetadata(path, file);
 
         // A server MUST ignore a Range header field received with a request method other than GET.
         boolean isGetRequest = request.getMethod().equals(HttpRequestImpl.METHOD_GET);
         boolean isPartialRequest = isGetRequest && request.getHeaders().containsHeader(Headers.HEADER_RANGE);
 
         if (isPartialRequest) {
-            loadPartialContent(request, response, file);
-        } else {
-            loadCompleteContent(request, response, file);
+            loadFile(request, response, path, file, getMappedFile(path, file, metadata), true);
+            return;
+        }
+
+        if (staticContentCache != null) {
+            StaticContentCache.Entry entry = staticContentCache.get(path, metadata);
+            if (entry == null && isGetRequest) {
+                // The body of a HEAD request is not read, the file is cached once it is requested
+                entry = staticContentCache.load(path, file, metadata, getContentType(file));
+            }
+            if (entry != null) {
+                loadCachedContent(request, response, entry);
+                return;
+            }
         }
+
+        loadFile(request, response, path, file, isGetRequest ? getMappedFile(path, file, metadata) : null, false);
     }
 
     @Override
     public void shutdown() {
-        // Do nothing
+        IOUtilities.closeSilently(staticContentCache);
+        if (mappedFileStore != null) {
+            mappedFileStore.clear();
+        }
     }
 
     private File getFile(String uri) {
         return new File(basePath + uri);
     }
 
-    private void loadCompleteContent(HttpRequestImpl request, HttpResponseImpl response, File file) throws IOException {
-        response.setContentType(mimeTypeMapping.getMimeTypeByExtension(FileUtilities.getExtension(file.getName())));
+    private FileMetadataCache.Metadata getMetadata(String path, File file) {
+        if (fileMetadataCache == null) {
+            return FileMetadataCache.Metadata.of(file);
+        }
+        return fileMetadataCache.get(path, file);
+    }
+
+    private ByteBuffer getMappedFile(String path, File file, FileMetadataCache.Metadata metadata)
+            throws IOException {
+        if (mappedFileStore == null) {
+            return null;
+        }
+        return mappedFileStore.get(path, file, metadata);
+    }
+
+    private String getContentType(File file) {
+        return mimeTypeMapping.getMimeTypeByExtension(FileUtilities.getExtension(file.getName()));
+    }
+
+    /**
+     * Serves the mapped file or the file opened once, the length is taken from what is served so
+     * that it is consistent with the body even when the file is being modified.
+     *
+     * @param request
+     * @param response
+     * @param path
+     * @param file
+     * @param mappedFile       can be null
+     * @param isPartialRequest
+     * @throws IOException
+     */
+    private void loadFile(HttpRequestImpl request, HttpResponseImpl response, String path, File file,
+                          ByteBuffer mappedFile, boolean isPartialRequest) throws IOException {
+        FileInputStream fileInputStream = null;
+        if (mappedFile == null) {
+            try {
+                fileInputStream = new FileInputStream(file);
+            } catch (FileNotFoundException e) {
+                // Removed since the resource was resolved
+                throw new NotFoundException();
+            }
+        }
+
+        try {
+            FileChannel fileChannel = fileInputStream != null ? fileInputStream.getChannel() : null;
+            long length = mappedFile != null ? mappedFile.capacity() : fileChannel.size();
+            if (isPartialRequest) {
+                loadPartialContent(request, response, file, length, mappedFile, fileChannel);
+            } else {
+                loadCompleteContent(request, response, file, length, mappedFile, fileChannel);
+            }
+        } catch (InternalError e) {
+            if (mappedFile == null) {
+                throw e;
+            }
+            // Raised when the mapped file is truncated while being read, the response can not be completed
+            mappedFileStore.invalidate(path);
+            throw new IOException("Mapped file " + path + " has been truncated while being served", e);
+        } finally {
+            IOUtilities.closeSilently(fileInputStream);
+        }
+    }
+
+    private void loadCachedContent(HttpRequestImpl request, HttpResponseImpl response,
+                                   StaticContentCache.Entry entry) throws IOException {
+        response.setContentType(entry.getContentType());
         response.setStatus(HttpServletResponse.STATUS_OK);
-        response.setContentLength(file.length());
+        response.setContentLength(entry.getLength());
         response.getHeaders().setHeader(Headers.HEADER_ACCEPT_RANGES, "bytes");
+        response.getHeaders().setHeader(Headers.HEADER_LAST_MODIFIED, entry.getLastModified());
         response.flushHeaders();
 
         if (!request.getMethod().equals(HttpRequestImpl.METHOD_HEAD)) {
-            InputStream fileInputStream = new FileInputStream(file);
-            try {
-                response.serveStream(fileInputStream);
-            } finally {
-                IOUtilities.closeSilently(fileInputStream);
-            }
+            response.serveBytes(entry.getContents());
         }
 
         response.flush();
     }
 
-    private void loadPartialContent(HttpRequestImpl request, HttpResponseImpl response, File file) throws IOException {
+    private void loadCompleteContent(HttpRequestImpl request, HttpResponseImpl response, File file, long length,
+                                     ByteBuffer mappedFile, FileChannel fileChannel) throws IOException {
+        response.setContentType(getContentType(file));
+        response.setStatus(HttpServletResponse.STATUS_OK);
+        response.setContentLength(length);
+        response.getHeaders().setHeader(Headers.HEADER_ACCEPT_RANGES, "bytes");
+        response.getHeaders().setHeader(Headers.HEADER_LAST_MODIFIED, DateUtilities.dateFormat(file.lastModified()));
+        response.flushHeaders();
+
+        if (mappedFile != null) {
+            response.serveBuffer(mappedFile);
+        } else if (!request.getMethod().equals(HttpRequestImpl.METHOD_HEAD)) {
+            response.serveFile(fileChannel, length);
+        }
+
+        response.flush();
+    }
+
+    private void loadPartialContent(HttpRequestImpl request, HttpResponseImpl response, File file, long length,
+                                    ByteBuffer mappedFile, FileChannel fileChannel) throws IOException {
         List<Range> ranges;
         try {
             ranges = rangeParser.parse(request.getHeader(Headers.HEADER_RANGE));
@@ -125,51 +262,56 @@ public class FileResourceProvider implements ResourceProvider {
             throw new ProtocolException("Malformed range header", e);
         }
 
-        if (!rangeHelper.isSatisfiable(ranges, file.length())) {
+        if (!rangeHelper.isSyntacticallyValid(ranges)) {
+            // The range header is ignored, RFC 7233 section 2.1
+            loadCompleteContent(request, response, file, length, mappedFile, fileChannel);
+            return;
+        }
+
+        ranges = rangeHelper.normalize(ranges, length);
+        if (ranges.isEmpty()) {
+            response.getHeaders().setHeader(Headers.HEADER_CONTENT_RANGE, "bytes */" + length);
             throw new RangeNotSatisfiableProtocolException();
         }
 
+        if (ranges.size() > MAX_RANGES) {
+            loadCompleteContent(request, response, file, length, mappedFile, fileChannel);
+            return;
+        }
+
         response.setStatus(HttpServletResponse.STATUS_PARTIAL_CONTENT);
-        response.getHeaders().setHeader(Headers.HEADER_CONTENT_RANGE, "bytes " + getRanges(ranges) + "/" + file.length());
 
-        String contentType = mimeTypeMapping.getMimeTypeByExtension(FileUtilities.getExtension(file.getName()));
+        String contentType = getContentType(file);
 
         long rangeLength = rangeHelper.getTotalLength(ranges);
 
         String boundary = null;
         if (ranges.size() == 1) {
+            Range range = ranges.get(0);
+            response.getHeaders().setHeader(Headers.HEADER_CONTENT_RANGE,
+                    "bytes " + range.getFrom() + "-" + range.getTo() + "/" + length);
             response.setContentLength(rangeLength);
             response.setContentType(contentType);
         } else {
             boundary = StringUtilities.generateRandom();
-            response.setContentLength(rangePartHeaderSerializer.getPartHeadersLength(ranges, boundary, contentType, file.length()) + rangeLength);
+            response.setContentLength(rangePartHeaderSerializer.getPartHeadersLength(ranges, boundary, contentType, length) + rangeLength);
 
             response.setContentType("multipart/byteranges; boundary=" + boundary);
         }
         response.flushHeaders();
 
-        // TODO Test with large values, greater than those of BufferedInputStream internal buffer
-        InputStream fileInputStream = new BufferedInputStream(new FileInputStream(file));
-        if (ranges.size() == 1) {
-            response.serveStream(fileInputStream, ranges.get(0));
+        if (mappedFile != null) {
+            if (ranges.size() == 1) {
+                response.serveBuffer(mappedFile, ranges.get(0));
+            } else {
+                response.serveBuffer(mappedFile, ranges, boundary, contentType, length);
+            }
+        } else if (ranges.size() == 1) {
+            response.serveFile(fileChannel, ranges.get(0));
         } else {
-            response.serveStream(fileInputStream, ranges, boundary, contentType, file.length());
+            response.serveFile(fileChannel, ranges, boundary, contentType, length);
         }
 
-        IOUtilities.closeSilently(fileInputStream);
-
         response.flush();
     }
-
-    private String getRanges(List<Range> ranges) {
-        StringBuilder rangesString = new StringBuilder();
-        int counter = 0;
-        for (Range range : ranges) {
-            rangesString.append(range.getFrom()).append("-").append(range.getTo());
-            if (++counter < ranges.size()) {
-                rangesString.append(",");
-            }
-        }
-        return rangesString.toString();
-    }
 }
@@ -10,7 +10,6 @@ package ro.polak.http.resource.provider.impl;
 import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.logging.Level;
@@ -23,7 +22,8 @@ import ro.polak.http.exception.FilterInitializationException;
 import ro.polak.http.exception.ServletException;
 import ro.polak.http.exception.ServletInitializationException;
 import ro.polak.http.exception.UnexpectedSituationException;
-import ro.polak.http.resource.provider.ResourceProvider;
+import ro.polak.http.resource.provider.RoutableResourceProvider;
+import ro.polak.http.resource.router.Route;
 import ro.polak.http.servlet.Filter;
 import ro.polak.http.servlet.FilterChain;
 import ro.polak.http.servlet.FilterConfig;
@@ -50,7 +50,7 @@ import ro.polak.http.servlet.impl.FilterChainImpl;
  * @author Piotr Polak piotr [at] polak [dot] ro
  * @since 201509
  */
-public class ServletResourceProvider implements ResourceProvider {
+public class ServletResourceProvider implements RoutableResourceProvider {
 
     private static final Logger LOGGER = Logger.getLogger(ServletResourceProvider.class.getName());
 
@@ -81,7 +81,30 @@ public class ServletResourceProvider implements ResourceProvider {
         ServletContextImpl servletContext = servletContextHelper.getResolvedContext(servletContexts, path);
         Objects.requireNonNull(servletContext);
         ServletMapping servletMapping = servletContextHelper.getResolvedServletMapping(servletContext, path);
+        load(path, servletContext, servletMapping, request, response);
+    }
+
+    /**
+     * Returns a route for every servlet context, the target of a route is the resolved servlet mapping.
+     *
+     * @return
+     */
+    @Override
+    public List<Route<?>> getRoutes() {
+        List<Route<?>> routes = new ArrayList<>();
+        for (ServletContextImpl servletContext : servletContexts) {
+            routes.add(new ServletRoute(servletContext));
+        }
+        return routes;
+    }
 
+    @Override
+    public void shutdown() {
+        servletContainer.shutdown();
+    }
+
+    private void load(String path, ServletContextImpl servletContext, ServletMapping servletMapping,
+                      HttpRequestImpl request, HttpResponseImpl response) throws IOException {
         request.setServletContext(servletContext);
 
         Servlet servlet = getServlet(servletMapping, new ServletConfigImpl(servletContext));
@@ -93,14 +116,12 @@ public class ServletResourceProvider implements ResourceProvider {
             terminate(request, response);
         } catch (ServletException | FilterInitializationException e) {
             throw new UnexpectedSituationException(e);
+        } finally {
+            // Uploaded files kept in memory hold a share of the global memory budget
+            freeUploadedUnprocessedFiles(request);
         }
     }
 
-    @Override
-    public void shutdown() {
-        servletContainer.shutdown();
-    }
-
     private Servlet getServlet(ServletMapping servletMapping, ServletConfigImpl servletConfig) {
         Servlet servlet;
         try {
@@ -150,8 +171,6 @@ public class ServletResourceProvider implements ResourceProvider {
      * @throws IOException
      */
     private void terminate(HttpRequestImpl request, HttpResponseImpl response) throws IOException {
-        freeUploadedUnprocessedFiles(request.getUploadedFiles());
-
         HttpSessionImpl session = (HttpSessionImpl) request.getSession(false);
         if (session != null) {
             try {
@@ -173,9 +192,39 @@ public class ServletResourceProvider implements ResourceProvider {
         response.flush();
     }
 
-    private void freeUploadedUnprocessedFiles(Collection<UploadedFile> uploadedFiles) {
-        for (UploadedFile uploadedFile : uploadedFiles) {
+    private void freeUploadedUnprocessedFiles(HttpRequestImpl request) {
+        if (request.isMultipartBodyPending()) {
+            return;
+        }
+        for (UploadedFile uploadedFile : request.getUploadedFiles()) {
             uploadedFile.destroy();
         }
     }
+
+    /**
+     * Route of the servlets of a single servlet context.
+     */
+    private class ServletRoute extends Route<ServletMapping> {
+
+        private final ServletContextImpl servletContext;
+
+        ServletRoute(final ServletContextImpl servletContext) {
+            super(servletContext.getContextPath(), ServletResourceProvider.this);
+            this.servletContext = servletContext;
+        }
+
+        @Override
+        public ServletMapping resolve(String path) {
+            if (!path.startsWith(servletContext.getContextPath())) {
+                return null;
+            }
+            return servletContextHelper.getResolvedServletMapping(servletContext, path);
+        }
+
+        @Override
+        public void load(String path, ServletMapping servletMapping, HttpRequestImpl request,
+                         HttpResponseImpl response) throws IOException {
+            ServletResourceProvider.this.load(path, servletContext, servletMapping, request, response);
+        }
+    }
 }
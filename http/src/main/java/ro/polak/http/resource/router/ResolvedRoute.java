@@ -0,0 +1,64 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.resource.router;
+
+import java.io.IOException;
+
+import ro.polak.http.resource.provider.ResourceProvider;
+import ro.polak.http.servlet.impl.HttpRequestImpl;
+import ro.polak.http.servlet.impl.HttpResponseImpl;
+
+/**
+ * Route resolved for a given path.
+ *
+ * @param <T> the type of the resolved target
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public final class ResolvedRoute<T> {
+
+    private final Route<T> route;
+    private final String path;
+    private final T target;
+
+    /**
+     * Default constructor.
+     *
+     * @param route
+     * @param path
+     * @param target
+     */
+    public ResolvedRoute(final Route<T> route, final String path, final T target) {
+        this.route = route;
+        this.path = path;
+        this.target = target;
+    }
+
+    public ResourceProvider getResourceProvider() {
+        return route.getResourceProvider();
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public T getTarget() {
+        return target;
+    }
+
+    /**
+     * Loads the resolved resource.
+     *
+     * @param request
+     * @param response
+     * @throws IOException
+     */
+    public void load(HttpRequestImpl request, HttpResponseImpl response) throws IOException {
+        route.load(path, target, request, response);
+    }
+}
@@ -0,0 +1,163 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.resource.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ro.polak.http.resource.provider.ResourceProvider;
+import ro.polak.http.resource.provider.RoutableResourceProvider;
+import ro.polak.http.servlet.impl.HttpRequestImpl;
+import ro.polak.http.servlet.impl.HttpResponseImpl;
+
+/**
+ * Resolves the resource provider serving a given path.
+ * <p/>
+ * The routes are compiled once into a trie of path segments, every node keeps the ordered list
+ * of the routes applicable to the paths below it. A path is resolved by walking down the trie
+ * and asking the routes of the deepest node reached. Routes of the same resource provider are
+ * asked starting from the most specific one, the resource providers are asked in the order they
+ * were given.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public class ResourceRouter {
+
+    private final Node root = new Node();
+
+    /**
+     * Default constructor.
+     *
+     * @param resourceProviders
+     */
+    public ResourceRouter(final List<ResourceProvider> resourceProviders) {
+        final Map<Route<?>, Integer> providerIndexes = new HashMap<>();
+        for (int i = 0; i < resourceProviders.size(); i++) {
+            for (Route<?> route : getRoutes(resourceProviders.get(i))) {
+                providerIndexes.put(route, i);
+                getNode(route.getPathPrefix()).routes.add(route);
+            }
+        }
+
+        compile(root, Collections.<Route<?>>emptyList(), new Comparator<Route<?>>() {
+            @Override
+            public int compare(Route<?> o1, Route<?> o2) {
+                return providerIndexes.get(o1).compareTo(providerIndexes.get(o2));
+            }
+        });
+    }
+
+    /**
+     * Resolves the route of the given path.
+     *
+     * @param path
+     * @return the resolved route or null when no resource provider can load the path
+     */
+    //@Nullable
+    public ResolvedRoute<?> resolve(String path) {
+        Node node = root;
+        int start = 1;
+        while (start < path.length() && !node.children.isEmpty()) {
+            int end = path.indexOf('/', start);
+            if (end == -1) {
+                end = path.length();
+            }
+            Node child = node.children.get(path.substring(start, end));
+            if (child == null) {
+                break;
+            }
+            node = child;
+            start = end + 1;
+        }
+
+        for (Route<?> route : node.candidates) {
+            ResolvedRoute<?> resolvedRoute = resolve(route, path);
+            if (resolvedRoute != null) {
+                return resolvedRoute;
+            }
+        }
+
+        return null;
+    }
+
+    private <T> ResolvedRoute<T> resolve(Route<T> route, String path) {
+        T target = route.resolve(path);
+        if (target == null) {
+            return null;
+        }
+        return new ResolvedRoute<>(route, path, target);
+    }
+
+    private List<Route<?>> getRoutes(ResourceProvider resourceProvider) {
+        if (resourceProvider instanceof RoutableResourceProvider) {
+            return ((RoutableResourceProvider) resourceProvider).getRoutes();
+        }
+        return Collections.<Route<?>>singletonList(new ResourceProviderRoute(resourceProvider));
+    }
+
+    private Node getNode(String pathPrefix) {
+        Node node = root;
+        for (String segment : pathPrefix.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            Node child = node.children.get(segment);
+            if (child == null) {
+                child = new Node();
+                node.children.put(segment, child);
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    private void compile(Node node, List<Route<?>> inheritedRoutes, Comparator<Route<?>> comparator) {
+        List<Route<?>> candidates = new ArrayList<>(node.routes);
+        candidates.addAll(inheritedRoutes);
+        // The sort is stable, the most specific routes of a resource provider stay first
+        Collections.sort(candidates, comparator);
+        node.candidates = candidates;
+
+        for (Node child : node.children.values()) {
+            compile(child, candidates, comparator);
+        }
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private final List<Route<?>> routes = new ArrayList<>();
+        private List<Route<?>> candidates = Collections.emptyList();
+    }
+
+    /**
+     * Route of a resource provider that can serve any path.
+     */
+    private static final class ResourceProviderRoute extends Route<Boolean> {
+
+        ResourceProviderRoute(final ResourceProvider resourceProvider) {
+            super("/", resourceProvider);
+        }
+
+        @Override
+        public Boolean resolve(String path) {
+            return getResourceProvider().canLoad(path) ? Boolean.TRUE : null;
+        }
+
+        @Override
+        public void load(String path, Boolean target, HttpRequestImpl request, HttpResponseImpl response)
+                throws IOException {
+            getResourceProvider().load(path, request, response);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.resource.router;
+
+import java.io.IOException;
+
+import ro.polak.http.resource.provider.ResourceProvider;
+import ro.polak.http.servlet.impl.HttpRequestImpl;
+import ro.polak.http.servlet.impl.HttpResponseImpl;
+
+/**
+ * Route of the resources served by a resource provider under the given path prefix.
+ * <p/>
+ * The target resolved for a path is handed back when the resource is loaded so that the
+ * resource provider does not need to resolve it for the second time.
+ *
+ * @param <T> the type of the resolved target
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public abstract class Route<T> {
+
+    private final String pathPrefix;
+    private final ResourceProvider resourceProvider;
+
+    /**
+     * Default constructor.
+     *
+     * @param pathPrefix       the prefix of all the paths served by the route
+     * @param resourceProvider
+     */
+    protected Route(final String pathPrefix, final ResourceProvider resourceProvider) {
+        this.pathPrefix = pathPrefix;
+        this.resourceProvider = resourceProvider;
+    }
+
+    public String getPathPrefix() {
+        return pathPrefix;
+    }
+
+    public ResourceProvider getResourceProvider() {
+        return resourceProvider;
+    }
+
+    /**
+     * Resolves the target of the path.
+     *
+     * @param path
+     * @return the target or null when the route does not serve the path
+     */
+    //@Nullable
+    public abstract T resolve(String path);
+
+    /**
+     * Loads the resource of a previously resolved target.
+     *
+     * @param path
+     * @param target
+     * @param request
+     * @param response
+     * @throws IOException
+     */
+    public abstract void load(String path, T target, HttpRequestImpl request, HttpResponseImpl response)
+            throws IOException;
+}
@@ -198,6 +198,16 @@ public interface HttpServletRequest extends ServletRequest {
      */
     Collection<UploadedFile> getUploadedFiles();
 
+    /**
+     * Returns the parts of a multipart request read directly from the connection as they arrive,
+     * without saving the files in the temporary directory. Must be called before the post parameters
+     * or the uploaded files are accessed, these are not available for a streamed request.
+     *
+     * @return
+     * @throws IllegalStateException when the request is not multipart or its body has already been read
+     */
+    PartIterator getPartIterator();
+
 
     // -- Extensions
 
@@ -19,6 +19,7 @@ import ro.polak.http.Headers;
  */
 public interface HttpServletResponse extends ServletResponse {
 
+    String STATUS_CONTINUE = "HTTP/1.1 100 Continue";
     String STATUS_OK = "HTTP/1.1 200 OK";
     String STATUS_PARTIAL_CONTENT = "HTTP/1.1 206 Partial Content";
     String STATUS_NOT_FOUND = "HTTP/1.1 404 Not Found";
@@ -35,6 +36,8 @@ public interface HttpServletResponse extends ServletResponse {
     String STATUS_BAD_REQUEST = "HTTP/1.1 400 Bad Request";
     String STATUS_LENGTH_REQUIRED = "HTTP/1.1 411 Length Required";
     String STATUS_RANGE_NOT_SATISFIABLE = "HTTP/1.1 416 Range Not Satisfiable";
+    String STATUS_EXPECTATION_FAILED = "HTTP/1.1 417 Expectation Failed";
+    String STATUS_REQUEST_HEADER_FIELDS_TOO_LARGE = "HTTP/1.1 431 Request Header Fields Too Large";
 
     /**
      * Adds a cookie.
@@ -114,6 +117,14 @@ public interface HttpServletResponse extends ServletResponse {
      */
     void setHeader(String name, String value);
 
+    /**
+     * Adds header value, the previous values of the header are preserved
+     *
+     * @param name
+     * @param value
+     */
+    void addHeader(String name, String value);
+
     /**
      * Sets int header value
      *
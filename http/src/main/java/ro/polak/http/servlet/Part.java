@@ -0,0 +1,48 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.servlet;
+
+import java.io.InputStream;
+
+/**
+ * Part of a multipart request read directly from the connection.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public interface Part {
+
+    /**
+     * Returns the name of the form field.
+     *
+     * @return
+     */
+    String getName();
+
+    /**
+     * Returns the name of the uploaded file.
+     *
+     * @return the file name or null when the part is not a file
+     */
+    String getFileName();
+
+    /**
+     * Returns the content type of the part.
+     *
+     * @return the content type or null when not specified
+     */
+    String getContentType();
+
+    /**
+     * Returns the contents of the part. The stream ends at the boundary that follows the part and
+     * is valid only until the next part is requested.
+     *
+     * @return
+     */
+    InputStream getInputStream();
+}
@@ -0,0 +1,38 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.servlet;
+
+import java.io.IOException;
+
+/**
+ * Iterates over the parts of a multipart request as they arrive.
+ * <p/>
+ * The unread contents of the current part are skipped when the next part is requested.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public interface PartIterator {
+
+    /**
+     * Tells whether there is another part, reads the headers of the part.
+     *
+     * @return
+     * @throws IOException
+     */
+    boolean hasNext() throws IOException;
+
+    /**
+     * Returns the next part.
+     *
+     * @return
+     * @throws IOException
+     * @throws java.util.NoSuchElementException when there are no more parts
+     */
+    Part next() throws IOException;
+}
@@ -14,6 +14,11 @@ package ro.polak.http.servlet;
  */
 public class Range {
 
+    /**
+     * Marks the missing position of an open ("500-") or a suffix ("-500") range.
+     */
+    public static final long UNSPECIFIED = -1;
+
     private long from;
     private long to;
 
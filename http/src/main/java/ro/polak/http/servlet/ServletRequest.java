@@ -44,12 +44,19 @@ public interface ServletRequest {
     String getCharacterEncoding();
 
     /**
-     * Returns content length.
+     * Returns content length, -1 when not known or when greater than Integer.MAX_VALUE.
      *
      * @return
      */
     int getContentLength();
 
+    /**
+     * Returns content length, -1 when not known.
+     *
+     * @return
+     */
+    long getContentLengthLong();
+
     /**
      * Returns requested content type.
      *
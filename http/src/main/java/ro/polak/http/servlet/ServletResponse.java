@@ -7,6 +7,8 @@
 
 package ro.polak.http.servlet;
 
+import java.io.IOException;
+
 import java.io.PrintWriter;
 import java.util.Locale;
 
@@ -19,9 +21,11 @@ import java.util.Locale;
 public interface ServletResponse {
 
     /**
-     * Forces any content in the buffer to be written to the client.
+     * Forces any content in the buffer to be written to the client. Commits the response.
+     *
+     * @throws IOException
      */
-    void flushBuffer();
+    void flushBuffer() throws IOException;
 
     /**
      * Returns the actual buffer size used for the response.
@@ -87,6 +91,7 @@ public interface ServletResponse {
      * Sets the preferred buffer size for the body of the response.
      *
      * @param size
+     * @throws IllegalStateException when the response has already been committed
      */
     void setBufferSize(int size);
 
@@ -7,10 +7,23 @@
 
 package ro.polak.http.servlet;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+
+import ro.polak.http.UploadMemoryBudget;
+import ro.polak.http.utilities.IOUtilities;
 
 /**
  * Uploaded file representation
+ * <p/>
+ * Small files are kept in memory, the larger ones are stored in the temporary directory. Both are
+ * read using {@link #getInputStream()} and saved using {@link #moveTo(File)}.
  *
  * @author Piotr Polak piotr [at] polak [dot] ro
  * @since 200802
@@ -20,6 +33,10 @@ public class UploadedFile {
     private final String postFieldName;
     private final String fileName;
     private final File file;
+    private final long size;
+    private final UploadMemoryBudget memoryBudget;
+    private byte[] contents;
+    private boolean isMoved = false;
 
     /**
      * Constructor
@@ -32,14 +49,49 @@ public class UploadedFile {
         this.postFieldName = postFieldName;
         this.fileName = fileName;
         this.file = file;
+        size = file.length();
+        memoryBudget = null;
+    }
+
+    /**
+     * Constructor of a file kept in memory.
+     *
+     * @param postFieldName
+     * @param fileName
+     * @param contents
+     * @param memoryBudget  the budget the contents were reserved from, released on destroy
+     */
+    public UploadedFile(String postFieldName, String fileName, byte[] contents, UploadMemoryBudget memoryBudget) {
+        this.postFieldName = postFieldName;
+        this.fileName = fileName;
+        this.contents = contents;
+        this.memoryBudget = memoryBudget;
+        file = null;
+        size = contents.length;
     }
 
     /**
-     * Deletes temporary file if the file has not been moved to another location
+     * Deletes temporary file if the file has not been moved to another location, releases the
+     * memory of a file kept in memory.
      *
      * @return true if deleted
      */
     public boolean destroy() {
+        if (isMoved) {
+            return false;
+        }
+
+        if (file == null) {
+            if (contents == null) {
+                return false;
+            }
+            contents = null;
+            if (memoryBudget != null) {
+                memoryBudget.release(size);
+            }
+            return true;
+        }
+
         if (file.exists()) {
             return file.delete();
         }
@@ -47,6 +99,97 @@ public class UploadedFile {
         return false;
     }
 
+    /**
+     * Returns the contents of the uploaded file.
+     *
+     * @return
+     * @throws IOException
+     * @throws IllegalStateException when the file has already been moved or destroyed
+     */
+    public InputStream getInputStream() throws IOException {
+        if (isMoved) {
+            throw new IllegalStateException("The uploaded file has already been moved");
+        }
+        if (file == null) {
+            if (contents == null) {
+                throw new IllegalStateException("The uploaded file has already been moved or destroyed");
+            }
+            return new ByteArrayInputStream(contents);
+        }
+        return new FileInputStream(file);
+    }
+
+    /**
+     * Saves the uploaded file at the given location, the temporary copy is destroyed.
+     * <p/>
+     * A file stored in the temporary directory is renamed when the destination lies on the same
+     * file system, otherwise it is copied by the kernel using {@link FileChannel#transferTo}.
+     * A moved file is skipped by the cleanup that follows the request.
+     *
+     * @param destination
+     * @throws IOException
+     */
+    public void moveTo(File destination) throws IOException {
+        if (file == null) {
+            writeContents(destination);
+            destroy();
+        } else if (isMoved) {
+            throw new IllegalStateException("The uploaded file has already been moved");
+        } else if (!file.renameTo(destination)) {
+            transferFile(destination);
+            destroy();
+        }
+        isMoved = true;
+    }
+
+    private void writeContents(File destination) throws IOException {
+        if (contents == null) {
+            throw new IllegalStateException("The uploaded file has already been moved or destroyed");
+        }
+        OutputStream out = new FileOutputStream(destination);
+        try {
+            out.write(contents);
+        } finally {
+            IOUtilities.closeSilently(out);
+        }
+    }
+
+    private void transferFile(File destination) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(destination);
+            FileChannel source = in.getChannel();
+            FileChannel target = out.getChannel();
+            long position = 0;
+            long length;
+            while (position < (length = source.size())) {
+                position += source.transferTo(position, length - position, target);
+            }
+        } finally {
+            IOUtilities.closeSilently(in);
+            IOUtilities.closeSilently(out);
+        }
+    }
+
+    /**
+     * Returns the size of the uploaded file.
+     *
+     * @return the number of bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Tells whether the file is kept in memory rather than in the temporary directory.
+     *
+     * @return
+     */
+    public boolean isInMemory() {
+        return file == null;
+    }
+
     /**
      * Returns the HTML form postFieldName
      *
@@ -68,7 +211,7 @@ public class UploadedFile {
     /**
      * Returns uploaded file
      *
-     * @return
+     * @return the temporary file or null for a file kept in memory
      */
     public File getFile() {
         return file;
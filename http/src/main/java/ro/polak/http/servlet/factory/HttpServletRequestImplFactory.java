@@ -7,29 +7,30 @@
 
 package ro.polak.http.servlet.factory;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import ro.polak.http.Headers;
 import ro.polak.http.MultipartHeadersPart;
 import ro.polak.http.MultipartRequestHandler;
 import ro.polak.http.RequestStatus;
-import ro.polak.http.Statistics;
+import ro.polak.http.UploadMemoryBudget;
 import ro.polak.http.configuration.FilterMapping;
 import ro.polak.http.configuration.ServletMapping;
+import ro.polak.http.impl.BodyInputStream;
+import ro.polak.http.impl.ChunkedInputStream;
+import ro.polak.http.impl.ConnectionInputStream;
+import ro.polak.http.impl.ContentLengthInputStream;
+import ro.polak.http.exception.protocol.ExpectationFailedProtocolException;
 import ro.polak.http.exception.protocol.LengthRequiredException;
-import ro.polak.http.exception.protocol.MalformedOrUnsupportedMethodProtocolException;
 import ro.polak.http.exception.protocol.MalformedStatusLineException;
 import ro.polak.http.exception.protocol.PayloadTooLargeProtocolException;
 import ro.polak.http.exception.protocol.ProtocolException;
-import ro.polak.http.exception.protocol.StatusLineTooLongProtocolException;
 import ro.polak.http.exception.protocol.UnsupportedProtocolException;
 import ro.polak.http.exception.protocol.UriTooLongProtocolException;
 import ro.polak.http.protocol.parser.MalformedInputException;
@@ -47,7 +48,7 @@ import ro.polak.http.servlet.impl.ServletContextImpl;
 public class HttpServletRequestImplFactory {
 
     private static final String DEFAULT_SCHEME = "http";
-    private static final int MULTIPART_BUFFER_LENGTH = 2048;
+    private static final int DEFAULT_MULTIPART_BUFFER_LENGTH = 16 * 1024;
 
     private static final String BOUNDARY_START = "boundary=";
     private static final int URI_MAX_LENGTH = 2048;
@@ -63,28 +64,22 @@ public class HttpServletRequestImplFactory {
             "TRACE",
             "CONNECT"
     };
-    private static final int METHOD_MAX_LENGTH;
-    private static final List<String> RECOGNIZED_METHODS_LIST = Arrays.asList(RECOGNIZED_METHODS);
-    private static final String HEADERS_END_DELIMINATOR = "\n\r\n";
+    private static final int HEADERS_MAX_LENGTH = 8 * 1024;
+    private static final int HEADERS_MAX_COUNT = 100;
+    private static final String TRANSFER_ENCODING_CHUNKED = "chunked";
 
     private final Parser<Headers> headersParser;
     private final Parser<Map<String, String>> queryStringParser;
     private final Parser<RequestStatus> statusParser;
     private final Parser<Map<String, Cookie>> cookieParser;
-
-    static {
-        int maxMethodLength = 0;
-        for (String method : RECOGNIZED_METHODS) {
-            if (method.length() > maxMethodLength) {
-                maxMethodLength = method.length();
-            }
-        }
-        METHOD_MAX_LENGTH = maxMethodLength;
-    }
+    private final RequestHeadReader headReader = new RequestHeadReader(RECOGNIZED_METHODS,
+            STATUS_MAX_LENGTH, HEADERS_MAX_LENGTH, HEADERS_MAX_COUNT);
 
     private Parser<MultipartHeadersPart> multipartHeadersPartParser;
     private final String tempPath;
-
+    private final int uploadMemoryThreshold;
+    private final UploadMemoryBudget uploadMemoryBudget;
+    private final int multipartBufferLength;
 
     /**
      * Default constructor.
@@ -101,12 +96,64 @@ public class HttpServletRequestImplFactory {
                                          final Parser<Map<String, Cookie>> cookieParser,
                                          final Parser<MultipartHeadersPart> multipartHeadersPartParser,
                                          final String tempPath) {
+        this(headersParser, queryStringParser, statusParser, cookieParser, multipartHeadersPartParser,
+                tempPath, 0, 0);
+    }
+
+    /**
+     * Constructor keeping the small uploaded files in memory.
+     *
+     * @param headersParser
+     * @param queryStringParser
+     * @param statusParser
+     * @param cookieParser
+     * @param tempPath
+     * @param uploadMemoryThreshold the size up to which an uploaded file is kept in memory
+     * @param uploadMemoryLimit     the memory shared by the uploaded files of all the requests
+     */
+    public HttpServletRequestImplFactory(final Parser<Headers> headersParser,
+                                         final Parser<Map<String, String>> queryStringParser,
+                                         final Parser<RequestStatus> statusParser,
+                                         final Parser<Map<String, Cookie>> cookieParser,
+                                         final Parser<MultipartHeadersPart> multipartHeadersPartParser,
+                                         final String tempPath,
+                                         final int uploadMemoryThreshold,
+                                         final long uploadMemoryLimit) {
+        this(headersParser, queryStringParser, statusParser, cookieParser, multipartHeadersPartParser,
+                tempPath, uploadMemoryThreshold, uploadMemoryLimit, DEFAULT_MULTIPART_BUFFER_LENGTH);
+    }
+
+    /**
+     * Constructor reading the multipart bodies using a buffer of the given size.
+     *
+     * @param headersParser
+     * @param queryStringParser
+     * @param statusParser
+     * @param cookieParser
+     * @param tempPath
+     * @param uploadMemoryThreshold the size up to which an uploaded file is kept in memory
+     * @param uploadMemoryLimit     the memory shared by the uploaded files of all the requests
+     * @param multipartBufferLength the size of the buffer the multipart body is read with
+     */
+    public HttpServletRequestImplFactory(final Parser<Headers> headersParser,
+                                         final Parser<Map<String, String>> queryStringParser,
+                                         final Parser<RequestStatus> statusParser,
+                                         final Parser<Map<String, Cookie>> cookieParser,
+                                         final Parser<MultipartHeadersPart> multipartHeadersPartParser,
+                                         final String tempPath,
+                                         final int uploadMemoryThreshold,
+                                         final long uploadMemoryLimit,
+                                         final int multipartBufferLength) {
         this.headersParser = headersParser;
         this.queryStringParser = queryStringParser;
         this.statusParser = statusParser;
         this.cookieParser = cookieParser;
         this.multipartHeadersPartParser = multipartHeadersPartParser;
         this.tempPath = tempPath;
+        this.uploadMemoryThreshold = uploadMemoryThreshold;
+        uploadMemoryBudget = uploadMemoryThreshold > 0 && uploadMemoryLimit > 0
+                ? new UploadMemoryBudget(uploadMemoryLimit) : null;
+        this.multipartBufferLength = multipartBufferLength > 0 ? multipartBufferLength : DEFAULT_MULTIPART_BUFFER_LENGTH;
     }
 
     /**
@@ -114,18 +161,36 @@ public class HttpServletRequestImplFactory {
      *
      * @param socket
      * @return
+     * @throws EOFException when the stream ends before the first byte of the request, this is how
+     *                      a client closes a persistent connection
      */
     public HttpRequestImpl createFromSocket(Socket socket)
             throws IOException, ProtocolException {
+        return createFromSocket(socket, new ConnectionInputStream(socket.getInputStream()));
+    }
+
+    /**
+     * Creates and returns a request read from the given input stream of the socket.
+     * <p/>
+     * The input stream is shared by all the requests of a persistent connection, exactly one request
+     * is consumed so that any pipelined bytes that follow are left for the next request.
+     * The head is read out of the buffer of a {@link ConnectionInputStream}, any other stream is read byte by byte.
+     *
+     * @param socket
+     * @param in
+     * @return
+     * @throws EOFException when the stream ends before the first byte of the request
+     */
+    public HttpRequestImpl createFromSocket(Socket socket, InputStream in)
+            throws IOException, ProtocolException {
 
         HttpRequestImpl request = new HttpRequestImpl();
 
-        InputStream in = socket.getInputStream();
         // The order matters
 
         RequestStatus status;
         try {
-            status = statusParser.parse(getStatusLine(in));
+            status = statusParser.parse(headReader.readStatusLine(in));
         } catch (MalformedInputException e) {
             throw new MalformedStatusLineException("Malformed status line " + e.getMessage());
         }
@@ -139,7 +204,8 @@ public class HttpServletRequestImplFactory {
             throw new UnsupportedProtocolException("Protocol " + status.getProtocol() + " is not supported");
         }
 
-        request.setInputStream(in);
+        request.setQueryStringParser(queryStringParser);
+        request.setCookieParser(cookieParser);
         assignSocketMetadata(socket, request);
         request.setStatus(status);
         request.setPathTranslated(request.getRequestURI()); // TODO There is no way to make it work under Android
@@ -156,39 +222,51 @@ public class HttpServletRequestImplFactory {
         request.setRemoteUser(null);
         request.setPrincipal(null);
 
-        try {
-            request.setGetParameters(queryStringParser.parse(status.getQueryString()));
-        } catch (MalformedInputException e) {
-            // This should never happen
-        }
-
-        String headersString = getHeaders(in);
+        String headersString = headReader.readHeaders(in);
         if (headersString.length() > 3) {
             try {
                 request.setHeaders(headersParser.parse(headersString));
             } catch (MalformedInputException e) {
                 throw new ProtocolException("Malformed request headers");
             }
-
-            request.setCookies(getCookies(request.getHeaders()));
         } else {
             // TODO Use a dedicated builder to avoid uninitialized request properties
             // TODO Write a test that sends a request containing status line only
             request.setHeaders(new Headers()); // Setting implicit empty headers
-            request.setCookies(Collections.<String, Cookie>emptyMap());
         }
 
-        if (request.getMethod().equalsIgnoreCase(HttpRequestImpl.METHOD_POST)) {
-            try {
-                handlePostRequest(request, in);
-            } catch (MalformedInputException e) {
-                throw new ProtocolException("Malformed post input");
+        validateExpectation(request);
+
+        try {
+            BodyInputStream body = getBody(request, in);
+            request.setInputStream(body);
+
+            if (request.getMethod().equalsIgnoreCase(HttpRequestImpl.METHOD_POST)) {
+                handlePostRequest(request, body);
             }
+        } catch (MalformedInputException e) {
+            throw new ProtocolException("Malformed post input");
         }
 
         return request;
     }
 
+    /**
+     * Rejects the expectations other than 100-continue, these are ignored for HTTP/1.0 requests.
+     * The 100 Continue response itself is sent once the body is read.
+     *
+     * @param request
+     * @throws ExpectationFailedProtocolException
+     */
+    private void validateExpectation(HttpRequestImpl request) {
+        if (request.getHeaders().containsHeader(Headers.HEADER_EXPECT)
+                && !request.isContinueExpected()
+                && request.getProtocol().equalsIgnoreCase("HTTP/1.1")) {
+            throw new ExpectationFailedProtocolException("Unsupported expectation "
+                    + request.getHeaders().getHeader(Headers.HEADER_EXPECT));
+        }
+    }
+
     private boolean isValidProtocol(String protocol) {
         return protocol.equalsIgnoreCase("HTTP/1.0") || protocol.equalsIgnoreCase("HTTP/1.1");
     }
@@ -206,105 +284,73 @@ public class HttpServletRequestImplFactory {
         request.setServerName(socket.getInetAddress().getHostName());
     }
 
-    private Map<String, Cookie> getCookies(Headers headers) {
-        if (headers.containsHeader(Headers.HEADER_COOKIE)) {
-            try {
-                return cookieParser.parse(headers.getHeader(Headers.HEADER_COOKIE));
-            } catch (MalformedInputException e) {
-                // Returns an empty map
+    /**
+     * Returns the body stream, reading it is left to the request consumer.
+     *
+     * @param request
+     * @param in
+     * @return
+     * @throws MalformedInputException
+     * @throws LengthRequiredException           for post requests of no declared length
+     * @throws PayloadTooLargeProtocolException for form data exceeding the limit
+     */
+    private BodyInputStream getBody(HttpRequestImpl request, InputStream in)
+            throws MalformedInputException {
+        boolean isPost = request.getMethod().equalsIgnoreCase(HttpRequestImpl.METHOD_POST);
+
+        // Form data is decoded in memory, any other body is streamed to the servlet and is not limited
+        long maxLength = isPost && (isMultipartRequest(request) || request.isFormUrlEncoded())
+                ? POST_MAX_LENGTH : BodyInputStream.UNKNOWN_LENGTH;
+
+        // The transfer coding takes precedence over the content length, RFC 7230 section 3.3.3
+        if (request.getHeaders().containsHeader(Headers.HEADER_TRANSFER_ENCODING)) {
+            if (!isChunked(request.getHeaders().getHeader(Headers.HEADER_TRANSFER_ENCODING))) {
+                throw new ProtocolException("Unsupported transfer coding "
+                        + request.getHeaders().getHeader(Headers.HEADER_TRANSFER_ENCODING));
             }
+            return new ChunkedInputStream(in, maxLength);
         }
-        return new HashMap<>();
-    }
 
-    private String getStatusLine(InputStream in)
-            throws IOException, StatusLineTooLongProtocolException, MalformedOrUnsupportedMethodProtocolException {
-        StringBuilder statusLine = new StringBuilder();
-        byte[] buffer = new byte[1];
-        int length = 0;
-        boolean wasMethodRead = false;
-        while (in.read(buffer, 0, buffer.length) != -1) {
-
-            ++length;
-
-            if (buffer[0] == '\n') {
-                break;
-            }
-            statusLine.append((char) buffer[0]);
-
-            if (!wasMethodRead) {
-                if (buffer[0] == ' ') {
-                    wasMethodRead = true;
-                    String method = statusLine.substring(0, statusLine.length() - 1).toUpperCase();
-                    if (!RECOGNIZED_METHODS_LIST.contains(method)) {
-                        Statistics.addBytesReceived(length);
-                        throw new MalformedOrUnsupportedMethodProtocolException("Method " + method + " is not supported");
-                    }
-                } else {
-                    if (length > METHOD_MAX_LENGTH) {
-                        Statistics.addBytesReceived(length);
-                        throw new MalformedOrUnsupportedMethodProtocolException("Method name is longer than expected");
-                    }
-                }
+        long contentLength = 0;
+        if (request.getHeaders().containsHeader(Headers.HEADER_CONTENT_LENGTH)) {
+            try {
+                contentLength = Long.parseLong(request.getHeaders().getHeader(Headers.HEADER_CONTENT_LENGTH).trim());
+            } catch (NumberFormatException e) {
+                throw new MalformedInputException(e.getMessage());
             }
-
-            if (length > STATUS_MAX_LENGTH) {
-                Statistics.addBytesReceived(length);
-                throw new StatusLineTooLongProtocolException("Exceeded max size of " + STATUS_MAX_LENGTH);
+            if (contentLength < 0) {
+                throw new MalformedInputException("Negative content length " + contentLength);
             }
+        } else if (isPost) {
+            throw new LengthRequiredException();
         }
-        Statistics.addBytesReceived(length);
 
-        return statusLine.toString();
-    }
-
-    private String getHeaders(InputStream in) throws IOException {
-        StringBuilder headersString = new StringBuilder();
-        byte[] buffer;
-        buffer = new byte[1];
-        int headersEndSymbolLength = HEADERS_END_DELIMINATOR.length();
-
-        while (in.read(buffer, 0, buffer.length) != -1) {
-            headersString.append((char) buffer[0]);
-            if (headersString.length() > headersEndSymbolLength) {
-                String endChars = headersString.substring(headersString.length() - headersEndSymbolLength, headersString.length());
-                if (endChars.equals(HEADERS_END_DELIMINATOR)) {
-                    headersString.setLength(headersString.length() - headersEndSymbolLength);
-                    break;
-                }
-            }
+        if (contentLength > maxLength) {
+            throw new PayloadTooLargeProtocolException("Payload of " + contentLength + "b exceeds the limit of " + maxLength + "b");
         }
 
-        Statistics.addBytesReceived(headersString.length() + headersEndSymbolLength);
-        return headersString.toString();
+        return new ContentLengthInputStream(in, contentLength);
     }
 
-    private void handlePostRequest(HttpRequestImpl request, InputStream in) throws IOException, MalformedInputException {
-        int postLength;
-        if (request.getHeaders().containsHeader(Headers.HEADER_CONTENT_LENGTH)) {
-            try {
-                postLength = Integer.parseInt(request.getHeaders().getHeader(Headers.HEADER_CONTENT_LENGTH));
-            } catch (NumberFormatException e) {
-                throw new MalformedInputException(e.getMessage());
-            }
-        } else {
-            throw new LengthRequiredException();
-        }
+    /**
+     * Tells whether chunked is the final transfer coding, no other coding is supported.
+     *
+     * @param transferEncoding
+     * @return
+     */
+    private boolean isChunked(String transferEncoding) {
+        return transferEncoding.trim().equalsIgnoreCase(TRANSFER_ENCODING_CHUNKED);
+    }
 
-        // Only if post length is greater than 0
+    private void handlePostRequest(HttpRequestImpl request, BodyInputStream body)
+            throws IOException, MalformedInputException {
         // Keep 0 value - makes no sense to parse the data
-        if (postLength < 1) {
+        if (body.getRemaining() == 0) {
             return;
         }
 
-        if (postLength > POST_MAX_LENGTH) {
-            throw new PayloadTooLargeProtocolException("Payload of " + postLength + "b exceeds the limit of " + POST_MAX_LENGTH + "b");
-        }
-
         if (isMultipartRequest(request)) {
-            handlePostMultipartRequest(request, in, postLength);
-        } else {
-            handlePostPlainRequest(request, in, postLength);
+            handlePostMultipartRequest(request, body, Math.min(body.getRemaining(), POST_MAX_LENGTH));
         }
     }
 
@@ -313,22 +359,7 @@ public class HttpServletRequestImplFactory {
                 && request.getHeaders().getHeader(Headers.HEADER_CONTENT_TYPE).toLowerCase().startsWith("multipart/form-data");
     }
 
-    private void handlePostPlainRequest(HttpRequestImpl request, InputStream in, int postLength)
-            throws IOException, MalformedInputException {
-        byte[] buffer;
-        buffer = new byte[1];
-        StringBuilder postLine = new StringBuilder();
-        while (in.read(buffer, 0, buffer.length) != -1) {
-            postLine.append((char) buffer[0]);
-            if (postLine.length() == postLength) {
-                break;
-            }
-        }
-        Statistics.addBytesReceived(postLine.length());
-        request.setPostParameters(queryStringParser.parse(postLine.toString()));
-    }
-
-    private void handlePostMultipartRequest(HttpRequestImpl request, InputStream in, int postLength)
+    private void handlePostMultipartRequest(HttpRequestImpl request, InputStream in, long postLength)
             throws IOException, MalformedInputException {
 
         String boundary = request.getHeaders().getHeader(Headers.HEADER_CONTENT_TYPE);
@@ -340,11 +371,10 @@ public class HttpServletRequestImplFactory {
                 boundary = boundary.substring(boundaryStartPos, boundary.length());
                 MultipartRequestHandler mrh =
                         new MultipartRequestHandler(multipartHeadersPartParser, in, postLength, boundary,
-                                tempPath, MULTIPART_BUFFER_LENGTH);
-                mrh.handle();
+                                tempPath, multipartBufferLength, uploadMemoryThreshold, uploadMemoryBudget);
 
-                request.setPostParameters(mrh.getPost());
-                request.setUploadedFiles(mrh.getUploadedFiles());
+                // The body is read on demand, either spooled or streamed part by part
+                request.setMultipartRequestHandler(mrh);
             }
         }
     }
@@ -8,6 +8,7 @@
 package ro.polak.http.servlet.factory;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.Socket;
 
 import ro.polak.http.Headers;
@@ -50,6 +51,17 @@ public class HttpServletResponseImplFactory {
      * @return
      */
     public HttpResponseImpl createFromSocket(Socket socket) throws IOException {
-        return new HttpResponseImpl(headersSerializer, cookieHeaderSerializer, streamHelper, socket.getOutputStream());
+        return createFromSocket(socket, socket.getOutputStream());
+    }
+
+    /**
+     * Creates and returns a response writing to the given output stream of the socket.
+     *
+     * @param socket
+     * @param outputStream
+     * @return
+     */
+    public HttpResponseImpl createFromSocket(Socket socket, OutputStream outputStream) throws IOException {
+        return new HttpResponseImpl(headersSerializer, cookieHeaderSerializer, streamHelper, outputStream);
     }
 }
@@ -0,0 +1,243 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.servlet.factory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import ro.polak.http.Statistics;
+import ro.polak.http.exception.protocol.MalformedOrUnsupportedMethodProtocolException;
+import ro.polak.http.exception.protocol.RequestHeaderFieldsTooLargeProtocolException;
+import ro.polak.http.exception.protocol.StatusLineTooLongProtocolException;
+import ro.polak.http.impl.ConnectionInputStream;
+
+/**
+ * Reads the request head, the status line and the header fields, out of the connection input stream.
+ * <p/>
+ * The bytes of the connection input stream are scanned in place and only the bytes of the head
+ * are consumed, the following ones stay buffered for the request body and the pipelined requests.
+ * The head is collected in the buffer of the connection. Any other stream is read byte by byte.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public class RequestHeadReader {
+
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte SPACE = ' ';
+    private static final byte TAB = '\t';
+
+    private final String[] recognizedMethods;
+    private final int methodMaxLength;
+    private final int statusLineMaxLength;
+    private final int headersMaxLength;
+    private final int headersMaxCount;
+
+    /**
+     * Default constructor.
+     *
+     * @param recognizedMethods   upper case method names
+     * @param statusLineMaxLength
+     * @param headersMaxLength    the maximum length of all the header fields
+     * @param headersMaxCount     the maximum number of header fields
+     */
+    public RequestHeadReader(final String[] recognizedMethods,
+                             final int statusLineMaxLength,
+                             final int headersMaxLength,
+                             final int headersMaxCount) {
+        this.recognizedMethods = recognizedMethods;
+        this.statusLineMaxLength = statusLineMaxLength;
+        this.headersMaxLength = headersMaxLength;
+        this.headersMaxCount = headersMaxCount;
+
+        int maxLength = 0;
+        for (String method : recognizedMethods) {
+            maxLength = Math.max(maxLength, method.length());
+        }
+        methodMaxLength = maxLength;
+    }
+
+    /**
+     * Reads the status line, empty lines preceding the request line are ignored, RFC 7230 section 3.5.
+     *
+     * @param in
+     * @return the status line without the line terminator
+     * @throws IOException
+     * @throws EOFException                                   when the stream ends before the request line
+     * @throws MalformedOrUnsupportedMethodProtocolException when the method is not recognized
+     * @throws StatusLineTooLongProtocolException            when the status line exceeds its limit
+     */
+    public String readStatusLine(InputStream in) throws IOException {
+        ConnectionInputStream source = toConnectionInputStream(in);
+        byte[] line = source.getHeadBuffer();
+        int length = 0;
+        int bytesRead = 0;
+        boolean wasMethodRead = false;
+
+        while (source.fill()) {
+            byte[] buffer = source.getBuffer();
+            int position = source.getPosition();
+            int limit = source.getLimit();
+
+            for (int i = position; i < limit; i++) {
+                byte b = buffer[i];
+                ++bytesRead;
+
+                if (b == LF) {
+                    if (length == 0 || (length == 1 && line[0] == CR)) {
+                        length = 0;
+                        continue;
+                    }
+
+                    source.consume(i + 1 - position);
+                    Statistics.addBytesReceived(bytesRead);
+                    return toString(line, 0, line[length - 1] == CR ? length - 1 : length);
+                }
+
+                if (length == statusLineMaxLength) {
+                    Statistics.addBytesReceived(bytesRead);
+                    throw new StatusLineTooLongProtocolException("Exceeded max size of " + statusLineMaxLength);
+                }
+                if (length == line.length) {
+                    line = source.growHeadBuffer(statusLineMaxLength);
+                }
+                line[length++] = b;
+
+                if (!wasMethodRead) {
+                    if (b == SPACE) {
+                        wasMethodRead = true;
+                        if (!isRecognizedMethod(line, length - 1)) {
+                            Statistics.addBytesReceived(bytesRead);
+                            throw new MalformedOrUnsupportedMethodProtocolException("Method "
+                                    + toString(line, 0, length - 1) + " is not supported");
+                        }
+                    } else if (length > methodMaxLength) {
+                        Statistics.addBytesReceived(bytesRead);
+                        throw new MalformedOrUnsupportedMethodProtocolException("Method name is longer than expected");
+                    }
+                }
+            }
+            source.consume(limit - position);
+        }
+
+        Statistics.addBytesReceived(bytesRead);
+
+        if (length == 0) {
+            throw new EOFException("Connection closed before the request line was received");
+        }
+
+        return toString(line, 0, length);
+    }
+
+    /**
+     * Reads the header fields up to and including the empty line terminating the head.
+     *
+     * @param in
+     * @return the header fields separated by CRLF, without the terminating empty line
+     * @throws IOException
+     * @throws RequestHeaderFieldsTooLargeProtocolException when the header fields exceed the limits
+     */
+    public String readHeaders(InputStream in) throws IOException {
+        ConnectionInputStream source = toConnectionInputStream(in);
+        byte[] headers = source.getHeadBuffer();
+        int length = 0;
+        int lineStart = 0;
+        int headersCount = 0;
+
+        while (source.fill()) {
+            byte[] buffer = source.getBuffer();
+            int position = source.getPosition();
+            int limit = source.getLimit();
+
+            for (int i = position; i < limit; i++) {
+                byte b = buffer[i];
+
+                if (b == LF) {
+                    int lineLength = length - lineStart;
+                    if (lineLength == 0 || (lineLength == 1 && headers[lineStart] == CR)) {
+                        source.consume(i + 1 - position);
+                        Statistics.addBytesReceived(length + 1);
+                        return toString(headers, 0, trimLineTerminator(headers, lineStart));
+                    }
+
+                    // Folded lines continue the previous header field
+                    if (headers[lineStart] != SPACE && headers[lineStart] != TAB
+                            && ++headersCount > headersMaxCount) {
+                        Statistics.addBytesReceived(length);
+                        throw new RequestHeaderFieldsTooLargeProtocolException(
+                                "Exceeded max number of header fields of " + headersMaxCount);
+                    }
+                }
+
+                if (length == headersMaxLength) {
+                    Statistics.addBytesReceived(length);
+                    throw new RequestHeaderFieldsTooLargeProtocolException(
+                            "Exceeded max header fields size of " + headersMaxLength);
+                }
+
+                if (length == headers.length) {
+                    headers = source.growHeadBuffer(headersMaxLength);
+                }
+                headers[length++] = b;
+
+                if (b == LF) {
+                    lineStart = length;
+                }
+            }
+            source.consume(limit - position);
+        }
+
+        Statistics.addBytesReceived(length);
+        return toString(headers, 0, trimLineTerminator(headers, length));
+    }
+
+    /**
+     * Any other stream is wrapped in a stream buffering a single byte so that nothing is read ahead.
+     *
+     * @param in
+     * @return
+     */
+    private ConnectionInputStream toConnectionInputStream(InputStream in) {
+        if (in instanceof ConnectionInputStream) {
+            return (ConnectionInputStream) in;
+        }
+        return new ConnectionInputStream(in, 1);
+    }
+
+    private boolean isRecognizedMethod(byte[] line, int length) {
+        for (String method : recognizedMethods) {
+            if (method.length() != length) {
+                continue;
+            }
+
+            int i = 0;
+            while (i < length && Character.toUpperCase((char) line[i]) == method.charAt(i)) {
+                i++;
+            }
+            if (i == length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int trimLineTerminator(byte[] bytes, int length) {
+        while (length > 0 && (bytes[length - 1] == LF || bytes[length - 1] == CR)) {
+            length--;
+        }
+        return length;
+    }
+
+    private String toString(byte[] bytes, int offset, int length) {
+        return new String(bytes, offset, length, CHARSET);
+    }
+}
@@ -0,0 +1,160 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.servlet.helper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import ro.polak.http.configuration.FilterMapping;
+import ro.polak.http.configuration.ServletMapping;
+import ro.polak.http.servlet.HttpServlet;
+
+/**
+ * Resolves the servlet and filter mappings of a servlet context using the URL patterns analysed
+ * up front. The results are remembered for the most recently requested paths.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public class MappingResolver {
+
+    private static final int DEFAULT_MAX_CACHED_PATHS = 1024;
+    private static final ServletMapping NO_SERVLET_MAPPING = new ServletMapping() {
+        @Override
+        public Pattern getUrlPattern() {
+            return null;
+        }
+
+        @Override
+        public Class<? extends HttpServlet> getServletClass() {
+            return null;
+        }
+    };
+
+    private final List<ServletMapping> servletMappings;
+    private final List<FilterMapping> filterMappings;
+    private final UrlPatternIndex servletIndex;
+    private final UrlPatternIndex filterIndex;
+    private final List<UrlPattern> filterExcludePatterns = new ArrayList<>();
+    private final Map<String, ServletMapping> servletMappingCache;
+    private final Map<String, List<FilterMapping>> filterMappingsCache;
+
+    /**
+     * Default constructor.
+     *
+     * @param servletMappings
+     * @param filterMappings
+     */
+    public MappingResolver(final List<ServletMapping> servletMappings,
+                           final List<FilterMapping> filterMappings) {
+        this(servletMappings, filterMappings, DEFAULT_MAX_CACHED_PATHS);
+    }
+
+    /**
+     * Constructor with a custom number of remembered paths.
+     *
+     * @param servletMappings
+     * @param filterMappings
+     * @param maxCachedPaths
+     */
+    public MappingResolver(final List<ServletMapping> servletMappings,
+                           final List<FilterMapping> filterMappings,
+                           final int maxCachedPaths) {
+        this.servletMappings = new ArrayList<>(servletMappings);
+        this.filterMappings = new ArrayList<>(filterMappings);
+
+        List<UrlPattern> servletPatterns = new ArrayList<>();
+        for (ServletMapping servletMapping : servletMappings) {
+            servletPatterns.add(UrlPattern.compile(servletMapping.getUrlPattern()));
+        }
+        servletIndex = new UrlPatternIndex(servletPatterns);
+
+        List<UrlPattern> filterPatterns = new ArrayList<>();
+        for (FilterMapping filterMapping : filterMappings) {
+            filterPatterns.add(UrlPattern.compile(filterMapping.getUrlPattern()));
+            filterExcludePatterns.add(filterMapping.getUrlExcludePattern() != null
+                    ? UrlPattern.compile(filterMapping.getUrlExcludePattern()) : null);
+        }
+        filterIndex = new UrlPatternIndex(filterPatterns);
+
+        servletMappingCache = new BoundedCache<>(maxCachedPaths);
+        filterMappingsCache = new BoundedCache<>(maxCachedPaths);
+    }
+
+    /**
+     * Returns the first servlet mapping matching the path.
+     *
+     * @param inContextPath the path relative to the servlet context
+     * @return
+     */
+    //@Nullable
+    public ServletMapping getServletMapping(String inContextPath) {
+        ServletMapping servletMapping;
+        synchronized (servletMappingCache) {
+            servletMapping = servletMappingCache.get(inContextPath);
+        }
+
+        if (servletMapping == null) {
+            int index = servletIndex.getFirstMatchingIndex(inContextPath);
+            servletMapping = index != -1 ? servletMappings.get(index) : NO_SERVLET_MAPPING;
+            synchronized (servletMappingCache) {
+                servletMappingCache.put(inContextPath, servletMapping);
+            }
+        }
+
+        return servletMapping != NO_SERVLET_MAPPING ? servletMapping : null;
+    }
+
+    /**
+     * Returns the filter mappings included and not excluded for the path.
+     *
+     * @param inContextPath the path relative to the servlet context
+     * @return unmodifiable list
+     */
+    public List<FilterMapping> getFilterMappings(String inContextPath) {
+        List<FilterMapping> result;
+        synchronized (filterMappingsCache) {
+            result = filterMappingsCache.get(inContextPath);
+        }
+
+        if (result == null) {
+            result = new ArrayList<>();
+            for (int index : filterIndex.getMatchingIndexes(inContextPath)) {
+                UrlPattern excludePattern = filterExcludePatterns.get(index);
+                if (excludePattern == null || !excludePattern.matches(inContextPath)) {
+                    result.add(filterMappings.get(index));
+                }
+            }
+            result = Collections.unmodifiableList(result);
+            synchronized (filterMappingsCache) {
+                filterMappingsCache.put(inContextPath, result);
+            }
+        }
+
+        return result;
+    }
+
+    private static final class BoundedCache<K, V> extends LinkedHashMap<K, V> {
+
+        private final int maxEntries;
+
+        BoundedCache(final int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxEntries;
+        }
+    }
+}
@@ -6,6 +6,9 @@
  **************************************************/
 package ro.polak.http.servlet.helper;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 import ro.polak.http.servlet.Range;
@@ -42,7 +45,7 @@ public class RangeHelper {
      * @return
      */
     public long getTotalLength(List<Range> ranges) {
-        int totalLength = 0;
+        long totalLength = 0;
         for (Range range : ranges) {
             totalLength += getRangeLength(range);
         }
@@ -65,4 +68,90 @@ public class RangeHelper {
 
         return true;
     }
+
+    /**
+     * Tells whether none of the ranges ends before it starts. Per RFC 7233 section 2.1 a range header
+     * containing such a range is syntactically invalid and must be ignored as a whole.
+     *
+     * @param ranges
+     * @return
+     */
+    public boolean isSyntacticallyValid(Iterable<Range> ranges) {
+        for (Range range : ranges) {
+            if (range.getFrom() != Range.UNSPECIFIED && range.getTo() != Range.UNSPECIFIED
+                    && range.getTo() < range.getFrom()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Resolves open and suffix ranges against the given stream length, drops the unsatisfiable ones,
+     * and merges overlapping or adjacent ranges. The resulting ranges are sorted by their start position.
+     * An empty list means that none of the ranges is satisfiable.
+     *
+     * @param ranges
+     * @param streamLength
+     * @return
+     */
+    public List<Range> normalize(List<Range> ranges, long streamLength) {
+        List<Range> resolvedRanges = new ArrayList<>(ranges.size());
+        for (Range range : ranges) {
+            Range resolvedRange = resolve(range, streamLength);
+            if (resolvedRange != null) {
+                resolvedRanges.add(resolvedRange);
+            }
+        }
+
+        if (resolvedRanges.size() < 2) {
+            return resolvedRanges;
+        }
+
+        Collections.sort(resolvedRanges, new Comparator<Range>() {
+            @Override
+            public int compare(Range o1, Range o2) {
+                return o1.getFrom() < o2.getFrom() ? -1 : (o1.getFrom() == o2.getFrom() ? 0 : 1);
+            }
+        });
+
+        List<Range> mergedRanges = new ArrayList<>(resolvedRanges.size());
+        Range current = resolvedRanges.get(0);
+        for (int i = 1; i < resolvedRanges.size(); i++) {
+            Range next = resolvedRanges.get(i);
+            if (next.getFrom() <= current.getTo() + 1) {
+                current.setTo(Math.max(current.getTo(), next.getTo()));
+            } else {
+                mergedRanges.add(current);
+                current = next;
+            }
+        }
+        mergedRanges.add(current);
+
+        return mergedRanges;
+    }
+
+    private Range resolve(Range range, long streamLength) {
+        long from = range.getFrom();
+        long to = range.getTo();
+
+        if (from == Range.UNSPECIFIED) {
+            if (to <= 0 || streamLength == 0) {
+                return null;
+            }
+            return new Range(Math.max(0, streamLength - to), streamLength - 1);
+        }
+
+        if (to == Range.UNSPECIFIED || to >= streamLength) {
+            to = streamLength - 1;
+        }
+
+        Range resolvedRange = new Range(from, to);
+        if (from >= streamLength || !isRangeValid(resolvedRange)) {
+            return null;
+        }
+
+        return resolvedRange;
+    }
 }
@@ -27,8 +27,13 @@ public class ServletContextHelper {
     //@Nullable
     public ServletMapping getResolvedServletMapping(ServletContext servletContext, String path) {
         Objects.requireNonNull(servletContext);
+        String inContextPath = getPathInContext(servletContext, path);
+        MappingResolver mappingResolver = getMappingResolver(servletContext);
+        if (mappingResolver != null) {
+            return mappingResolver.getServletMapping(inContextPath);
+        }
+
         for (ServletMapping servletMapping : servletContext.getServletMappings()) {
-            String inContextPath = getPathInContext(servletContext, path);
             if (servletMapping.getUrlPattern().matcher(inContextPath).matches()) {
                 return servletMapping;
             }
@@ -60,6 +65,10 @@ public class ServletContextHelper {
     public List<FilterMapping> getFilterMappingsForPath(ServletContext servletContext, String path) {
         Objects.requireNonNull(servletContext);
         String inContextPath = getPathInContext(servletContext, path);
+        MappingResolver mappingResolver = getMappingResolver(servletContext);
+        if (mappingResolver != null) {
+            return mappingResolver.getFilterMappings(inContextPath);
+        }
 
         List<FilterMapping> filterMappings = new ArrayList<>();
         for (FilterMapping filterMapping : servletContext.getFilterMappings()) {
@@ -77,6 +86,13 @@ public class ServletContextHelper {
         return filterMappings;
     }
 
+    private MappingResolver getMappingResolver(ServletContext servletContext) {
+        if (servletContext instanceof ServletContextImpl) {
+            return ((ServletContextImpl) servletContext).getMappingResolver();
+        }
+        return null;
+    }
+
     private String getPathInContext(ServletContext servletContext, String path) {
         return path.substring(servletContext.getContextPath().length());
     }
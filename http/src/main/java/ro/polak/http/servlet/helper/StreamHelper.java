@@ -6,16 +6,19 @@
  **************************************************/
 package ro.polak.http.servlet.helper;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.util.List;
 
 import ro.polak.http.RangePartHeader;
 import ro.polak.http.Statistics;
 import ro.polak.http.exception.UnexpectedSituationException;
+import ro.polak.http.impl.ConnectionOutputStream;
 import ro.polak.http.protocol.serializer.impl.RangePartHeaderSerializer;
 import ro.polak.http.servlet.Range;
 import ro.polak.http.servlet.helper.RangeHelper;
@@ -29,6 +32,7 @@ import ro.polak.http.servlet.helper.RangeHelper;
 public class StreamHelper {
 
     private static final int BUFFER_SIZE = 512;
+    private static final int COPY_BUFFER_SIZE = 8 * 1024;
     private static final String NEW_LINE = "\r\n";
     private static final Charset CHARSET = Charset.forName("UTF-8");
 
@@ -51,12 +55,10 @@ public class StreamHelper {
     public void serveMultiRangeStream(InputStream inputStream, OutputStream outputStream)
             throws IOException {
         int numberOfBufferReadBytes;
-        byte[] buffer = new byte[BUFFER_SIZE];
+        byte[] buffer = allocateCopyBuffer(outputStream, Long.MAX_VALUE);
 
         while ((numberOfBufferReadBytes = inputStream.read(buffer)) != -1) {
             outputStream.write(buffer, 0, numberOfBufferReadBytes);
-            outputStream.flush();
-
             Statistics.addBytesSent(numberOfBufferReadBytes);
         }
     }
@@ -67,35 +69,55 @@ public class StreamHelper {
      * @param inputStream
      * @param outputStream
      * @param range
+     * @param position the current position of the input stream
+     * @return the position of the input stream after serving the range
      * @throws IOException
      */
-    private void doServeRangeStream(InputStream inputStream, OutputStream outputStream, Range range)
+    private long doServeRangeStream(InputStream inputStream, OutputStream outputStream, Range range, long position)
             throws IOException {
         int numberOfBufferReadBytes;
         byte[] buffer = new byte[BUFFER_SIZE];
         long numberOfBytesServedForRange = 0;
+        long rangeLength = rangeHelper.getRangeLength(range);
 
-        inputStream.reset();
-        if (inputStream.skip(range.getFrom()) != range.getFrom()) {
-            throw new UnexpectedSituationException("Failed to skip bytes from input stream.");
+        // Ranges following each other are served by skipping forward, rewinding is only needed for
+        // overlapping or unordered ranges.
+        if (range.getFrom() < position) {
+            inputStream.reset();
+            position = 0;
         }
+        skipFully(inputStream, range.getFrom() - position);
 
-        while ((numberOfBufferReadBytes = inputStream.read(buffer)) != -1) {
-            int numberOfBytesToServe = numberOfBufferReadBytes;
-            long numberOfBytesRemaining = rangeHelper.getRangeLength(range) - numberOfBytesServedForRange;
-            if (numberOfBytesRemaining < numberOfBytesToServe) {
-                // There is no way this value is greater than Integer.MAX_VALUE
-                numberOfBytesToServe = (int) numberOfBytesRemaining;
-            }
+        // Never reading past the range end keeps the stream position known for the following range
+        while (numberOfBytesServedForRange < rangeLength
+                && (numberOfBufferReadBytes = inputStream.read(buffer, 0,
+                (int) Math.min(BUFFER_SIZE, rangeLength - numberOfBytesServedForRange))) != -1) {
+            outputStream.write(buffer, 0, numberOfBufferReadBytes);
+            Statistics.addBytesSent(numberOfBufferReadBytes);
 
-            outputStream.write(buffer, 0, numberOfBytesToServe);
-            outputStream.flush();
-            Statistics.addBytesSent(numberOfBytesToServe);
+            numberOfBytesServedForRange += numberOfBufferReadBytes;
+        }
 
-            numberOfBytesServedForRange += numberOfBytesToServe;
+        return range.getFrom() + numberOfBytesServedForRange;
+    }
 
-            if (numberOfBytesServedForRange >= range.getTo()) {
-                break;
+    /**
+     * Skips the given number of bytes, InputStream.skip() is allowed to skip less bytes than requested.
+     *
+     * @param inputStream
+     * @param numberOfBytes
+     * @throws IOException
+     */
+    private void skipFully(InputStream inputStream, long numberOfBytes) throws IOException {
+        long remaining = numberOfBytes;
+        while (remaining > 0) {
+            long skipped = inputStream.skip(remaining);
+            if (skipped > 0) {
+                remaining -= skipped;
+            } else if (inputStream.read() != -1) {
+                remaining--;
+            } else {
+                throw new UnexpectedSituationException("Failed to skip bytes from input stream.");
             }
         }
     }
@@ -116,13 +138,14 @@ public class StreamHelper {
                                       long totalLength) throws IOException {
         inputStream.mark(0);
 
-        serveMultiRangeStream(new ByteArrayInputStream(NEW_LINE.getBytes(CHARSET)), outputStream);
+        long position = 0;
+        write(outputStream, NEW_LINE.getBytes(CHARSET));
         for (Range range : rangeList) {
             doServeRangePartHeader(outputStream, boundary, contentType, totalLength, range);
-            doServeRangeStream(inputStream, outputStream, range);
-            serveMultiRangeStream(new ByteArrayInputStream(NEW_LINE.getBytes(CHARSET)), outputStream);
+            position = doServeRangeStream(inputStream, outputStream, range, position);
+            write(outputStream, NEW_LINE.getBytes(CHARSET));
         }
-        serveMultiRangeStream(new ByteArrayInputStream(rangePartHeaderSerializer.serializeLastBoundaryDeliminator(boundary).getBytes(CHARSET)), outputStream);
+        write(outputStream, rangePartHeaderSerializer.serializeLastBoundaryDeliminator(boundary).getBytes(CHARSET));
     }
 
     private void doServeRangePartHeader(OutputStream outputStream, String boundary,
@@ -131,7 +154,7 @@ public class StreamHelper {
         RangePartHeader rangePartHeader = new RangePartHeader(range, boundary, contentType, totalLength);
         byte[] rangePartHeaderBytes= rangePartHeaderSerializer.serialize(rangePartHeader).getBytes(CHARSET);
 
-        serveMultiRangeStream(new ByteArrayInputStream(rangePartHeaderBytes), outputStream);
+        write(outputStream, rangePartHeaderBytes);
     }
 
     /**
@@ -144,7 +167,220 @@ public class StreamHelper {
      */
     public void serveMultiRangeStream(InputStream inputStream, OutputStream outputStream,
                                       Range range) throws IOException {
-        inputStream.mark(0);
-        doServeRangeStream(inputStream, outputStream, range);
+        doServeRangeStream(inputStream, outputStream, range, 0);
+    }
+
+    /**
+     * Serves the first length bytes of the file to the output stream.
+     *
+     * @param fileChannel
+     * @param outputStream
+     * @param length
+     * @throws IOException
+     */
+    public void serveFileChannel(FileChannel fileChannel, OutputStream outputStream, long length)
+            throws IOException {
+        transfer(fileChannel, outputStream, 0, length);
+    }
+
+    /**
+     * Serves a single range of the file to the output stream.
+     *
+     * @param fileChannel
+     * @param outputStream
+     * @param range
+     * @throws IOException
+     */
+    public void serveFileChannel(FileChannel fileChannel, OutputStream outputStream, Range range)
+            throws IOException {
+        transfer(fileChannel, outputStream, range.getFrom(), rangeHelper.getRangeLength(range));
+    }
+
+    /**
+     * Serves multiple ranges of the file to the output stream.
+     *
+     * @param fileChannel
+     * @param outputStream
+     * @param rangeList
+     * @param boundary
+     * @param contentType
+     * @param totalLength
+     * @throws IOException
+     */
+    public void serveFileChannel(FileChannel fileChannel, OutputStream outputStream,
+                                 List<Range> rangeList, String boundary, String contentType,
+                                 long totalLength) throws IOException {
+        serveRanges(fileChannel, null, outputStream, rangeList, boundary, contentType, totalLength);
+    }
+
+    /**
+     * Serves the whole buffer to the output stream.
+     *
+     * @param buffer
+     * @param outputStream
+     * @throws IOException
+     */
+    public void serveBuffer(ByteBuffer buffer, OutputStream outputStream) throws IOException {
+        transfer(buffer, outputStream, 0, buffer.capacity());
+    }
+
+    /**
+     * Serves a single range of the buffer to the output stream.
+     *
+     * @param buffer
+     * @param outputStream
+     * @param range
+     * @throws IOException
+     */
+    public void serveBuffer(ByteBuffer buffer, OutputStream outputStream, Range range) throws IOException {
+        transfer(buffer, outputStream, range.getFrom(), rangeHelper.getRangeLength(range));
+    }
+
+    /**
+     * Serves multiple ranges of the buffer to the output stream.
+     *
+     * @param buffer
+     * @param outputStream
+     * @param rangeList
+     * @param boundary
+     * @param contentType
+     * @param totalLength
+     * @throws IOException
+     */
+    public void serveBuffer(ByteBuffer buffer, OutputStream outputStream,
+                            List<Range> rangeList, String boundary, String contentType,
+                            long totalLength) throws IOException {
+        serveRanges(null, buffer, outputStream, rangeList, boundary, contentType, totalLength);
+    }
+
+    /**
+     * Serves multiple ranges of either the file or the buffer.
+     */
+    private void serveRanges(FileChannel fileChannel, ByteBuffer buffer, OutputStream outputStream,
+                             List<Range> rangeList, String boundary, String contentType,
+                             long totalLength) throws IOException {
+        byte[] newLine = NEW_LINE.getBytes(CHARSET);
+
+        write(outputStream, newLine);
+        for (Range range : rangeList) {
+            RangePartHeader rangePartHeader = new RangePartHeader(range, boundary, contentType, totalLength);
+            write(outputStream, rangePartHeaderSerializer.serialize(rangePartHeader).getBytes(CHARSET));
+            if (buffer != null) {
+                transfer(buffer, outputStream, range.getFrom(), rangeHelper.getRangeLength(range));
+            } else {
+                transfer(fileChannel, outputStream, range.getFrom(), rangeHelper.getRangeLength(range));
+            }
+            write(outputStream, newLine);
+        }
+        write(outputStream, rangePartHeaderSerializer.serializeLastBoundaryDeliminator(boundary).getBytes(CHARSET));
+    }
+
+    /**
+     * Transfers a region of the file to the output stream. The region is handed over directly
+     * to the connection channel when there is one, otherwise it is copied using positional reads
+     * so that the cost does not depend on the position.
+     *
+     * @param fileChannel
+     * @param outputStream
+     * @param position
+     * @param count
+     * @throws IOException
+     */
+    private void transfer(FileChannel fileChannel, OutputStream outputStream, long position, long count)
+            throws IOException {
+        WritableByteChannel channel = getChannel(outputStream);
+
+        long remaining = count;
+        if (channel != null) {
+            ((ConnectionOutputStream) outputStream).flushConnection();
+            while (remaining > 0) {
+                long numberOfBytesTransferred = fileChannel.transferTo(position, remaining, channel);
+                if (numberOfBytesTransferred <= 0 && position >= fileChannel.size()) {
+                    throw new IOException("Premature end of file at position " + position);
+                }
+                position += numberOfBytesTransferred;
+                remaining -= numberOfBytesTransferred;
+                Statistics.addBytesSent(numberOfBytesTransferred);
+            }
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(allocateCopyBuffer(outputStream, remaining));
+        while (remaining > 0) {
+            buffer.clear();
+            if (remaining < buffer.capacity()) {
+                buffer.limit((int) remaining);
+            }
+            int numberOfBytesRead = fileChannel.read(buffer, position);
+            if (numberOfBytesRead == -1) {
+                throw new IOException("Premature end of file at position " + position);
+            }
+            outputStream.write(buffer.array(), 0, numberOfBytesRead);
+            position += numberOfBytesRead;
+            remaining -= numberOfBytesRead;
+            Statistics.addBytesSent(numberOfBytesRead);
+        }
+    }
+
+    /**
+     * Writes a region of the buffer to the output stream, directly to the connection channel
+     * when there is one.
+     *
+     * @param buffer
+     * @param outputStream
+     * @param position
+     * @param count
+     * @throws IOException
+     */
+    private void transfer(ByteBuffer buffer, OutputStream outputStream, long position, long count)
+            throws IOException {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit((int) (position + count));
+        slice.position((int) position);
+
+        WritableByteChannel channel = getChannel(outputStream);
+        if (channel != null) {
+            ((ConnectionOutputStream) outputStream).flushConnection();
+            while (slice.hasRemaining()) {
+                Statistics.addBytesSent(channel.write(slice));
+            }
+            return;
+        }
+
+        byte[] bytes = allocateCopyBuffer(outputStream, slice.remaining());
+        while (slice.hasRemaining()) {
+            int numberOfBytes = Math.min(bytes.length, slice.remaining());
+            slice.get(bytes, 0, numberOfBytes);
+            outputStream.write(bytes, 0, numberOfBytes);
+            Statistics.addBytesSent(numberOfBytes);
+        }
+    }
+
+    /**
+     * Allocates the buffer of a single copy. It is as large as the buffer of the connection, so that
+     * every chunk bypasses that buffer, but no larger than the number of bytes to copy.
+     *
+     * @param outputStream
+     * @param count
+     * @return
+     */
+    private byte[] allocateCopyBuffer(OutputStream outputStream, long count) {
+        int size = COPY_BUFFER_SIZE;
+        if (outputStream instanceof ConnectionOutputStream) {
+            size = ((ConnectionOutputStream) outputStream).getBufferSize();
+        }
+        return new byte[(int) Math.max(1, Math.min(size, count))];
+    }
+
+    private WritableByteChannel getChannel(OutputStream outputStream) {
+        if (outputStream instanceof ConnectionOutputStream) {
+            return ((ConnectionOutputStream) outputStream).getChannel();
+        }
+        return null;
+    }
+
+    private void write(OutputStream outputStream, byte[] bytes) throws IOException {
+        outputStream.write(bytes);
+        Statistics.addBytesSent(bytes.length);
     }
 }
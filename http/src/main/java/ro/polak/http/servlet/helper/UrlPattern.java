@@ -0,0 +1,131 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.servlet.helper;
+
+import java.util.regex.Pattern;
+
+/**
+ * URL pattern analysed so that the plain literals and prefixes are matched without the regex engine.
+ * <p/>
+ * A pattern such as <code>^/Index$</code> is a literal, a pattern such as <code>^/secured/.*$</code>
+ * is a prefix. Any other pattern, or a pattern compiled with flags, is matched as a regex.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public final class UrlPattern {
+
+    /**
+     * Pattern type.
+     */
+    public enum Type {
+        LITERAL, PREFIX, REGEX
+    }
+
+    private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    private final Pattern pattern;
+    private final Type type;
+    private final String value;
+
+    private UrlPattern(final Pattern pattern, final Type type, final String value) {
+        this.pattern = pattern;
+        this.type = type;
+        this.value = value;
+    }
+
+    /**
+     * Analyses the given pattern.
+     *
+     * @param pattern
+     * @return
+     */
+    public static UrlPattern compile(Pattern pattern) {
+        if (pattern.flags() != 0) {
+            return new UrlPattern(pattern, Type.REGEX, null);
+        }
+
+        String value = pattern.pattern();
+        if (value.startsWith("^")) {
+            value = value.substring(1);
+        }
+        if (value.endsWith("$") && !value.endsWith("\\$")) {
+            value = value.substring(0, value.length() - 1);
+        }
+
+        Type type = Type.LITERAL;
+        if (value.endsWith(".*") && !value.endsWith("\\.*")) {
+            value = value.substring(0, value.length() - 2);
+            type = Type.PREFIX;
+        }
+
+        if (!isLiteral(value)) {
+            return new UrlPattern(pattern, Type.REGEX, null);
+        }
+        return new UrlPattern(pattern, type, value);
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the literal or the prefix, null for regex patterns.
+     *
+     * @return
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Tells whether the whole path matches the pattern.
+     *
+     * @param path
+     * @return
+     */
+    public boolean matches(String path) {
+        switch (type) {
+            case LITERAL:
+                return path.equals(value);
+            case PREFIX:
+                return path.startsWith(value) && getLastLineTerminatorIndex(path) < value.length();
+            default:
+                return pattern.matcher(path).matches();
+        }
+    }
+
+    /**
+     * Returns the index of the last character not matched by the dot, -1 if there is none.
+     *
+     * @param path
+     * @return
+     */
+    static int getLastLineTerminatorIndex(String path) {
+        for (int i = path.length() - 1; i >= 0; i--) {
+            char c = path.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isLiteral(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (METACHARACTERS.indexOf(value.charAt(i)) != -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
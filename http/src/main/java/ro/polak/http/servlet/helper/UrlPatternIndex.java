@@ -0,0 +1,176 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2018-2018
+ **************************************************/
+
+package ro.polak.http.servlet.helper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of URL patterns telling which of them match a path.
+ * <p/>
+ * Literal patterns are looked up in a hash map, prefix patterns in a trie, only the remaining
+ * patterns are evaluated as regexes. The results keep the order in which the patterns were given.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201806
+ */
+public class UrlPatternIndex {
+
+    private final int size;
+    private final Map<String, List<Integer>> literals = new HashMap<>();
+    private final PrefixNode prefixes = new PrefixNode();
+    private final List<Integer> regexIndexes = new ArrayList<>();
+    private final List<UrlPattern> regexes = new ArrayList<>();
+
+    /**
+     * Default constructor.
+     *
+     * @param urlPatterns
+     */
+    public UrlPatternIndex(final List<UrlPattern> urlPatterns) {
+        size = urlPatterns.size();
+        for (int i = 0; i < urlPatterns.size(); i++) {
+            UrlPattern urlPattern = urlPatterns.get(i);
+            switch (urlPattern.getType()) {
+                case LITERAL:
+                    List<Integer> indexes = literals.get(urlPattern.getValue());
+                    if (indexes == null) {
+                        indexes = new ArrayList<>();
+                        literals.put(urlPattern.getValue(), indexes);
+                    }
+                    indexes.add(i);
+                    break;
+                case PREFIX:
+                    prefixes.getNode(urlPattern.getValue()).indexes.add(i);
+                    break;
+                default:
+                    regexIndexes.add(i);
+                    regexes.add(urlPattern);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the first pattern matching the path.
+     *
+     * @param path
+     * @return the index or -1 when no pattern matches
+     */
+    public int getFirstMatchingIndex(String path) {
+        int first = size;
+
+        List<Integer> literalIndexes = literals.get(path);
+        if (literalIndexes != null) {
+            first = literalIndexes.get(0);
+        }
+
+        boolean[] prefixMatches = getPrefixMatches(path);
+        if (prefixMatches != null) {
+            for (int i = 0; i < first; i++) {
+                if (prefixMatches[i]) {
+                    first = i;
+                    break;
+                }
+            }
+        }
+
+        for (int i = 0; i < regexes.size() && regexIndexes.get(i) < first; i++) {
+            if (regexes.get(i).matches(path)) {
+                first = regexIndexes.get(i);
+                break;
+            }
+        }
+
+        return first < size ? first : -1;
+    }
+
+    /**
+     * Returns the ascending indexes of all the patterns matching the path.
+     *
+     * @param path
+     * @return
+     */
+    public List<Integer> getMatchingIndexes(String path) {
+        boolean[] matches = getPrefixMatches(path);
+        if (matches == null) {
+            matches = new boolean[size];
+        }
+
+        List<Integer> literalIndexes = literals.get(path);
+        if (literalIndexes != null) {
+            for (int index : literalIndexes) {
+                matches[index] = true;
+            }
+        }
+
+        for (int i = 0; i < regexes.size(); i++) {
+            if (regexes.get(i).matches(path)) {
+                matches[regexIndexes.get(i)] = true;
+            }
+        }
+
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (matches[i]) {
+                indexes.add(i);
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Walks the prefix trie along the path.
+     *
+     * @param path
+     * @return the matched indexes or null when no prefix matches
+     */
+    private boolean[] getPrefixMatches(String path) {
+        // The dot of the prefix patterns does not match line terminators
+        int lastLineTerminatorIndex = UrlPattern.getLastLineTerminatorIndex(path);
+
+        boolean[] matches = null;
+        PrefixNode node = prefixes;
+        int depth = 0;
+        while (node != null) {
+            if (!node.indexes.isEmpty() && lastLineTerminatorIndex < depth) {
+                if (matches == null) {
+                    matches = new boolean[size];
+                }
+                for (int index : node.indexes) {
+                    matches[index] = true;
+                }
+            }
+            if (depth == path.length()) {
+                break;
+            }
+            node = node.children.get(path.charAt(depth++));
+        }
+        return matches;
+    }
+
+    private static final class PrefixNode {
+        private final Map<Character, PrefixNode> children = new HashMap<>();
+        private final List<Integer> indexes = new ArrayList<>(1);
+
+        private PrefixNode getNode(String prefix) {
+            PrefixNode node = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                PrefixNode child = node.children.get(prefix.charAt(i));
+                if (child == null) {
+                    child = new PrefixNode();
+                    node.children.put(prefix.charAt(i), child);
+                }
+                node = child;
+            }
+            return node;
+        }
+    }
+}
@@ -8,35 +8,44 @@
 package ro.polak.http.servlet.impl;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.security.Principal;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
 import ro.polak.http.Headers;
+import ro.polak.http.MultipartRequestHandler;
 import ro.polak.http.RequestStatus;
 import ro.polak.http.Statistics;
+import ro.polak.http.exception.protocol.ProtocolException;
 import ro.polak.http.protocol.parser.MalformedInputException;
+import ro.polak.http.protocol.parser.Parser;
 import ro.polak.http.protocol.parser.impl.LocaleParser;
 import ro.polak.http.servlet.Cookie;
 import ro.polak.http.servlet.HttpServletRequest;
 import ro.polak.http.servlet.HttpSession;
+import ro.polak.http.servlet.PartIterator;
 import ro.polak.http.servlet.ServletContext;
 import ro.polak.http.servlet.UploadedFile;
+import ro.polak.http.utilities.DateUtilities;
+import ro.polak.http.utilities.IOUtilities;
 import ro.polak.http.utilities.StringUtilities;
 
-import static java.util.TimeZone.getTimeZone;
-
 /**
  * HTTP request wrapper
+ * <p/>
+ * The query string, the cookies, the urlencoded post body and the locales are kept raw and parsed
+ * only on the first access, most of the requests, for instance for static resources, never need them.
+ * The body is not read ahead, it is available as a stream limited to the declared content length.
  *
  * @author Piotr Polak piotr [at] polak [dot] ro
  * @since 200802
@@ -53,7 +62,10 @@ public class HttpRequestImpl implements HttpServletRequest {
     public final static String METHOD_POST = "POST";
     public final static String METHOD_PUT = "PUT";
     public final static String METHOD_TRACE = "TRACE";
-    private final static String DATE_FORMAT = "EEE, d MMM yyyy HH:mm:ss z";
+    public final static String CONTENT_TYPE_FORM_URLENCODED = "application/x-www-form-urlencoded";
+    public final static String EXPECT_100_CONTINUE = "100-continue";
+    private final static String HTTP_1_1 = "HTTP/1.1";
+    private final static Charset POST_BODY_CHARSET = Charset.forName("ISO-8859-1");
 
     private Map<String, String> postParameters;
     private Map<String, String> getParameters;
@@ -64,7 +76,12 @@ public class HttpRequestImpl implements HttpServletRequest {
     private String remoteAddr;
 
     private Map<String, Cookie> cookies;
+    private List<Locale> locales;
+    private boolean wereLocalesParsed = false;
+    private Parser<Map<String, String>> queryStringParser;
+    private Parser<Map<String, Cookie>> cookieParser;
     private Collection<UploadedFile> uploadedFiles;
+    private MultipartRequestHandler multipartRequestHandler;
     private HttpSessionImpl session;
     private boolean sessionWasRequested = false;
     private ServletContextImpl servletContext;
@@ -91,8 +108,6 @@ public class HttpRequestImpl implements HttpServletRequest {
      */
     public HttpRequestImpl() {
         Statistics.incrementRequestHandled();
-        postParameters = new HashMap<>();
-        getParameters = new HashMap<>();
         uploadedFiles = new HashSet<>();
         attributes = new HashMap<>();
     }
@@ -155,14 +170,7 @@ public class HttpRequestImpl implements HttpServletRequest {
             return -1;
         }
 
-        SimpleDateFormat simpleDateFormat = new SimpleDateFormat(DATE_FORMAT, Locale.US);
-        simpleDateFormat.setTimeZone(getTimeZone("GMT"));
-        try {
-            Date date = simpleDateFormat.parse(headers.getHeader(name));
-            return date.getTime();
-        } catch (ParseException e) {
-            return -1;
-        }
+        return DateUtilities.parseDate(headers.getHeader(name));
     }
 
     @Override
@@ -172,6 +180,7 @@ public class HttpRequestImpl implements HttpServletRequest {
 
     @Override
     public Cookie[] getCookies() {
+        Map<String, Cookie> cookies = getCookieMap();
         Cookie[] cookiesArray = new Cookie[cookies.size()];
         cookies.values().toArray(cookiesArray);
 
@@ -210,10 +219,21 @@ public class HttpRequestImpl implements HttpServletRequest {
 
     @Override
     public int getContentLength() {
+        long contentLength = getContentLengthLong();
+        return contentLength <= Integer.MAX_VALUE ? (int) contentLength : -1;
+    }
+
+    @Override
+    public long getContentLengthLong() {
         if (!headers.containsHeader(Headers.HEADER_CONTENT_LENGTH)) {
             return -1;
         }
-        return getIntHeader(Headers.HEADER_CONTENT_LENGTH);
+
+        try {
+            return Long.parseLong(getHeader(Headers.HEADER_CONTENT_LENGTH).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
     }
 
     @Override
@@ -243,16 +263,22 @@ public class HttpRequestImpl implements HttpServletRequest {
 
     @Override
     public Enumeration getLocales() {
-        if (!StringUtilities.isEmpty(headers.getHeader(Headers.HEADER_ACCEPT_LANGUAGE))) {
-            try {
-                return Collections.enumeration(
-                        new LocaleParser().parse(headers.getHeader(Headers.HEADER_ACCEPT_LANGUAGE)));
-            } catch (MalformedInputException e) {
-                // return null
+        if (!wereLocalesParsed) {
+            wereLocalesParsed = true;
+            if (!StringUtilities.isEmpty(headers.getHeader(Headers.HEADER_ACCEPT_LANGUAGE))) {
+                try {
+                    locales = new LocaleParser().parse(headers.getHeader(Headers.HEADER_ACCEPT_LANGUAGE));
+                } catch (MalformedInputException e) {
+                    // locales remain null
+                }
             }
         }
 
-        return null;
+        if (locales == null) {
+            return null;
+        }
+
+        return Collections.enumeration(locales);
     }
 
     @Override
@@ -269,10 +295,10 @@ public class HttpRequestImpl implements HttpServletRequest {
     public Map getParameterMap() {
         String method = getMethod().toUpperCase();
         if (method.equals(METHOD_POST) || method.equals(METHOD_PUT)) {
-            return postParameters;
+            return getPostParameters();
         }
 
-        return getParameters;
+        return getGetParameters();
     }
 
     @Override
@@ -355,25 +381,46 @@ public class HttpRequestImpl implements HttpServletRequest {
 
     @Override
     public Collection<UploadedFile> getUploadedFiles() {
+        handleMultipartBody();
         return uploadedFiles;
     }
 
     @Override
-    public Cookie getCookie(String cookieName) {
-        if (cookies.containsKey(cookieName)) {
-            return cookies.get(cookieName);
+    public PartIterator getPartIterator() {
+        if (multipartRequestHandler == null) {
+            throw new IllegalStateException("The request is not multipart or its body has already been read");
         }
-        return null;
+
+        PartIterator partIterator = multipartRequestHandler.getPartIterator();
+        multipartRequestHandler = null;
+        if (postParameters == null) {
+            postParameters = new HashMap<>();
+        }
+        return partIterator;
+    }
+
+    /**
+     * Tells whether the multipart body is still waiting to be read, no files have been uploaded yet.
+     *
+     * @return
+     */
+    public boolean isMultipartBodyPending() {
+        return multipartRequestHandler != null;
+    }
+
+    @Override
+    public Cookie getCookie(String cookieName) {
+        return getCookieMap().get(cookieName);
     }
 
     @Override
     public String getParameter(String paramName) {
-        return getParameters.get(paramName);
+        return getGetParameters().get(paramName);
     }
 
     @Override
     public String getPostParameter(String paramName) {
-        return postParameters.get(paramName);
+        return getPostParameters().get(paramName);
     }
 
     @Override
@@ -463,6 +510,29 @@ public class HttpRequestImpl implements HttpServletRequest {
         return false; // Not really implemented
     }
 
+    /**
+     * Tells whether the client waits for 100 Continue before sending the body, the expectation
+     * is ignored for HTTP/1.0 requests.
+     *
+     * @return
+     */
+    public boolean isContinueExpected() {
+        return headers != null && status != null
+                && headers.containsHeader(Headers.HEADER_EXPECT)
+                && EXPECT_100_CONTINUE.equalsIgnoreCase(headers.getHeader(Headers.HEADER_EXPECT).trim())
+                && HTTP_1_1.equalsIgnoreCase(getProtocol());
+    }
+
+    /**
+     * Tells whether the body is urlencoded form data, the body of no declared type is considered so.
+     *
+     * @return
+     */
+    public boolean isFormUrlEncoded() {
+        String contentType = headers == null ? null : headers.getHeader(Headers.HEADER_CONTENT_TYPE);
+        return contentType == null || contentType.trim().toLowerCase().startsWith(CONTENT_TYPE_FORM_URLENCODED);
+    }
+
     /**
      * Sets the servlet context.
      *
@@ -484,6 +554,34 @@ public class HttpRequestImpl implements HttpServletRequest {
         this.uploadedFiles = uploadedFiles;
     }
 
+    /**
+     * Sets the handler used to read the multipart body, either when the post parameters or the
+     * uploaded files are first accessed or part by part using {@link #getPartIterator()}.
+     *
+     * @param multipartRequestHandler
+     */
+    public void setMultipartRequestHandler(MultipartRequestHandler multipartRequestHandler) {
+        this.multipartRequestHandler = multipartRequestHandler;
+    }
+
+    /**
+     * Sets the parser used to lazily parse the query string and the urlencoded post body.
+     *
+     * @param queryStringParser
+     */
+    public void setQueryStringParser(Parser<Map<String, String>> queryStringParser) {
+        this.queryStringParser = queryStringParser;
+    }
+
+    /**
+     * Sets the parser used to lazily parse the cookie header.
+     *
+     * @param cookieParser
+     */
+    public void setCookieParser(Parser<Map<String, Cookie>> cookieParser) {
+        this.cookieParser = cookieParser;
+    }
+
     public void setGetParameters(Map<String, String> getParameters) {
         this.getParameters = getParameters;
     }
@@ -560,6 +658,92 @@ public class HttpRequestImpl implements HttpServletRequest {
         this.principal = principal;
     }
 
+    private Map<String, String> getGetParameters() {
+        if (getParameters == null) {
+            getParameters = parseParameters(status == null ? null : status.getQueryString());
+        }
+        return getParameters;
+    }
+
+    private Map<String, String> getPostParameters() {
+        handleMultipartBody();
+        if (postParameters == null) {
+            if (status != null && getMethod().equalsIgnoreCase(METHOD_POST) && !isMultipart && isFormUrlEncoded()) {
+                postParameters = parseParameters(readBody());
+            } else {
+                postParameters = new HashMap<>();
+            }
+        }
+        return postParameters;
+    }
+
+    /**
+     * Reads the multipart body saving the uploaded files in the temporary directory, unless the
+     * body has already been read.
+     */
+    private void handleMultipartBody() {
+        if (multipartRequestHandler == null) {
+            return;
+        }
+
+        MultipartRequestHandler handler = multipartRequestHandler;
+        multipartRequestHandler = null;
+        try {
+            handler.handle();
+        } catch (IOException | MalformedInputException e) {
+            throw new ProtocolException("Unable to read the multipart body", e);
+        } finally {
+            // The files received before a failure are still to be freed
+            postParameters = handler.getPost();
+            uploadedFiles = handler.getUploadedFiles();
+        }
+    }
+
+    /**
+     * Reads the not yet consumed part of the body.
+     *
+     * @return
+     * @throws ProtocolException when the body can not be read completely, a partial body is not parsed
+     */
+    private String readBody() {
+        if (in == null) {
+            return null;
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try {
+            IOUtilities.copyStreams(in, body);
+        } catch (IOException e) {
+            throw new ProtocolException("Unable to read the form body", e);
+        }
+        return new String(body.toByteArray(), POST_BODY_CHARSET);
+    }
+
+    private Map<String, String> parseParameters(String input) {
+        if (queryStringParser != null && !StringUtilities.isEmpty(input)) {
+            try {
+                return queryStringParser.parse(input);
+            } catch (MalformedInputException e) {
+                // Returns an empty map
+            }
+        }
+        return new HashMap<>();
+    }
+
+    private Map<String, Cookie> getCookieMap() {
+        if (cookies == null) {
+            cookies = new HashMap<>();
+            if (cookieParser != null && headers != null && headers.containsHeader(Headers.HEADER_COOKIE)) {
+                try {
+                    cookies = cookieParser.parse(headers.getHeader(Headers.HEADER_COOKIE));
+                } catch (MalformedInputException e) {
+                    // Returns an empty map
+                }
+            }
+        }
+        return cookies;
+    }
+
     /**
      * Returns requested host name.
      *
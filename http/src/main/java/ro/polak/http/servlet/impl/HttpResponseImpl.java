@@ -6,17 +6,20 @@
  **************************************************/
 package ro.polak.http.servlet.impl;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
 import ro.polak.http.Headers;
+import ro.polak.http.Statistics;
+import ro.polak.http.impl.ConnectionOutputStream;
 import ro.polak.http.impl.ServletOutputStreamImpl;
 import ro.polak.http.protocol.serializer.Serializer;
 import ro.polak.http.servlet.ChunkedPrintWriter;
@@ -26,7 +29,7 @@ import ro.polak.http.servlet.Range;
 import ro.polak.http.servlet.ServletOutputStream;
 import ro.polak.http.servlet.ServletPrintWriter;
 import ro.polak.http.servlet.helper.StreamHelper;
-import ro.polak.http.utilities.IOUtilities;
+import ro.polak.http.utilities.DateUtilities;
 
 /**
  * Represents HTTP response
@@ -70,6 +73,9 @@ public class HttpResponseImpl implements HttpServletResponse {
         this.streamHelper = streamHelper;
         this.cookieHeaderSerializer = cookieHeaderSerializer;
         this.outputStream = outputStream;
+        if (outputStream instanceof ConnectionOutputStream) {
+            bufferSize = ((ConnectionOutputStream) outputStream).getBufferSize();
+        }
 
         wrappedOutputStream = new ServletOutputStreamImpl(outputStream, this);
 
@@ -107,7 +113,15 @@ public class HttpResponseImpl implements HttpServletResponse {
 
     @Override
     public void setBufferSize(int bufferSize) {
+        if (isCommitted) {
+            throw new IllegalStateException("Buffer size can not be changed once the response is committed.");
+        }
+
         this.bufferSize = bufferSize;
+        if (outputStream instanceof ConnectionOutputStream) {
+            ((ConnectionOutputStream) outputStream).setBufferSize(bufferSize);
+            this.bufferSize = ((ConnectionOutputStream) outputStream).getBufferSize();
+        }
     }
 
     @Override
@@ -132,8 +146,14 @@ public class HttpResponseImpl implements HttpServletResponse {
     }
 
     @Override
-    public void flushBuffer() {
-        throw new IllegalStateException("Not implemented");
+    public void flushBuffer() throws IOException {
+        commit();
+
+        if (printWriter != null) {
+            printWriter.flush();
+        }
+
+        outputStream.flush();
     }
 
     @Override
@@ -186,6 +206,11 @@ public class HttpResponseImpl implements HttpServletResponse {
         headers.setHeader(name, value);
     }
 
+    @Override
+    public void addHeader(String name, String value) {
+        headers.addHeader(name, value);
+    }
+
     @Override
     public void setIntHeader(String name, int value) {
         headers.setHeader(name, Integer.toString(value));
@@ -225,15 +250,23 @@ public class HttpResponseImpl implements HttpServletResponse {
 
         isCommitted = true;
 
+        // The client can only tell where a body ends on a persistent connection if it is delimited
+        if (isKeepAlive() && !isTransferChunked() && !getHeaders().containsHeader(Headers.HEADER_CONTENT_LENGTH)) {
+            setKeepAlive(false);
+        }
+
+        if (!headers.containsHeader(Headers.HEADER_DATE)) {
+            headers.setHeader(Headers.HEADER_DATE, DateUtilities.currentDateFormat());
+        }
+
         for (Cookie cookie : cookies) {
-            headers.setHeader(Headers.HEADER_SET_COOKIE, cookieHeaderSerializer.serialize(cookie));
+            headers.addHeader(Headers.HEADER_SET_COOKIE, cookieHeaderSerializer.serialize(cookie));
         }
 
+        // Buffered together with the beginning of the body
         byte[] head = (getStatus() + NEW_LINE + headersSerializer.serialize(headers)).getBytes(CHARSET);
-        InputStream inputStream = new ByteArrayInputStream(head);
-        serveStream(inputStream);
-
-        IOUtilities.closeSilently(inputStream);
+        outputStream.write(head);
+        Statistics.addBytesSent(head.length);
     }
 
     /**
@@ -271,6 +304,88 @@ public class HttpResponseImpl implements HttpServletResponse {
         streamHelper.serveMultiRangeStream(inputStream, outputStream, rangeList, boundary, contentType, totalLength);
     }
 
+    /**
+     * Serves the given bytes.
+     *
+     * @param bytes
+     * @throws IOException
+     */
+    public void serveBytes(byte[] bytes) throws IOException {
+        outputStream.write(bytes);
+        Statistics.addBytesSent(bytes.length);
+    }
+
+    /**
+     * Serves the first length bytes of a file.
+     *
+     * @param fileChannel
+     * @param length
+     * @throws IOException
+     */
+    public void serveFile(FileChannel fileChannel, long length) throws IOException {
+        streamHelper.serveFileChannel(fileChannel, outputStream, length);
+    }
+
+    /**
+     * Serves a single range of a file.
+     *
+     * @param fileChannel
+     * @param range
+     * @throws IOException
+     */
+    public void serveFile(FileChannel fileChannel, Range range) throws IOException {
+        streamHelper.serveFileChannel(fileChannel, outputStream, range);
+    }
+
+    /**
+     * Serves multiple ranges of a file.
+     *
+     * @param fileChannel
+     * @param rangeList
+     * @param boundary
+     * @param contentType
+     * @param totalLength
+     * @throws IOException
+     */
+    public void serveFile(FileChannel fileChannel, List<Range> rangeList, String boundary, String contentType, long totalLength) throws IOException {
+        streamHelper.serveFileChannel(fileChannel, outputStream, rangeList, boundary, contentType, totalLength);
+    }
+
+    /**
+     * Serves the whole buffer.
+     *
+     * @param buffer
+     * @throws IOException
+     */
+    public void serveBuffer(ByteBuffer buffer) throws IOException {
+        streamHelper.serveBuffer(buffer, outputStream);
+    }
+
+    /**
+     * Serves a single range of a buffer.
+     *
+     * @param buffer
+     * @param range
+     * @throws IOException
+     */
+    public void serveBuffer(ByteBuffer buffer, Range range) throws IOException {
+        streamHelper.serveBuffer(buffer, outputStream, range);
+    }
+
+    /**
+     * Serves multiple ranges of a buffer.
+     *
+     * @param buffer
+     * @param rangeList
+     * @param boundary
+     * @param contentType
+     * @param totalLength
+     * @throws IOException
+     */
+    public void serveBuffer(ByteBuffer buffer, List<Range> rangeList, String boundary, String contentType, long totalLength) throws IOException {
+        streamHelper.serveBuffer(buffer, outputStream, rangeList, boundary, contentType, totalLength);
+    }
+
     /**
      * Returns HTTP status.
      *
@@ -280,6 +395,15 @@ public class HttpResponseImpl implements HttpServletResponse {
         return status;
     }
 
+    /**
+     * Tells whether the connection is to be kept alive after this response.
+     *
+     * @return
+     */
+    public boolean isKeepAlive() {
+        return CONNECTION_KEEP_ALIVE.equalsIgnoreCase(headers.getHeader(Headers.HEADER_CONNECTION));
+    }
+
     /**
      * Tells whether the transfer encoding is chunked.
      *
@@ -300,6 +424,17 @@ public class HttpResponseImpl implements HttpServletResponse {
      * @throws IOException
      */
     public void flush() throws IOException {
+        commit();
+
+        if (printWriter != null) {
+            printWriter.writeEnd();
+            printWriter.flush();
+        }
+
+        outputStream.flush();
+    }
+
+    private void commit() throws IOException {
         // It makes no sense to set chunked encoding if there is no print writer
         if (printWriter != null && printWriter instanceof ChunkedPrintWriter) {
             getHeaders().setHeader(Headers.HEADER_TRANSFER_ENCODING, TRANSFER_ENCODING_CHUNKED);
@@ -308,12 +443,5 @@ public class HttpResponseImpl implements HttpServletResponse {
         if (!isCommitted()) {
             flushHeaders();
         }
-
-        if (printWriter != null) {
-            printWriter.writeEnd();
-            printWriter.flush();
-        }
-
-        outputStream.flush();
     }
 }
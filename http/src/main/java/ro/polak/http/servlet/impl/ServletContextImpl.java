@@ -22,6 +22,7 @@ import ro.polak.http.configuration.ServerConfig;
 import ro.polak.http.configuration.ServletMapping;
 import ro.polak.http.servlet.Cookie;
 import ro.polak.http.servlet.ServletContext;
+import ro.polak.http.servlet.helper.MappingResolver;
 import ro.polak.http.session.storage.SessionStorage;
 import ro.polak.http.utilities.FileUtilities;
 import ro.polak.http.utilities.StringUtilities;
@@ -42,6 +43,7 @@ public class ServletContextImpl implements ServletContext {
     private final List<ServletMapping> servletMappings;
     private final List<FilterMapping> filterMappings;
     private final Map<String, Object> attributes;
+    private MappingResolver mappingResolver;
 
     /**
      * Default constructor.
@@ -191,4 +193,22 @@ public class ServletContextImpl implements ServletContext {
     public String getContextPath() {
         return contextPath;
     }
+
+    /**
+     * Returns the resolver of the mappings, null unless the mappings were compiled.
+     *
+     * @return
+     */
+    //@Nullable
+    public MappingResolver getMappingResolver() {
+        return mappingResolver;
+    }
+
+    /**
+     * Analyses the servlet and filter mappings so that they are resolved without evaluating
+     * every URL pattern.
+     */
+    public void compileMappings() {
+        mappingResolver = new MappingResolver(servletMappings, filterMappings);
+    }
 }
@@ -7,39 +7,353 @@
 
 package ro.polak.http.utilities;
 
-import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Locale;
-
-import static java.util.TimeZone.getTimeZone;
 
 /**
- * FileUtilities
+ * HTTP-date formatting and parsing.
+ * <p/>
+ * The dates are formatted and parsed arithmetically without SimpleDateFormat, so that no formatter
+ * nor time zone is created per call and the methods are thread safe. The date of the current
+ * second is formatted once and shared.
  *
  * @author Piotr Polak piotr [at] polak [dot] ro
+ * @url https://tools.ietf.org/html/rfc7231#section-7.1.1.1
  * @since 200804
  */
 public final class DateUtilities {
 
-    private static final String DATE_FORMAT = "EEE, d MMM yyyy HH:mm:ss z";
+    private static final String[] DAY_NAMES = {"Sun", "Mon", "Tue", "Wed", "Thu", "Fri", "Sat"};
+    private static final String[] MONTH_NAMES = {"Jan", "Feb", "Mar", "Apr", "May", "Jun",
+            "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+    private static final String GMT = "GMT";
+    private static final int SECONDS_PER_DAY = 86400;
+    private static final int IMF_FIXDATE_LENGTH = 29;
+
+    private static volatile CachedDate currentDate = new CachedDate(Long.MIN_VALUE, null);
 
     private DateUtilities() {
     }
 
     /**
-     * Formats date into the RFC 822 GMT format.
+     * Formats date into the IMF-fixdate format, for instance "Sun, 06 Nov 1994 08:49:37 GMT".
      *
      * @param date
      * @return
      */
     public static String dateFormat(Date date) {
-        return getNewDateFormat().format(date);
+        return dateFormat(date.getTime());
+    }
+
+    /**
+     * Formats the given number of milliseconds since the epoch into the IMF-fixdate format.
+     *
+     * @param millis
+     * @return
+     */
+    public static String dateFormat(long millis) {
+        return format(floorDiv(millis, 1000));
+    }
+
+    /**
+     * Returns the current date in the IMF-fixdate format, the value is formatted once per second.
+     *
+     * @return
+     */
+    public static String currentDateFormat() {
+        return currentDateFormat(System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the current date of the given provider in the IMF-fixdate format, the value is
+     * formatted once per second.
+     *
+     * @param dateProvider
+     * @return
+     */
+    public static String currentDateFormat(DateProvider dateProvider) {
+        return currentDateFormat(dateProvider.now().getTime());
+    }
+
+    private static String currentDateFormat(long millis) {
+        long second = floorDiv(millis, 1000);
+        CachedDate cached = currentDate;
+        if (cached.second != second) {
+            cached = new CachedDate(second, format(second));
+            currentDate = cached;
+        }
+        return cached.value;
+    }
+
+    /**
+     * Parses a date in any of the IMF-fixdate, RFC 850 and asctime formats.
+     *
+     * @param value
+     * @return the number of milliseconds since the epoch or -1 for a malformed date
+     */
+    public static long parseDate(String value) {
+        if (value == null) {
+            return -1;
+        }
+        String date = value.trim();
+        int comma = date.indexOf(',');
+        if (comma == 3) {
+            return parseImfFixdate(date);
+        } else if (comma > 3) {
+            return parseRfc850Date(date, comma);
+        }
+        return parseAsctimeDate(date);
+    }
+
+    private static String format(long second) {
+        long days = floorDiv(second, SECONDS_PER_DAY);
+        int secondOfDay = (int) (second - days * SECONDS_PER_DAY);
+
+        long[] civilDate = toCivilDate(days);
+        long year = civilDate[0];
+        int month = (int) civilDate[1];
+        int day = (int) civilDate[2];
+
+        StringBuilder sb = new StringBuilder(IMF_FIXDATE_LENGTH);
+        sb.append(DAY_NAMES[(int) floorMod(days + 4, 7)]).append(", ");
+        appendTwoDigits(sb, day);
+        sb.append(' ').append(MONTH_NAMES[month - 1]).append(' ');
+        if (year >= 0 && year < 1000) {
+            sb.append(year < 10 ? "000" : year < 100 ? "00" : "0");
+        }
+        sb.append(year).append(' ');
+        appendTwoDigits(sb, secondOfDay / 3600);
+        sb.append(':');
+        appendTwoDigits(sb, secondOfDay / 60 % 60);
+        sb.append(':');
+        appendTwoDigits(sb, secondOfDay % 60);
+        return sb.append(' ').append(GMT).toString();
+    }
+
+    /**
+     * Returns the year, month and day out of the number of days since the epoch.
+     *
+     * @param days
+     * @return
+     * @link http://howardhinnant.github.io/date_algorithms.html
+     */
+    private static long[] toCivilDate(long days) {
+        long z = days + 719468;
+        long era = floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return new long[]{year, month, day};
+    }
+
+    private static void appendTwoDigits(StringBuilder sb, int value) {
+        sb.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    /**
+     * Parses "Sun, 06 Nov 1994 08:49:37 GMT", a single digit day is tolerated.
+     */
+    private static long parseImfFixdate(String date) {
+        Cursor cursor = new Cursor(date, 4);
+        if (!cursor.skip(' ')) {
+            return -1;
+        }
+        int day = cursor.readNumber(1, 2);
+        if (!cursor.skip(' ')) {
+            return -1;
+        }
+        int month = cursor.readMonth();
+        if (!cursor.skip(' ')) {
+            return -1;
+        }
+        int year = cursor.readNumber(4, 4);
+        if (!cursor.skip(' ')) {
+            return -1;
+        }
+        int secondOfDay = cursor.readTimeOfDay();
+        if (!cursor.skip(' ') || !cursor.isAtZone()) {
+            return -1;
+        }
+        return toMillis(year, month, day, secondOfDay);
     }
 
-    private static SimpleDateFormat getNewDateFormat() {
-        SimpleDateFormat simpleDateFormat = new SimpleDateFormat(DATE_FORMAT, Locale.US);
-        simpleDateFormat.setTimeZone(getTimeZone("GMT"));
+    /**
+     * Parses the obsolete "Sunday, 06-Nov-94 08:49:37 GMT".
+     */
+    private static long parseRfc850Date(String date, int comma) {
+        Cursor cursor = new Cursor(date, comma + 1);
+        if (!cursor.skip(' ')) {
+            return -1;
+        }
+        int day = cursor.readNumber(2, 2);
+        if (!cursor.skip('-')) {
+            return -1;
+        }
+        int month = cursor.readMonth();
+        if (!cursor.skip('-')) {
+            return -1;
+        }
+        int year = cursor.readNumber(2, 2);
+        if (!cursor.skip(' ')) {
+            return -1;
+        }
+        int secondOfDay = cursor.readTimeOfDay();
+        if (!cursor.skip(' ') || !cursor.isAtZone() || year == -1) {
+            return -1;
+        }
+
+        // A two digit year more than 50 years in the future stands for the past century
+        int currentYear = (int) toCivilDate(floorDiv(System.currentTimeMillis(), SECONDS_PER_DAY * 1000L))[0];
+        year += currentYear - currentYear % 100;
+        if (year > currentYear + 50) {
+            year -= 100;
+        }
+        return toMillis(year, month, day, secondOfDay);
+    }
+
+    /**
+     * Parses the obsolete "Sun Nov  6 08:49:37 1994".
+     */
+    private static long parseAsctimeDate(String date) {
+        Cursor cursor = new Cursor(date, 3);
+        if (!cursor.skip(' ')) {
+            return -1;
+        }
+        int month = cursor.readMonth();
+        if (!cursor.skip(' ')) {
+            return -1;
+        }
+        cursor.skip(' ');
+        int day = cursor.readNumber(1, 2);
+        if (!cursor.skip(' ')) {
+            return -1;
+        }
+        int secondOfDay = cursor.readTimeOfDay();
+        if (!cursor.skip(' ')) {
+            return -1;
+        }
+        int year = cursor.readNumber(4, 4);
+        if (!cursor.isAtEnd()) {
+            return -1;
+        }
+        return toMillis(year, month, day, secondOfDay);
+    }
+
+    private static long toMillis(int year, int month, int day, int secondOfDay) {
+        if (year == -1 || month == -1 || secondOfDay == -1 || day < 1 || day > 31) {
+            return -1;
+        }
+
+        // The inverse of toCivilDate
+        long y = month <= 2 ? year - 1 : year;
+        long era = floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        long days = era * 146097 + dayOfEra - 719468;
+
+        return (days * SECONDS_PER_DAY + secondOfDay) * 1000;
+    }
+
+    private static long floorDiv(long x, long y) {
+        long result = x / y;
+        if ((x % y != 0) && ((x < 0) != (y < 0))) {
+            result--;
+        }
+        return result;
+    }
+
+    private static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+
+    /**
+     * Reads the fields of a date, every read method returns -1 on a mismatch.
+     */
+    private static class Cursor {
+
+        private final String value;
+        private int position;
+
+        Cursor(final String value, final int position) {
+            this.value = value;
+            this.position = position;
+        }
+
+        boolean skip(char c) {
+            if (position < value.length() && value.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        boolean isAtEnd() {
+            return position == value.length();
+        }
+
+        boolean isAtZone() {
+            return value.length() - position == GMT.length()
+                    && (value.regionMatches(true, position, GMT, 0, GMT.length())
+                    || value.regionMatches(true, position, "UTC", 0, GMT.length()));
+        }
+
+        int readNumber(int minDigits, int maxDigits) {
+            int number = 0;
+            int digits = 0;
+            while (digits < maxDigits && position < value.length()) {
+                char c = value.charAt(position);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                number = number * 10 + (c - '0');
+                position++;
+                digits++;
+            }
+            return digits < minDigits ? -1 : number;
+        }
+
+        int readMonth() {
+            if (position + 3 > value.length()) {
+                return -1;
+            }
+            for (int i = 0; i < MONTH_NAMES.length; i++) {
+                if (value.regionMatches(true, position, MONTH_NAMES[i], 0, 3)) {
+                    position += 3;
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+
+        int readTimeOfDay() {
+            int hour = readNumber(2, 2);
+            if (!skip(':')) {
+                return -1;
+            }
+            int minute = readNumber(2, 2);
+            if (!skip(':')) {
+                return -1;
+            }
+            int second = readNumber(2, 2);
+            if (hour == -1 || hour > 23 || minute == -1 || minute > 59 || second == -1 || second > 60) {
+                return -1;
+            }
+            return hour * 3600 + minute * 60 + second;
+        }
+    }
+
+    private static class CachedDate {
+
+        private final long second;
+        private final String value;
 
-        return simpleDateFormat;
+        CachedDate(final long second, final String value) {
+            this.second = second;
+            this.value = value;
+        }
     }
 }
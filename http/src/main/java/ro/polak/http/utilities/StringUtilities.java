@@ -12,7 +12,6 @@ import java.util.Random;
 
 import ro.polak.http.exception.UnexpectedSituationException;
 
-import static java.net.URLDecoder.decode;
 import static java.net.URLEncoder.encode;
 
 /**
@@ -71,17 +70,23 @@ public final class StringUtilities {
     }
 
     /**
-     * Decodes given string for URL/HTTP
+     * Decodes given string for URL/HTTP, the plus sign stands for a space.
      *
      * @param text text to be decoded
-     * @return decoded string
+     * @return decoded string, the very same instance when there is nothing to decode
      */
     public static String urlDecode(String text) {
-        try {
-            return decode(text, CHARSET_NAME);
-        } catch (UnsupportedEncodingException e) { // $COVERAGE-IGNORE$
-            throw new UnexpectedSituationException(CHARSET_NAME + " is not supported.", e);  // $COVERAGE-IGNORE$
-        }
+        return decode(text, true);
+    }
+
+    /**
+     * Decodes the percent-encoded octets of an URI path, the plus sign is left as it is.
+     *
+     * @param text text to be decoded
+     * @return decoded string, the very same instance when there is nothing to decode
+     */
+    public static String percentDecode(String text) {
+        return decode(text, false);
     }
 
     /**
@@ -93,4 +98,117 @@ public final class StringUtilities {
     public static boolean isEmpty(String value) {
         return value == null || value.length() == 0;
     }
+
+    /**
+     * Decodes the percent-encoded UTF-8 octets into a single buffer, the characters not escaped are
+     * copied as they are. A malformed escape is left undecoded and an invalid UTF-8 sequence is
+     * replaced with U+FFFD, no exception is thrown.
+     *
+     * @param text
+     * @param isPlusSpace
+     * @return
+     */
+    private static String decode(String text, boolean isPlusSpace) {
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '%' || (c == '+' && isPlusSpace)) {
+                break;
+            }
+            i++;
+        }
+        if (i == length) {
+            return text;
+        }
+
+        // The decoded text is never longer than the encoded one
+        char[] decoded = new char[length];
+        text.getChars(0, i, decoded, 0);
+        int n = i;
+
+        while (i < length) {
+            char c = text.charAt(i);
+            int b;
+            if (c == '+' && isPlusSpace) {
+                decoded[n++] = ' ';
+                i++;
+            } else if (c != '%' || (b = getEscapedOctet(text, i)) == -1) {
+                decoded[n++] = c;
+                i++;
+            } else if (b < 0x80) {
+                decoded[n++] = (char) b;
+                i += 3;
+            } else {
+                int sequenceLength = getUtf8SequenceLength(b);
+                int codePoint = b & (0xFF >> (sequenceLength + 1));
+                int end = i + 3;
+                int k = 1;
+                while (k < sequenceLength) {
+                    int continuation = getEscapedOctet(text, end);
+                    if (continuation == -1 || (continuation & 0xC0) != 0x80) {
+                        break;
+                    }
+                    codePoint = (codePoint << 6) | (continuation & 0x3F);
+                    end += 3;
+                    k++;
+                }
+
+                if (sequenceLength == 0 || k < sequenceLength || !isValidCodePoint(codePoint, sequenceLength)) {
+                    decoded[n++] = '\uFFFD';
+                } else if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                    decoded[n++] = Character.highSurrogate(codePoint);
+                    decoded[n++] = Character.lowSurrogate(codePoint);
+                } else {
+                    decoded[n++] = (char) codePoint;
+                }
+                i = end;
+            }
+        }
+
+        return new String(decoded, 0, n);
+    }
+
+    private static int getEscapedOctet(String text, int position) {
+        if (position + 2 >= text.length() || text.charAt(position) != '%') {
+            return -1;
+        }
+        int high = getHexValue(text.charAt(position + 1));
+        int low = getHexValue(text.charAt(position + 2));
+        if (high == -1 || low == -1) {
+            return -1;
+        }
+        return (high << 4) | low;
+    }
+
+    private static int getHexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static int getUtf8SequenceLength(int leadingOctet) {
+        if (leadingOctet >= 0xC2 && leadingOctet <= 0xDF) {
+            return 2;
+        } else if (leadingOctet >= 0xE0 && leadingOctet <= 0xEF) {
+            return 3;
+        } else if (leadingOctet >= 0xF0 && leadingOctet <= 0xF4) {
+            return 4;
+        }
+        return 0;
+    }
+
+    private static boolean isValidCodePoint(int codePoint, int sequenceLength) {
+        if (sequenceLength == 3) {
+            return codePoint >= 0x800 && (codePoint < Character.MIN_SURROGATE || codePoint > Character.MAX_SURROGATE);
+        } else if (sequenceLength == 4) {
+            return codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT && codePoint <= Character.MAX_CODE_POINT;
+        }
+        return true;
+    }
 }
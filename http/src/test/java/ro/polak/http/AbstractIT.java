@@ -6,6 +6,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
 import java.net.Socket;
 
 import ro.polak.http.cli.DefaultServerConfigFactory;
@@ -27,7 +28,7 @@ public class AbstractIT {
     @BeforeClass
     public static void setUp() throws IOException {
         if (serverSocket == null) {
-            serverSocket = new ServerSocket();
+            serverSocket = ServerSocketChannel.open().socket();
 
             tempDirectory = FileUtils.createTempDirectory();
 
@@ -55,6 +56,11 @@ public class AbstractIT {
         if (!httpdConfigFile.createNewFile()) {
             throw new IOException("Unable to create " + httpdConfigFile.getAbsolutePath());
         }
+        PrintWriter configWriter = new PrintWriter(httpdConfigFile, "UTF-8");
+        configWriter.println("server.static.cache.maxSize=65536");
+        configWriter.println("server.static.mapped.maxSize=65536");
+        configWriter.println("server.static.mapped.minFileSize=1");
+        configWriter.close();
 
         ServerConfig serverConfig = getServerConfig();
 
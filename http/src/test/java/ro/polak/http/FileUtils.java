@@ -41,6 +41,37 @@ public final class FileUtils {
         return file;
     }
 
+    /**
+     * Writes string contents to a file within the directory, creating the missing parent directories.
+     *
+     * @param directory
+     * @param relativePath
+     * @param contents
+     * @return
+     * @throws IOException
+     */
+    public static File writeToFile(File directory, String relativePath, String contents) throws IOException {
+        File file = new File(directory, relativePath);
+        file.getParentFile().mkdirs();
+        writeToFile(file, contents);
+        return file;
+    }
+
+    /**
+     * Deletes the file or the directory together with its contents.
+     *
+     * @param file
+     */
+    public static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
     /**
      * Writes string contents to the given file.
      *
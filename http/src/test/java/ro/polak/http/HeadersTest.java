@@ -3,9 +3,14 @@ package ro.polak.http;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 
@@ -63,4 +68,69 @@ public class HeadersTest {
         assertThat(headers.keySet().size(), is(1));
         assertThat(headers.getHeader("Cookie"), is("1234"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldAddMultipleValuesToTheHeader() {
+        headers.addHeader(Headers.HEADER_SET_COOKIE, "a=1");
+        headers.addHeader("set-cookie", "b=2");
+
+        assertThat(headers.getHeader(Headers.HEADER_SET_COOKIE), is("a=1"));
+        assertThat(headers.getHeaderValues("SET-COOKIE"), contains("a=1", "b=2"));
+        assertThat(headers.keySet(), contains(Headers.HEADER_SET_COOKIE));
+    }
+
+    @Test
+    public void shouldReplaceAllValuesOnSet() {
+        headers.addHeader("X-Custom", "a");
+        headers.addHeader("X-Custom", "b");
+        headers.setHeader("x-custom", "c");
+
+        assertThat(headers.getHeaderValues("X-Custom"), contains("c"));
+    }
+
+    @Test
+    public void shouldReturnEmptyValuesForInexistentHeader() {
+        assertThat(headers.getHeaderValues("Non-existent"), is(empty()));
+    }
+
+    @Test
+    public void shouldKeepInsertionOrderOfKnownAndOtherHeaders() {
+        headers.setHeader("X-First", "1");
+        headers.setHeader(Headers.HEADER_CONTENT_TYPE, "text/plain");
+        headers.setHeader("x-second", "2");
+        headers.setHeader("content-length", "0");
+
+        assertThat(headers.keySet(), contains("X-First", Headers.HEADER_CONTENT_TYPE, "x-second", "content-length"));
+        assertThat(headers.getHeader("X-SECOND"), is("2"));
+        assertThat(headers.getHeader(Headers.HEADER_CONTENT_LENGTH), is("0"));
+    }
+
+    @Test
+    public void shouldKeepAllWellKnownHeadersApart() throws IllegalAccessException {
+        Headers headers = new Headers();
+        List<String> names = new ArrayList<>();
+        for (Field field : Headers.class.getFields()) {
+            if (field.getName().startsWith("HEADER_")) {
+                names.add((String) field.get(null));
+            }
+        }
+
+        for (String name : names) {
+            headers.setHeader(name, name + " value");
+        }
+
+        assertThat(headers.keySet().size(), is(names.size()));
+        for (String name : names) {
+            assertThat(headers.getHeader(name.toUpperCase()), is(name + " value"));
+        }
+    }
+
+    @Test
+    public void shouldNotConfuseOtherHeadersWithWellKnownHeaders() {
+        headers.setHeader(Headers.HEADER_HOST, "example.com");
+
+        assertThat(headers.containsHeader("Hosts"), is(false));
+        assertThat(headers.containsHeader("Hos"), is(false));
+        assertThat(headers.containsHeader("hOsT"), is(true));
+    }
+}
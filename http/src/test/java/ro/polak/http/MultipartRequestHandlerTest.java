@@ -3,9 +3,12 @@ package ro.polak.http;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Iterator;
 
 import ro.polak.http.exception.protocol.PayloadTooLargeProtocolException;
@@ -13,7 +16,10 @@ import ro.polak.http.protocol.parser.MalformedInputException;
 import ro.polak.http.protocol.parser.Parser;
 import ro.polak.http.protocol.parser.impl.HeadersParser;
 import ro.polak.http.protocol.parser.impl.MultipartHeadersPartParser;
+import ro.polak.http.servlet.Part;
+import ro.polak.http.servlet.PartIterator;
 import ro.polak.http.servlet.UploadedFile;
+import ro.polak.http.utilities.IOUtilities;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -52,6 +58,19 @@ public class MultipartRequestHandlerTest {
         assertThat(mrh.getPost().get("field_3"), is("C123"));
     }
 
+    @Test
+    public void shouldParseWhenExpectedLengthExceedsIntegerRange() throws IOException, MalformedInputException {
+        String data = new MultipartInputBuilder(BOUNDARY)
+                .withField("field_1", "A123")
+                .build();
+
+        MultipartRequestHandler mrh = new MultipartRequestHandler(parser, getStreamOutOfString(data),
+                Integer.MAX_VALUE + 1L, BOUNDARY, TEMPORARY_UPLOADS_DIRECTORY, 2048);
+        mrh.handle();
+
+        assertThat(mrh.getPost().get("field_1"), is("A123"));
+    }
+
     @Test
     public void shouldParseWhenBoundaryIsLikeFieldValues() throws MalformedInputException {
         String data = new MultipartInputBuilder(BOUNDARY)
@@ -221,25 +240,201 @@ public class MultipartRequestHandlerTest {
     }
 
 
-    @Test(expected = PayloadTooLargeProtocolException.class)
-    public void shouldStopParsingOnWrongContentLengthInBody() throws MalformedInputException {
+    @Test
+    public void shouldStopParsingOnWrongContentLengthInBody() throws MalformedInputException, IOException {
         String begin = new MultipartInputBuilder(BOUNDARY)
                 .withField("field_1", "A123")
                 .build();
 
-        String data = begin + new MultipartInputBuilder(BOUNDARY)
+        String rest = new MultipartInputBuilder(BOUNDARY)
                 .withField("field_2", "B123")
                 .withField("field_3", "C123")
                 .build();
 
-        MultipartRequestHandler mrh = new MultipartRequestHandler(parser, getStreamOutOfString(data),
+        InputStream in = getStreamOutOfString(begin + rest);
+        MultipartRequestHandler mrh = new MultipartRequestHandler(parser, in,
                 begin.length(), BOUNDARY, TEMPORARY_UPLOADS_DIRECTORY, 2048);
 
-        try {
+        mrh.handle();
+
+        assertThat(mrh.getPost().size(), is(1));
+        assertThat(mrh.getPost().get("field_1"), is("A123"));
+        // The bytes that follow the declared length belong to the next request of the connection
+        assertThat(in.available(), is(rest.length()));
+    }
+
+    @Test
+    public void shouldWriteFileContentsWithBoundaryLikeSequencesAcrossReads() throws MalformedInputException, IOException {
+        StringBuilder contents = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            contents.append("\r\n--------").append(i).append("\r\n------------BOUNDAR");
+        }
+        String data = new MultipartInputBuilder(BOUNDARY)
+                .withFile("FIELDNAME", "FILE.TXT", "text/plain", contents.toString())
+                .withField("field_1", "A123")
+                .build();
+
+        for (int bufferLength : new int[]{1, 7, 64, 2048}) {
+            MultipartRequestHandler mrh = new MultipartRequestHandler(parser, getStreamOutOfString(data),
+                    data.length(), BOUNDARY, TEMPORARY_UPLOADS_DIRECTORY, bufferLength);
             mrh.handle();
-        } catch (IOException e) {
-            fail("Should not throw IOException: " + e.getMessage());
+
+            assertThat(mrh.getPost().get("field_1"), is("A123"));
+            assertThat(mrh.getUploadedFiles().size(), is(1));
+            File file = mrh.getUploadedFiles().iterator().next().getFile();
+            assertThat(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8), is(contents.toString()));
+            file.delete();
+        }
+    }
+
+    @Test
+    public void shouldIgnoreEpilogueFollowingClosingBoundary() throws MalformedInputException, IOException {
+        String data = "preamble\r\n--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"field_1\"\r\n\r\nA123\r\n"
+                + "--" + BOUNDARY + "--\r\n"
+                + "Content-Disposition: form-data; name=\"field_2\"\r\n\r\nB123\r\n";
+
+        InputStream in = getStreamOutOfString(data + "NEXT");
+        MultipartRequestHandler mrh = new MultipartRequestHandler(parser, in,
+                data.length(), BOUNDARY, TEMPORARY_UPLOADS_DIRECTORY, 2048);
+        mrh.handle();
+
+        assertThat(mrh.getPost().size(), is(1));
+        assertThat(mrh.getPost().get("field_1"), is("A123"));
+        assertThat(in.available(), is("NEXT".length()));
+    }
+
+    @Test
+    public void shouldStreamPartsWithoutCreatingFiles() throws IOException {
+        StringBuilder contents = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            contents.append("\r\n--------").append(i).append("\r\n------------BOUNDAR");
         }
+        String data = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"field_1\"\r\n\r\nA123\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: attachment; name=\"FIELDNAME\"; filename=\"FILE.TXT\"\r\n"
+                + "Content-type: text/plain\r\n\r\n" + contents + "\r\n"
+                + "--" + BOUNDARY + "--\r\n";
+
+        for (int bufferLength : new int[]{1, 7, 64, 2048}) {
+            InputStream in = getStreamOutOfString(data + "NEXT");
+            MultipartRequestHandler mrh = new MultipartRequestHandler(parser, in,
+                    data.length(), BOUNDARY, TEMPORARY_UPLOADS_DIRECTORY, bufferLength);
+            PartIterator parts = mrh.getPartIterator();
+
+            assertThat(parts.hasNext(), is(true));
+            Part part = parts.next();
+            assertThat(part.getName(), is("field_1"));
+            assertThat(part.getContentType(), is((String) null));
+            assertThat(readAll(part.getInputStream()), is("A123"));
+
+            assertThat(parts.hasNext(), is(true));
+            part = parts.next();
+            assertThat(part.getName(), is("FIELDNAME"));
+            assertThat(part.getFileName(), is("FILE.TXT"));
+            assertThat(part.getContentType(), is("text/plain"));
+            assertThat(readAll(part.getInputStream()), is(contents.toString()));
+
+            assertThat(parts.hasNext(), is(false));
+            assertThat(mrh.getUploadedFiles().size(), is(0));
+            assertThat(in.available(), is("NEXT".length()));
+        }
+    }
+
+    @Test
+    public void shouldSkipUnreadPartContents() throws IOException {
+        String data = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: attachment; name=\"FIELDNAME\"; filename=\"FILE.TXT\"\r\n"
+                + "Content-type: text/plain\r\n\r\nunwanted contents\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"field_1\"\r\n\r\nA123\r\n"
+                + "--" + BOUNDARY + "--\r\n";
+
+        MultipartRequestHandler mrh = new MultipartRequestHandler(parser, getStreamOutOfString(data),
+                data.length(), BOUNDARY, TEMPORARY_UPLOADS_DIRECTORY, 16);
+        PartIterator parts = mrh.getPartIterator();
+
+        assertThat(parts.next().getInputStream().read(), is((int) 'u'));
+        Part part = parts.next();
+        assertThat(part.getName(), is("field_1"));
+        assertThat(readAll(part.getInputStream()), is("A123"));
+        assertThat(parts.hasNext(), is(false));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldThrowIOExceptionOnPrematureEndOfStreamedPart() throws IOException {
+        String data = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"field_1\"\r\n\r\nA123";
+
+        MultipartRequestHandler mrh = new MultipartRequestHandler(parser, getStreamOutOfString(data),
+                data.length(), BOUNDARY, TEMPORARY_UPLOADS_DIRECTORY, 2048);
+
+        readAll(mrh.getPartIterator().next().getInputStream());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotStreamPartsOfHandledRequest() throws IOException, MalformedInputException {
+        String data = new MultipartInputBuilder(BOUNDARY)
+                .withField("field_1", "A123")
+                .build();
+
+        MultipartRequestHandler mrh = new MultipartRequestHandler(parser, getStreamOutOfString(data),
+                data.length(), BOUNDARY, TEMPORARY_UPLOADS_DIRECTORY, 2048);
+        mrh.handle();
+        mrh.getPartIterator();
+    }
+
+    @Test
+    public void shouldKeepSmallFilesInMemory() throws MalformedInputException, IOException {
+        String data = new MultipartInputBuilder(BOUNDARY)
+                .withFile("SMALL", "SMALL.TXT", "text/plain", "ABCD")
+                .withFile("LARGE", "LARGE.TXT", "text/plain", "ABCDEFGHIJ")
+                .build();
+        UploadMemoryBudget memoryBudget = new UploadMemoryBudget(100);
+
+        MultipartRequestHandler mrh = new MultipartRequestHandler(parser, getStreamOutOfString(data),
+                data.length(), BOUNDARY, TEMPORARY_UPLOADS_DIRECTORY, 7, 8, memoryBudget);
+        mrh.handle();
+
+        Iterator<UploadedFile> uploadedFiles = mrh.getUploadedFiles().iterator();
+        UploadedFile small = uploadedFiles.next();
+        assertThat(small.isInMemory(), is(true));
+        assertThat(readAll(small.getInputStream()), is("ABCD"));
+        UploadedFile large = uploadedFiles.next();
+        assertThat(large.isInMemory(), is(false));
+        assertThat(readAll(large.getInputStream()), is("ABCDEFGHIJ"));
+        assertThat(memoryBudget.getUsed(), is(4L));
+
+        small.destroy();
+        large.destroy();
+        assertThat(memoryBudget.getUsed(), is(0L));
+    }
+
+    @Test
+    public void shouldStoreFilesOnDiskWhenMemoryBudgetIsExhausted() throws MalformedInputException, IOException {
+        String data = new MultipartInputBuilder(BOUNDARY)
+                .withFile("FIRST", "FIRST.TXT", "text/plain", "ABCD")
+                .withFile("SECOND", "SECOND.TXT", "text/plain", "EFGH")
+                .build();
+        UploadMemoryBudget memoryBudget = new UploadMemoryBudget(6);
+
+        MultipartRequestHandler mrh = new MultipartRequestHandler(parser, getStreamOutOfString(data),
+                data.length(), BOUNDARY, TEMPORARY_UPLOADS_DIRECTORY, 2048, 8, memoryBudget);
+        mrh.handle();
+
+        Iterator<UploadedFile> uploadedFiles = mrh.getUploadedFiles().iterator();
+        assertThat(uploadedFiles.next().isInMemory(), is(true));
+        UploadedFile second = uploadedFiles.next();
+        assertThat(second.isInMemory(), is(false));
+        assertThat(readAll(second.getInputStream()), is("EFGH"));
+        second.destroy();
+    }
+
+    private String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOUtilities.copyStreams(in, out);
+        return out.toString(StandardCharsets.UTF_8.name());
     }
 
     private InputStream getStreamOutOfString(String data) {
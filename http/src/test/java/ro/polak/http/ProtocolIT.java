@@ -154,6 +154,19 @@ public class ProtocolIT extends AbstractIT {
         assertThat(responseBodyString, is("Static file"));
     }
 
+    @Test
+    public void shouldServeStaticFileHead() throws IOException {
+        Request request = new Request.Builder()
+                .url(getFullUrl("/staticfile.html"))
+                .head()
+                .build();
+
+        Response response = client.newCall(request).execute();
+        assertThat(response.code(), is(200));
+        assertThat(response.header(Headers.HEADER_CONTENT_LENGTH), is("11"));
+        assertThat(response.body().string(), is(""));
+    }
+
     @Test
     public void shouldOpenAndCloseSession() throws IOException {
         assertThat(shouldOpenAndCloseSession(1), is(true));
@@ -495,8 +508,8 @@ public class ProtocolIT extends AbstractIT {
         assertThat(response.code(), is(206));
 
         assertThat(response.header(Headers.HEADER_CONTENT_TYPE), startsWith(boundaryBegin));
-        assertThat(response.header(Headers.HEADER_CONTENT_RANGE),
-                is("bytes " + ranges + "/" + fileLength));
+        // Each part carries its own Content-Range
+        assertThat(response.header(Headers.HEADER_CONTENT_RANGE), is(nullValue()));
 
         String boundary = response.header(Headers.HEADER_CONTENT_TYPE)
                 .substring(boundaryBegin.length());
@@ -536,6 +549,45 @@ public class ProtocolIT extends AbstractIT {
 
     }
 
+    @Test
+    public void shouldReturn206AndServeOpenAndSuffixRanges() throws IOException {
+        Request request = new Request.Builder()
+                .url(getFullUrl("/staticfile.html"))
+                .header(Headers.HEADER_RANGE, "bytes=7-")
+                .get()
+                .build();
+
+        Response response = client.newCall(request).execute();
+        assertThat(response.code(), is(206));
+        assertThat(response.header(Headers.HEADER_CONTENT_RANGE), is("bytes 7-10/11"));
+        assertThat(response.body().string(), is("file"));
+
+        request = new Request.Builder()
+                .url(getFullUrl("/staticfile.html"))
+                .header(Headers.HEADER_RANGE, "bytes=-4")
+                .get()
+                .build();
+
+        response = client.newCall(request).execute();
+        assertThat(response.code(), is(206));
+        assertThat(response.header(Headers.HEADER_CONTENT_RANGE), is("bytes 7-10/11"));
+        assertThat(response.body().string(), is("file"));
+    }
+
+    @Test
+    public void shouldCoalesceOverlappingRangesIntoSinglePart() throws IOException {
+        Request request = new Request.Builder()
+                .url(getFullUrl("/staticfile.html"))
+                .header(Headers.HEADER_RANGE, "bytes=3-5,0-2,0-1,4-100")
+                .get()
+                .build();
+
+        Response response = client.newCall(request).execute();
+        assertThat(response.code(), is(206));
+        assertThat(response.header(Headers.HEADER_CONTENT_RANGE), is("bytes 0-10/11"));
+        assertThat(response.body().string(), is("Static file"));
+    }
+
     @Test
     public void shouldReturn416RangeNotSatisfiable() throws IOException {
         Request request = new Request.Builder()
@@ -547,11 +599,26 @@ public class ProtocolIT extends AbstractIT {
         Response response = client.newCall(request).execute();
         assertThat(response.isSuccessful(), is(false));
         assertThat(response.code(), is(416));
+        assertThat(response.header(Headers.HEADER_CONTENT_RANGE), is("bytes */11"));
         String responseBodyString = response.body().string();
         assertThat(responseBodyString, not(isEmptyOrNullString()));
         assertThat(responseBodyString, containsString("Range Not Satisfiable"));
     }
 
+    @Test
+    public void shouldIgnoreRangeHeaderWithInvalidRange() throws IOException {
+        Request request = new Request.Builder()
+                .url(getFullUrl("/staticfile.html"))
+                .header(Headers.HEADER_RANGE, "bytes=0-1,5-1")
+                .get()
+                .build();
+
+        Response response = client.newCall(request).execute();
+        assertThat(response.code(), is(200));
+        assertThat(response.header(Headers.HEADER_CONTENT_RANGE), is(nullValue()));
+        assertThat(response.body().string(), is("Static file"));
+    }
+
     @Test
     public void shouldReturn400OnMalformedRange() throws IOException {
         Request request = new Request.Builder()
@@ -0,0 +1,170 @@
+package ro.polak.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import ro.polak.http.configuration.ServerConfig;
+import ro.polak.http.resource.provider.ResourceProvider;
+import ro.polak.http.resource.router.ResourceRouter;
+import ro.polak.http.servlet.HttpServletResponse;
+import ro.polak.http.servlet.impl.HttpRequestImpl;
+import ro.polak.http.servlet.impl.HttpResponseImpl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SelectorEngineTest {
+
+    private static final int NUMBER_OF_CONNECTIONS = 20;
+
+    private WebServer webServer;
+    private ServerSocket serverSocket;
+
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = ServerSocketChannel.open().socket();
+    }
+
+    @After
+    public void tearDown() {
+        if (webServer != null) {
+            webServer.stopServer();
+        }
+    }
+
+    @Test
+    public void shouldHoldManyConnectionsWithSingleWorker() throws IOException {
+        startServer(5);
+
+        List<Socket> sockets = new ArrayList<>();
+        for (int i = 0; i < NUMBER_OF_CONNECTIONS; i++) {
+            sockets.add(getSocket());
+        }
+
+        try {
+            // The first connection would occupy the only worker if it was bound to the connection
+            for (int requestNumber = 0; requestNumber < 2; requestNumber++) {
+                for (int i = 0; i < sockets.size(); i++) {
+                    String path = "/connection" + i + "/request" + requestNumber;
+                    String response = request(sockets.get(i), path);
+
+                    assertThat(response, containsString(HttpServletResponse.STATUS_OK));
+                    assertThat(response, containsString("Connection: keep-alive"));
+                    assertThat(response, containsString(path));
+                }
+            }
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void shouldServePipelinedRequests() throws IOException {
+        startServer(5);
+
+        try (Socket socket = getSocket()) {
+            socket.getOutputStream().write(("GET /first HTTP/1.1\r\n\r\n"
+                    + "GET /second HTTP/1.1\r\n\r\n").getBytes());
+
+            String response = readResponse(socket.getInputStream(), "/first")
+                    + readResponse(socket.getInputStream(), "/second");
+
+            assertThat(response.indexOf("/first") < response.indexOf("/second"), is(true));
+        }
+    }
+
+    @Test
+    public void shouldCloseIdleConnections() throws IOException {
+        startServer(1);
+
+        try (Socket socket = getSocket()) {
+            request(socket, "/first");
+
+            assertThat(socket.getInputStream().read(), is(-1));
+        }
+    }
+
+    private void startServer(int keepAliveTimeout) throws IOException {
+        ServerConfig serverConfig = mock(ServerConfig.class);
+        when(serverConfig.getEngine()).thenReturn(ServerConfig.ENGINE_NIO);
+        when(serverConfig.getMaxServerThreads()).thenReturn(1);
+        when(serverConfig.isKeepAlive()).thenReturn(true);
+        when(serverConfig.getKeepAliveMaxRequests()).thenReturn(100);
+        when(serverConfig.getKeepAliveTimeout()).thenReturn(keepAliveTimeout);
+        when(serverConfig.getListenPort()).thenReturn(0);
+        when(serverConfig.getTempPath()).thenReturn(FileUtils.createTempDirectory());
+        when(serverConfig.getDocumentRootPath()).thenReturn(FileUtils.createTempDirectory());
+        when(serverConfig.getSupportedMethods()).thenReturn(Arrays.asList("GET"));
+        when(serverConfig.getDirectoryIndex()).thenReturn(Collections.<String>emptyList());
+        List<ResourceProvider> resourceProviders =
+                Collections.<ResourceProvider>singletonList(new EchoPathResourceProvider());
+        when(serverConfig.getResourceProviders()).thenReturn(resourceProviders);
+        when(serverConfig.getResourceRouter()).thenReturn(new ResourceRouter(resourceProviders));
+
+        webServer = new WebServer(serverSocket, serverConfig);
+        assertThat(webServer.startServer(), is(true));
+    }
+
+    private Socket getSocket() throws IOException {
+        Socket socket = new Socket();
+        socket.connect(new InetSocketAddress("localhost", serverSocket.getLocalPort()));
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private String request(Socket socket, String path) throws IOException {
+        socket.getOutputStream().write(("GET " + path + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes());
+        return readResponse(socket.getInputStream(), path);
+    }
+
+    private String readResponse(InputStream in, String expectedBody) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (!out.toString().endsWith("\r\n\r\n" + expectedBody)) {
+            int b = in.read();
+            if (b == -1) {
+                break;
+            }
+            out.write(b);
+        }
+        return out.toString();
+    }
+
+    private static class EchoPathResourceProvider implements ResourceProvider {
+
+        @Override
+        public boolean canLoad(String path) {
+            return true;
+        }
+
+        @Override
+        public void load(String path, HttpRequestImpl request, HttpResponseImpl response) throws IOException {
+            response.setStatus(HttpServletResponse.STATUS_OK);
+            response.setContentLength(path.length());
+            response.getWriter().print(path);
+            response.flush();
+        }
+
+        @Override
+        public void shutdown() {
+            // Do nothing
+        }
+    }
+}
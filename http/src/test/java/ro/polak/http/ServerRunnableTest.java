@@ -2,14 +2,46 @@ package ro.polak.http;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import ro.polak.http.configuration.ServerConfig;
 import ro.polak.http.errorhandler.HttpErrorHandlerResolver;
+import ro.polak.http.errorhandler.impl.HttpErrorHandlerResolverImpl;
+import ro.polak.http.protocol.parser.impl.CookieParser;
+import ro.polak.http.protocol.parser.impl.HeadersParser;
+import ro.polak.http.protocol.parser.impl.MultipartHeadersPartParser;
+import ro.polak.http.protocol.parser.impl.QueryStringParser;
+import ro.polak.http.protocol.parser.impl.RequestStatusParser;
+import ro.polak.http.protocol.serializer.impl.CookieHeaderSerializer;
+import ro.polak.http.protocol.serializer.impl.HeadersSerializer;
+import ro.polak.http.protocol.serializer.impl.RangePartHeaderSerializer;
+import ro.polak.http.resource.provider.ResourceProvider;
+import ro.polak.http.resource.router.ResourceRouter;
+import ro.polak.http.servlet.HttpServletResponse;
 import ro.polak.http.servlet.factory.HttpServletRequestImplFactory;
 import ro.polak.http.servlet.factory.HttpServletResponseImplFactory;
+import ro.polak.http.servlet.helper.RangeHelper;
+import ro.polak.http.servlet.helper.StreamHelper;
+import ro.polak.http.servlet.impl.HttpRequestImpl;
+import ro.polak.http.servlet.impl.HttpResponseImpl;
+import ro.polak.http.utilities.DateProvider;
+import ro.polak.http.utilities.IOUtilities;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -17,13 +49,17 @@ import static org.mockito.Mockito.when;
 
 public class ServerRunnableTest {
 
+    private static final String STATUS_OK = HttpServletResponse.STATUS_OK;
+
     @Test
     public void shouldLogIOExceptionsSilently() throws Exception {
 
         Socket socket = mock(Socket.class);
+        when(socket.getOutputStream()).thenReturn(new ByteArrayOutputStream());
         HttpServletResponseImplFactory responseFactory = mock(HttpServletResponseImplFactory.class);
 
-        when(responseFactory.createFromSocket(socket)).thenThrow(new IOException());
+        when(responseFactory.createFromSocket(any(Socket.class), any(OutputStream.class)))
+                .thenThrow(new IOException());
 
         ServerRunnable serverRunnable = new ServerRunnable(socket, mock(ServerConfig.class),
                 mock(HttpServletRequestImplFactory.class),
@@ -36,4 +72,275 @@ public class ServerRunnableTest {
 
         verify(socket, times(1)).close();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldServeMultipleRequestsOverPersistentConnection() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Socket socket = getSocket("GET /first HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                + "GET /second HTTP/1.1\r\nHost: localhost\r\n\r\n", outputStream);
+
+        getServerRunnable(socket, getServerConfig(true, 100)).run();
+
+        String output = outputStream.toString();
+        assertThat(countOccurrences(output, STATUS_OK), is(2));
+        assertThat(output, containsString("Connection: keep-alive"));
+        assertThat(output, containsString("/first"));
+        assertThat(output, containsString("/second"));
+        verify(socket, times(1)).close();
+    }
+
+    @Test
+    public void shouldBatchResponsesToPipelinedRequests() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        WriteCountingOutputStream countingOutputStream = new WriteCountingOutputStream(outputStream);
+        Socket socket = getSocket("GET /first HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                + "GET /second HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                + "GET /third HTTP/1.1\r\nHost: localhost\r\n\r\n", outputStream);
+        when(socket.getOutputStream()).thenReturn(countingOutputStream);
+
+        getServerRunnable(socket, getServerConfig(true, 100)).run();
+
+        String output = outputStream.toString();
+        assertThat(countOccurrences(output, STATUS_OK), is(3));
+        assertThat(output.indexOf("/first") < output.indexOf("/second"), is(true));
+        assertThat(output.indexOf("/second") < output.indexOf("/third"), is(true));
+        // All the responses, heads and bodies, are sent together using a single write
+        assertThat(countingOutputStream.getNumberOfWrites(), is(1));
+    }
+
+    @Test
+    public void shouldCloseConnectionAfterMaxRequests() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Socket socket = getSocket("GET /first HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                + "GET /second HTTP/1.1\r\nHost: localhost\r\n\r\n", outputStream);
+
+        getServerRunnable(socket, getServerConfig(true, 1)).run();
+
+        String output = outputStream.toString();
+        assertThat(countOccurrences(output, STATUS_OK), is(1));
+        assertThat(output, containsString("Connection: close"));
+        assertThat(output, not(containsString("/second")));
+    }
+
+    @Test
+    public void shouldCloseConnectionWhenKeepAliveIsDisabled() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Socket socket = getSocket("GET /first HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                + "GET /second HTTP/1.1\r\nHost: localhost\r\n\r\n", outputStream);
+
+        getServerRunnable(socket, getServerConfig(false, 100)).run();
+
+        assertThat(countOccurrences(outputStream.toString(), STATUS_OK), is(1));
+    }
+
+    @Test
+    public void shouldCloseConnectionOnExplicitRequestAndForHttp10() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Socket socket = getSocket("GET /first HTTP/1.1\r\nConnection: close\r\n\r\n"
+                + "GET /second HTTP/1.1\r\n\r\n", outputStream);
+        getServerRunnable(socket, getServerConfig(true, 100)).run();
+        assertThat(countOccurrences(outputStream.toString(), STATUS_OK), is(1));
+
+        outputStream = new ByteArrayOutputStream();
+        socket = getSocket("GET /first HTTP/1.0\r\n\r\nGET /second HTTP/1.0\r\n\r\n", outputStream);
+        getServerRunnable(socket, getServerConfig(true, 100)).run();
+        assertThat(countOccurrences(outputStream.toString(), STATUS_OK), is(1));
+    }
+
+    @Test
+    public void shouldDiscardRequestBodyNotConsumed() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Socket socket = getSocket("GET /first HTTP/1.1\r\nContent-Length: 3\r\n\r\nabc"
+                + "GET /second HTTP/1.1\r\n\r\n", outputStream);
+
+        getServerRunnable(socket, getServerConfig(true, 100)).run();
+
+        assertThat(countOccurrences(outputStream.toString(), STATUS_OK), is(2));
+    }
+
+    @Test
+    public void shouldDiscardChunkedRequestBodyNotConsumed() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Socket socket = getSocket("GET /first HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n"
+                + "3\r\nabc\r\n0\r\n\r\n"
+                + "GET /second HTTP/1.1\r\n\r\n", outputStream);
+
+        getServerRunnable(socket, getServerConfig(true, 100)).run();
+
+        assertThat(countOccurrences(outputStream.toString(), STATUS_OK), is(2));
+    }
+
+    @Test
+    public void shouldCloseConnectionWhenBothTransferEncodingAndContentLengthAreSent() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Socket socket = getSocket("GET /first HTTP/1.1\r\nTransfer-Encoding: chunked\r\nContent-Length: 3\r\n\r\n"
+                + "3\r\nabc\r\n0\r\n\r\n"
+                + "GET /second HTTP/1.1\r\n\r\n", outputStream);
+
+        getServerRunnable(socket, getServerConfig(true, 100)).run();
+
+        assertThat(countOccurrences(outputStream.toString(), STATUS_OK), is(1));
+        assertThat(outputStream.toString(), containsString("Connection: close"));
+    }
+
+    @Test
+    public void shouldCloseConnectionWhenRequestBodyNotConsumedIsTooLarge() throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            body.append('a');
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Socket socket = getSocket("GET /first HTTP/1.1\r\nContent-Length: " + body.length() + "\r\n\r\n" + body
+                + "GET /second HTTP/1.1\r\n\r\n", outputStream);
+
+        getServerRunnable(socket, getServerConfig(true, 100)).run();
+
+        assertThat(countOccurrences(outputStream.toString(), STATUS_OK), is(1));
+    }
+
+    @Test
+    public void shouldSendContinueOnceTheBodyIsRead() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Socket socket = getSocket("POST /upload HTTP/1.1\r\nExpect: 100-continue\r\nContent-Length: 3\r\n\r\nabc"
+                + "GET /second HTTP/1.1\r\n\r\n", outputStream);
+
+        getServerRunnable(socket, getServerConfig(true, 100)).run();
+
+        assertThat(outputStream.toString().startsWith(HttpServletResponse.STATUS_CONTINUE + "\r\n\r\n"), is(true));
+        assertThat(countOccurrences(outputStream.toString(), STATUS_OK), is(2));
+    }
+
+    @Test
+    public void shouldNotSendContinueAndCloseConnectionWhenBodyIsNotRead() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Socket socket = getSocket("POST /first HTTP/1.1\r\nExpect: 100-continue\r\nContent-Length: 3\r\n\r\n"
+                + "GET /second HTTP/1.1\r\n\r\n", outputStream);
+
+        getServerRunnable(socket, getServerConfig(true, 100)).run();
+
+        assertThat(countOccurrences(outputStream.toString(), HttpServletResponse.STATUS_CONTINUE), is(0));
+        assertThat(countOccurrences(outputStream.toString(), STATUS_OK), is(1));
+    }
+
+    @Test
+    public void shouldDecodeRequestedPath() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Socket socket = getSocket("GET /some%20file+name HTTP/1.1\r\n\r\n", outputStream);
+
+        getServerRunnable(socket, getServerConfig(false, 100)).run();
+
+        assertThat(outputStream.toString().endsWith("/some file+name"), is(true));
+    }
+
+    @Test
+    public void shouldDenyEncodedDotSegments() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Socket socket = getSocket("GET /a/%2e%2e/%2E%2E/etc HTTP/1.1\r\n\r\n", outputStream);
+
+        getServerRunnable(socket, getServerConfig(false, 100)).run();
+
+        assertThat(outputStream.toString().startsWith(HttpServletResponse.STATUS_ACCESS_DENIED), is(true));
+    }
+
+    private ServerRunnable getServerRunnable(Socket socket, ServerConfig serverConfig) {
+        HeadersParser headersParser = new HeadersParser();
+        HttpServletRequestImplFactory requestFactory = new HttpServletRequestImplFactory(headersParser,
+                new QueryStringParser(),
+                new RequestStatusParser(),
+                new CookieParser(),
+                new MultipartHeadersPartParser(headersParser),
+                "/tmp/"
+        );
+        HttpServletResponseImplFactory responseFactory = new HttpServletResponseImplFactory(
+                new HeadersSerializer(),
+                new CookieHeaderSerializer(new DateProvider()),
+                new StreamHelper(new RangeHelper(), new RangePartHeaderSerializer())
+        );
+
+        return new ServerRunnable(socket, serverConfig, requestFactory, responseFactory,
+                new HttpErrorHandlerResolverImpl(serverConfig), new PathHelper());
+    }
+
+    private ServerConfig getServerConfig(boolean isKeepAlive, int maxRequests) {
+        ServerConfig serverConfig = mock(ServerConfig.class);
+        when(serverConfig.isKeepAlive()).thenReturn(isKeepAlive);
+        when(serverConfig.getKeepAliveMaxRequests()).thenReturn(maxRequests);
+        when(serverConfig.getKeepAliveTimeout()).thenReturn(5);
+        when(serverConfig.getSupportedMethods()).thenReturn(Arrays.asList("GET", "POST"));
+        when(serverConfig.getDirectoryIndex()).thenReturn(Collections.<String>emptyList());
+        List<ResourceProvider> resourceProviders =
+                Collections.<ResourceProvider>singletonList(new EchoPathResourceProvider());
+        when(serverConfig.getResourceProviders()).thenReturn(resourceProviders);
+        when(serverConfig.getResourceRouter()).thenReturn(new ResourceRouter(resourceProviders));
+        return serverConfig;
+    }
+
+    private Socket getSocket(String input, ByteArrayOutputStream outputStream) throws IOException {
+        Socket socket = mock(Socket.class);
+        when(socket.getInputStream()).thenReturn(new ByteArrayInputStream(input.getBytes()));
+        when(socket.getOutputStream()).thenReturn(outputStream);
+        when(socket.getInetAddress()).thenReturn(mock(InetAddress.class));
+        when(socket.getLocalAddress()).thenReturn(mock(InetAddress.class));
+        when(socket.getRemoteSocketAddress()).thenReturn(new InetSocketAddress(mock(InetAddress.class), 1));
+        return socket;
+    }
+
+    private int countOccurrences(String haystack, String needle) {
+        int count = 0;
+        int index = 0;
+        while ((index = haystack.indexOf(needle, index)) != -1) {
+            count++;
+            index += needle.length();
+        }
+        return count;
+    }
+
+    private static class WriteCountingOutputStream extends FilterOutputStream {
+
+        private int numberOfWrites = 0;
+
+        WriteCountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            numberOfWrites++;
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            numberOfWrites++;
+            out.write(b, off, len);
+        }
+
+        int getNumberOfWrites() {
+            return numberOfWrites;
+        }
+    }
+
+    private static class EchoPathResourceProvider implements ResourceProvider {
+
+        @Override
+        public boolean canLoad(String path) {
+            return true;
+        }
+
+        @Override
+        public void load(String path, HttpRequestImpl request, HttpResponseImpl response) throws IOException {
+            if (path.startsWith("/upload")) {
+                IOUtilities.copyStreams(request.getInputStream(), new ByteArrayOutputStream());
+            }
+            response.setStatus(HttpServletResponse.STATUS_OK);
+            response.setContentLength(path.length());
+            response.getWriter().print(path);
+            response.flush();
+        }
+
+        @Override
+        public void shutdown() {
+            // Do nothing
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package ro.polak.http;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class UploadMemoryBudgetTest {
+
+    @Test
+    public void shouldReserveUpToTheLimit() {
+        UploadMemoryBudget memoryBudget = new UploadMemoryBudget(10);
+
+        assertThat(memoryBudget.reserve(6), is(true));
+        assertThat(memoryBudget.reserve(5), is(false));
+        assertThat(memoryBudget.reserve(4), is(true));
+        assertThat(memoryBudget.getUsed(), is(10L));
+
+        memoryBudget.release(6);
+        assertThat(memoryBudget.getUsed(), is(4L));
+        assertThat(memoryBudget.reserve(5), is(true));
+    }
+}
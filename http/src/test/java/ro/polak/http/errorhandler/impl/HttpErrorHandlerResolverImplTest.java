@@ -6,6 +6,8 @@ import ro.polak.http.configuration.ServerConfig;
 import ro.polak.http.errorhandler.HttpErrorHandler;
 import ro.polak.http.errorhandler.HttpErrorHandlerResolver;
 import ro.polak.http.exception.NotFoundException;
+import ro.polak.http.exception.protocol.ExpectationFailedProtocolException;
+import ro.polak.http.exception.protocol.RequestHeaderFieldsTooLargeProtocolException;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.instanceOf;
@@ -20,4 +22,20 @@ public class HttpErrorHandlerResolverImplTest {
         HttpErrorHandler handler = httpErrorHandlerResolver.getHandler(new NotFoundException());
         assertThat(handler, is(instanceOf(HttpError500Handler.class)));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldResolveRequestHeaderFieldsTooLarge() {
+        HttpErrorHandlerResolver httpErrorHandlerResolver = new HttpErrorHandlerResolverImpl(null);
+        HttpErrorHandler handler = httpErrorHandlerResolver.getHandler(
+                new RequestHeaderFieldsTooLargeProtocolException("ANY"));
+        assertThat(handler, is(instanceOf(HttpError431Handler.class)));
+    }
+
+    @Test
+    public void shouldResolveExpectationFailed() {
+        HttpErrorHandlerResolver httpErrorHandlerResolver = new HttpErrorHandlerResolverImpl(null);
+        HttpErrorHandler handler = httpErrorHandlerResolver.getHandler(
+                new ExpectationFailedProtocolException("ANY"));
+        assertThat(handler, is(instanceOf(HttpError417Handler.class)));
+    }
+}
@@ -0,0 +1,87 @@
+package ro.polak.http.executor.impl;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import ro.polak.http.configuration.ServerConfig;
+import ro.polak.http.executor.ExecutorServiceFactory;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ExecutorServiceFactoryTest {
+
+    @Test
+    public void shouldCreateBoundedThreadPool() throws InterruptedException {
+        ExecutorService executorService = assertExecutes(new BoundedExecutorServiceFactory());
+
+        assertThat(executorService, instanceOf(ThreadPoolExecutor.class));
+        assertThat(((ThreadPoolExecutor) executorService).getMaximumPoolSize(), is(2));
+    }
+
+    @Test
+    public void shouldCreateWorkStealingPool() throws InterruptedException {
+        assertThat(assertExecutes(new WorkStealingExecutorServiceFactory()),
+                instanceOf(RejectionHandlingExecutorService.class));
+    }
+
+    @Test
+    public void shouldCreateVirtualThreadExecutorOrFallBack() throws InterruptedException {
+        assertExecutes(new VirtualThreadExecutorServiceFactory());
+    }
+
+    @Test
+    public void shouldUseFallbackWhenVirtualThreadsAreNotSupported() {
+        boolean isSupported;
+        try {
+            java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            isSupported = true;
+        } catch (NoSuchMethodException e) {
+            isSupported = false;
+        }
+
+        ExecutorServiceFactory fallbackFactory = mock(ExecutorServiceFactory.class);
+        new VirtualThreadExecutorServiceFactory(fallbackFactory)
+                .createExecutorService(getServerConfig(), mock(RejectedExecutionHandler.class));
+
+        verify(fallbackFactory, times(isSupported ? 0 : 1))
+                .createExecutorService(any(ServerConfig.class), any(RejectedExecutionHandler.class));
+    }
+
+    private ExecutorService assertExecutes(ExecutorServiceFactory factory) throws InterruptedException {
+        ExecutorService executorService = factory.createExecutorService(getServerConfig(),
+                mock(RejectedExecutionHandler.class));
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        try {
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+            });
+            assertThat(latch.await(5, TimeUnit.SECONDS), is(true));
+        } finally {
+            executorService.shutdown();
+        }
+
+        return executorService;
+    }
+
+    private ServerConfig getServerConfig() {
+        ServerConfig serverConfig = mock(ServerConfig.class);
+        when(serverConfig.getMaxServerThreads()).thenReturn(2);
+        return serverConfig;
+    }
+}
@@ -0,0 +1,48 @@
+package ro.polak.http.executor.impl;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class RejectionHandlingExecutorServiceTest {
+
+    @Test
+    public void shouldRouteRejectedTasksToHandler() {
+        ExecutorService executorService = mock(ExecutorService.class);
+        RejectedExecutionHandler handler = mock(RejectedExecutionHandler.class);
+        Runnable runnable = mock(Runnable.class);
+        doThrow(new RejectedExecutionException()).when(executorService).execute(runnable);
+
+        new RejectionHandlingExecutorService(executorService, handler).execute(runnable);
+
+        verify(handler, times(1)).rejectedExecution(runnable, null);
+    }
+
+    @Test
+    public void shouldDelegateToExecutorService() throws InterruptedException {
+        ExecutorService executorService = mock(ExecutorService.class);
+        RejectedExecutionHandler handler = mock(RejectedExecutionHandler.class);
+        when(executorService.isShutdown()).thenReturn(true);
+        Runnable runnable = mock(Runnable.class);
+
+        RejectionHandlingExecutorService service = new RejectionHandlingExecutorService(executorService, handler);
+        service.execute(runnable);
+        service.shutdown();
+
+        verify(executorService, times(1)).execute(runnable);
+        verify(executorService, times(1)).shutdown();
+        assertThat(service.isShutdown(), is(true));
+        verifyZeroInteractions(handler);
+    }
+}
@@ -0,0 +1,94 @@
+package ro.polak.http.impl;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import ro.polak.http.exception.protocol.PayloadTooLargeProtocolException;
+import ro.polak.http.exception.protocol.ProtocolException;
+import ro.polak.http.exception.protocol.RequestHeaderFieldsTooLargeProtocolException;
+import ro.polak.http.utilities.IOUtilities;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class ChunkedInputStreamTest {
+
+    @Test
+    public void shouldDecodeChunksAndLeaveFollowingBytes() throws IOException {
+        InputStream in = new ByteArrayInputStream(("4\r\nWiki\r\n5;name=value\r\npedia\r\nE\r\n in\r\n\r\nchunks.\r\n"
+                + "0\r\nTrailer: value\r\n\r\nNEXT").getBytes());
+        ChunkedInputStream body = new ChunkedInputStream(in, 1000);
+
+        assertThat(body.getRemaining(), is(BodyInputStream.UNKNOWN_LENGTH));
+        assertThat(readAll(body), is("Wikipedia in\r\n\r\nchunks."));
+        assertThat(body.read(), is(-1));
+        assertThat(body.getRemaining(), is(0L));
+        assertThat(readAll(in), is("NEXT"));
+    }
+
+    @Test
+    public void shouldReadByteByByte() throws IOException {
+        ChunkedInputStream body = new ChunkedInputStream(new ByteArrayInputStream("2\r\nab\r\n1\r\nc\r\n0\r\n\r\n".getBytes()), 1000);
+
+        assertThat(body.read(), is((int) 'a'));
+        assertThat(body.read(), is((int) 'b'));
+        assertThat(body.read(), is((int) 'c'));
+        assertThat(body.read(), is(-1));
+    }
+
+    @Test
+    public void shouldDiscardRemainingBody() throws IOException {
+        InputStream in = new ByteArrayInputStream("3\r\nabc\r\n3\r\ndef\r\n0\r\n\r\nNEXT".getBytes());
+        ChunkedInputStream body = new ChunkedInputStream(in, 1000);
+
+        assertThat(body.discard(6), is(true));
+        assertThat(readAll(in), is("NEXT"));
+    }
+
+    @Test
+    public void shouldNotDiscardBodyExceedingLimit() throws IOException {
+        ChunkedInputStream body = new ChunkedInputStream(
+                new ByteArrayInputStream("3\r\nabc\r\n3\r\ndef\r\n0\r\n\r\n".getBytes()), 1000);
+
+        assertThat(body.discard(5), is(false));
+    }
+
+    @Test(expected = PayloadTooLargeProtocolException.class)
+    public void shouldEnforceMaxLength() throws IOException {
+        readAll(new ChunkedInputStream(new ByteArrayInputStream("3\r\nabc\r\n3\r\ndef\r\n0\r\n\r\n".getBytes()), 5));
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void shouldThrowExceptionOnMalformedChunkSize() throws IOException {
+        readAll(new ChunkedInputStream(new ByteArrayInputStream("x\r\nabc\r\n0\r\n\r\n".getBytes()), 1000));
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void shouldThrowExceptionOnMissingChunkTerminator() throws IOException {
+        readAll(new ChunkedInputStream(new ByteArrayInputStream("2\r\nabc\r\n0\r\n\r\n".getBytes()), 1000));
+    }
+
+    @Test(expected = RequestHeaderFieldsTooLargeProtocolException.class)
+    public void shouldLimitTrailerSize() throws IOException {
+        StringBuilder trailer = new StringBuilder("0\r\n");
+        for (int i = 0; i < 1000; i++) {
+            trailer.append("Trailer: value\r\n");
+        }
+        readAll(new ChunkedInputStream(new ByteArrayInputStream(trailer.append("\r\n").toString().getBytes()), 1000));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldThrowExceptionOnPrematureEndOfStream() throws IOException {
+        readAll(new ChunkedInputStream(new ByteArrayInputStream("5\r\nabc".getBytes()), 1000));
+    }
+
+    private String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOUtilities.copyStreams(in, out);
+        return out.toString();
+    }
+}
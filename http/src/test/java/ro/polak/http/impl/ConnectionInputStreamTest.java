@@ -0,0 +1,59 @@
+package ro.polak.http.impl;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class ConnectionInputStreamTest {
+
+    @Test
+    public void shouldLeaveUnconsumedBytesBuffered() throws IOException {
+        ConnectionInputStream in = new ConnectionInputStream(new ByteArrayInputStream("headbody".getBytes()), 16);
+
+        assertThat(in.fill(), is(true));
+        assertThat(in.getLimit() - in.getPosition(), is(8));
+        assertThat(new String(in.getBuffer(), in.getPosition(), 4), is("head"));
+
+        in.consume(4);
+        assertThat(in.available(), is(4));
+
+        byte[] body = new byte[4];
+        assertThat(in.read(body), is(4));
+        assertThat(new String(body), is("body"));
+        assertThat(in.fill(), is(false));
+    }
+
+    @Test
+    public void shouldNotReadAheadWithSingleByteBuffer() throws IOException {
+        ByteArrayInputStream source = new ByteArrayInputStream("ab".getBytes());
+        ConnectionInputStream in = new ConnectionInputStream(source, 1);
+
+        assertThat(in.fill(), is(true));
+        assertThat(source.available(), is(1));
+        in.consume(1);
+        assertThat(source.read(), is((int) 'b'));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotConsumeMoreThanBuffered() throws IOException {
+        ConnectionInputStream in = new ConnectionInputStream(new ByteArrayInputStream("ab".getBytes()), 16);
+        in.fill();
+        in.consume(3);
+    }
+
+    @Test
+    public void shouldGrowHeadBufferUpToMaxLength() {
+        ConnectionInputStream in = new ConnectionInputStream(new ByteArrayInputStream(new byte[0]));
+        byte[] headBuffer = in.getHeadBuffer();
+        headBuffer[0] = 1;
+
+        byte[] grown = in.growHeadBuffer(headBuffer.length + 10);
+        assertThat(grown.length, is(headBuffer.length + 10));
+        assertThat(grown[0], is((byte) 1));
+        assertThat(in.getHeadBuffer() == grown, is(true));
+    }
+}
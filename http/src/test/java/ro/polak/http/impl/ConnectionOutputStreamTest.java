@@ -0,0 +1,137 @@
+package ro.polak.http.impl;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class ConnectionOutputStreamTest {
+
+    @Test
+    public void shouldCoalesceWritesUntilFlushed() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConnectionOutputStream connectionOutputStream = new ConnectionOutputStream(out, 16);
+
+        connectionOutputStream.write("head".getBytes());
+        connectionOutputStream.write("body".getBytes());
+        assertThat(out.size(), is(0));
+
+        connectionOutputStream.flush();
+        assertThat(out.toString(), is("headbody"));
+    }
+
+    @Test
+    public void shouldNotFlushWhenFlushIsDeferred() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConnectionOutputStream connectionOutputStream = new ConnectionOutputStream(out, 16);
+        connectionOutputStream.setFlushDeferred(true);
+
+        connectionOutputStream.write("head".getBytes());
+        connectionOutputStream.flush();
+        assertThat(out.size(), is(0));
+
+        connectionOutputStream.flushConnection();
+        assertThat(out.toString(), is("head"));
+    }
+
+    @Test
+    public void shouldKeepBufferedBytesWhenGrowingBuffer() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConnectionOutputStream connectionOutputStream = new ConnectionOutputStream(out, 4);
+
+        connectionOutputStream.write("ab".getBytes());
+        connectionOutputStream.setBufferSize(16);
+        connectionOutputStream.setBufferSize(2);
+        assertThat(connectionOutputStream.getBufferSize(), is(16));
+
+        connectionOutputStream.write("cdefgh".getBytes());
+        assertThat(out.size(), is(0));
+
+        connectionOutputStream.flushConnection();
+        assertThat(out.toString(), is("abcdefgh"));
+    }
+
+    @Test
+    public void shouldCapBufferSize() {
+        ConnectionOutputStream connectionOutputStream = new ConnectionOutputStream(new ByteArrayOutputStream(), 4);
+
+        connectionOutputStream.setBufferSize(Integer.MAX_VALUE);
+        assertThat(connectionOutputStream.getBufferSize(), is(ConnectionOutputStream.MAX_BUFFER_SIZE));
+    }
+
+    @Test
+    public void shouldRestoreDefaultBufferSizeKeepingBufferedBytes() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConnectionOutputStream connectionOutputStream = new ConnectionOutputStream(out, 4);
+        connectionOutputStream.setFlushDeferred(true);
+
+        connectionOutputStream.setBufferSize(16);
+        connectionOutputStream.write("abcdef".getBytes());
+        connectionOutputStream.restoreBufferSize();
+        assertThat(connectionOutputStream.getBufferSize(), is(6));
+
+        connectionOutputStream.flushConnection();
+        connectionOutputStream.restoreBufferSize();
+        assertThat(connectionOutputStream.getBufferSize(), is(4));
+        assertThat(out.toString(), is("abcdef"));
+    }
+
+    @Test
+    public void shouldSendBufferedBytesAndLargeWriteUsingGatheringWrite() throws IOException {
+        RecordingChannel channel = new RecordingChannel();
+        ConnectionOutputStream connectionOutputStream = new ConnectionOutputStream(new ByteArrayOutputStream(), 8,
+                channel);
+
+        connectionOutputStream.write("head".getBytes());
+        connectionOutputStream.write("large body".getBytes());
+
+        assertThat(channel.numberOfWrites, is(1));
+        assertThat(channel.written.toString(), is("headlarge body"));
+
+        connectionOutputStream.write("tail".getBytes());
+        assertThat(channel.numberOfWrites, is(1));
+    }
+
+    private static class RecordingChannel implements GatheringByteChannel {
+
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        private int numberOfWrites = 0;
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            numberOfWrites++;
+            long total = 0;
+            for (int i = offset; i < offset + length; i++) {
+                total += write(srcs[i]);
+            }
+            return total;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            int length = src.remaining();
+            written.write(src.array(), src.arrayOffset() + src.position(), length);
+            src.position(src.limit());
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package ro.polak.http.impl;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import ro.polak.http.servlet.HttpServletResponse;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class ContentLengthInputStreamTest {
+
+    @Test
+    public void shouldNotReadPastContentLength() throws IOException {
+        InputStream in = new ByteArrayInputStream("bodyNEXT".getBytes());
+        ContentLengthInputStream body = new ContentLengthInputStream(in, 4);
+
+        byte[] buffer = new byte[8];
+        assertThat(body.read(buffer), is(4));
+        assertThat(new String(buffer, 0, 4), is("body"));
+        assertThat(body.read(), is(-1));
+        assertThat(body.read(buffer), is(-1));
+        assertThat(body.getRemaining(), is(0L));
+        assertThat(in.read(), is((int) 'N'));
+    }
+
+    @Test
+    public void shouldLimitAvailableAndSkip() throws IOException {
+        ContentLengthInputStream body = new ContentLengthInputStream(new ByteArrayInputStream("bodyNEXT".getBytes()), 4);
+
+        assertThat(body.available(), is(4));
+        assertThat(body.skip(10), is(4L));
+        assertThat(body.available(), is(0));
+    }
+
+    @Test
+    public void shouldNotCloseTheConnectionStream() throws IOException {
+        InputStream in = new ByteArrayInputStream("bodyNEXT".getBytes());
+        ContentLengthInputStream body = new ContentLengthInputStream(in, 4);
+
+        body.close();
+        assertThat(in.read(), is((int) 'b'));
+    }
+
+    @Test
+    public void shouldDiscardRemainingBody() throws IOException {
+        InputStream in = new ByteArrayInputStream("bodyNEXT".getBytes());
+        ContentLengthInputStream body = new ContentLengthInputStream(in, 4);
+        body.read();
+
+        assertThat(body.discard(3), is(true));
+        assertThat(body.getRemaining(), is(0L));
+        assertThat(in.read(), is((int) 'N'));
+    }
+
+    @Test
+    public void shouldNotDiscardBodyExceedingLimit() throws IOException {
+        ContentLengthInputStream body = new ContentLengthInputStream(new ByteArrayInputStream("bodyNEXT".getBytes()), 4);
+
+        assertThat(body.discard(3), is(false));
+        assertThat(body.getRemaining(), is(4L));
+    }
+
+    @Test
+    public void shouldSendContinueBeforeFirstRead() throws IOException {
+        ContentLengthInputStream body = new ContentLengthInputStream(new ByteArrayInputStream("body".getBytes()), 4);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.setContinueExpected(out);
+
+        assertThat(body.isContinuePending(), is(true));
+        assertThat(out.size(), is(0));
+
+        body.read();
+        body.read();
+        assertThat(body.isContinuePending(), is(false));
+        assertThat(out.toString(), is(HttpServletResponse.STATUS_CONTINUE + "\r\n\r\n"));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldThrowExceptionOnPrematureEndOfStream() throws IOException {
+        ContentLengthInputStream body = new ContentLengthInputStream(new ByteArrayInputStream("bo".getBytes()), 4);
+
+        body.read(new byte[4]);
+        body.read(new byte[4]);
+    }
+}
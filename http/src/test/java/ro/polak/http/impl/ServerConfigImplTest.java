@@ -32,7 +32,11 @@ public class ServerConfigImplTest {
             "server.mimeType.defaultMimeType=mime/text\n" +
             "server.mimeType.filePath=mime.mime\n" +
             "server.maxThreads=3\n" +
+            "server.engine=nio\n" +
+            "server.executor=workStealing\n" +
             "server.keepAlive.enabled=true\n" +
+            "server.keepAlive.timeout=7\n" +
+            "server.keepAlive.maxRequests=50\n" +
             "server.errorDocument.404=error404.html\n" +
             "server.errorDocument.403=error403.html\n" +
             ADDITIONAL_ATTRIBUTE_NAME + "=" + ORIGINAL_VALUE + "\n";
@@ -100,7 +104,11 @@ public class ServerConfigImplTest {
         assertThat(serverConfig.getErrorDocument404Path(), is(workingDirectory + "error404.html"));
         assertThat(serverConfig.getListenPort(), is(8090));
         assertThat(serverConfig.getMaxServerThreads(), is(3));
+        assertThat(serverConfig.getEngine(), is(ServerConfig.ENGINE_NIO));
+        assertThat(serverConfig.getExecutor(), is(ServerConfig.EXECUTOR_WORK_STEALING));
         assertThat(serverConfig.isKeepAlive(), is(true));
+        assertThat(serverConfig.getKeepAliveTimeout(), is(7));
+        assertThat(serverConfig.getKeepAliveMaxRequests(), is(50));
         assertThat(serverConfig.getMimeTypeMapping().getMimeTypeByExtension("ANY"), is("mime/text"));
         assertThat(serverConfig.getAttribute(ADDITIONAL_ATTRIBUTE_NAME), is(ORIGINAL_VALUE));
 
@@ -147,6 +155,8 @@ public class ServerConfigImplTest {
         assertThat(serverConfig.getErrorDocument404Path(), is("/tmp/ERROR404.html"));
         assertThat(serverConfig.getListenPort(), is(9090));
         assertThat(serverConfig.getMaxServerThreads(), is(66));
+        assertThat(serverConfig.getEngine(), is(ServerConfig.ENGINE_BLOCKING));
+        assertThat(serverConfig.getExecutor(), is(ServerConfig.EXECUTOR_BOUNDED));
         assertThat(serverConfig.isKeepAlive(), is(false));
 //        assertThat(serverConfig.getMimeTypeMapping().getMimeTypeByExtension("ANY"), is("mime/text"));
         assertThat(serverConfig.getAttribute(ADDITIONAL_ATTRIBUTE_NAME), is("YET_ANOTHER_VALUE"));
@@ -43,10 +43,22 @@ public class RangeParserTest {
         assertThat(rageList.get(1).getTo(), is(301L));
     }
 
-    @Test(expected = MalformedInputException.class)
-    public void shouldThrowExceptionOnMissingLength() throws MalformedInputException {
+    @Test
+    public void shouldParseOpenRange() throws MalformedInputException {
+        RangeParser rangeParser = new RangeParser();
+        List<Range> rageList = rangeParser.parse("bytes=100-");
+        assertThat(rageList.size(), is(1));
+        assertThat(rageList.get(0).getFrom(), is(100L));
+        assertThat(rageList.get(0).getTo(), is(Range.UNSPECIFIED));
+    }
+
+    @Test
+    public void shouldParseSuffixRange() throws MalformedInputException {
         RangeParser rangeParser = new RangeParser();
-        rangeParser.parse("bytes=100-");
+        List<Range> rageList = rangeParser.parse("bytes=0-0, -200");
+        assertThat(rageList.size(), is(2));
+        assertThat(rageList.get(1).getFrom(), is(Range.UNSPECIFIED));
+        assertThat(rageList.get(1).getTo(), is(200L));
     }
 
     @Test(expected = MalformedInputException.class)
@@ -56,9 +68,15 @@ public class RangeParserTest {
     }
 
     @Test(expected = MalformedInputException.class)
-    public void shouldThrowExceptionWhenMissingFromValue() throws MalformedInputException {
+    public void shouldThrowExceptionWhenMissingBothValues() throws MalformedInputException {
+        RangeParser rangeParser = new RangeParser();
+        rangeParser.parse("bytes=-");
+    }
+
+    @Test(expected = MalformedInputException.class)
+    public void shouldThrowExceptionOnSignedValues() throws MalformedInputException {
         RangeParser rangeParser = new RangeParser();
-        rangeParser.parse("bytes=-200");
+        rangeParser.parse("bytes=1--5");
     }
 
     @Test(expected = MalformedInputException.class)
@@ -36,4 +36,13 @@ public class HeadersSerializerTest {
                 is("header: Value\r\nsomeOtherHeader: 123\r\n\r\n")
         ));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldSerializeEveryValueAsSeparateLine() {
+        Headers headers = new Headers();
+        headers.addHeader(Headers.HEADER_SET_COOKIE, "a=1");
+        headers.addHeader(Headers.HEADER_SET_COOKIE, "b=2");
+
+        assertThat(headersSerializer.serialize(headers), is("Set-Cookie: a=1\r\nSet-Cookie: b=2\r\n\r\n"));
+    }
+}
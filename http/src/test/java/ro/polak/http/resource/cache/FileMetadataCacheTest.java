@@ -0,0 +1,112 @@
+package ro.polak.http.resource.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import ro.polak.http.FileUtils;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class FileMetadataCacheTest {
+
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = new File(FileUtils.createTempDirectory());
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteRecursively(root);
+    }
+
+    @Test
+    public void shouldReturnFileMetadata() throws IOException {
+        File file = FileUtils.writeToFile(root, "index.html", "12345");
+        FileMetadataCache cache = new FileMetadataCache(60000, 10);
+
+        FileMetadataCache.Metadata metadata = cache.get("/index.html", file);
+
+        assertThat(metadata.isFile(), is(true));
+        assertThat(metadata.getLength(), is(5L));
+        assertThat(metadata.getLastModified(), is(file.lastModified()));
+    }
+
+    @Test
+    public void shouldNotReportDirectoriesAsFiles() {
+        FileMetadataCache cache = new FileMetadataCache(60000, 10);
+
+        assertThat(cache.get("/", root).isFile(), is(false));
+    }
+
+    @Test
+    public void shouldCacheMetadataWithinTtl() throws IOException {
+        File file = FileUtils.writeToFile(root, "index.html", "12345");
+        FileMetadataCache cache = new FileMetadataCache(60000, 10);
+        cache.get("/index.html", file);
+
+        file.delete();
+
+        assertThat(cache.get("/index.html", file).isFile(), is(true));
+    }
+
+    @Test
+    public void shouldCacheMissingFilesWithinTtl() throws IOException {
+        File file = new File(root, "missing.html");
+        FileMetadataCache cache = new FileMetadataCache(60000, 10);
+        assertThat(cache.get("/missing.html", file).isFile(), is(false));
+
+        FileUtils.writeToFile(root, "missing.html", "12345");
+
+        assertThat(cache.get("/missing.html", file).isFile(), is(false));
+        cache.invalidateAll();
+        assertThat(cache.get("/missing.html", file).isFile(), is(true));
+    }
+
+    @Test
+    public void shouldRefreshExpiredMetadata() throws IOException {
+        File file = FileUtils.writeToFile(root, "index.html", "12345");
+        FileMetadataCache cache = new FileMetadataCache(0, 10);
+        assertThat(cache.get("/index.html", file).isFile(), is(true));
+
+        file.delete();
+
+        assertThat(cache.get("/index.html", file).isFile(), is(false));
+        FileUtils.writeToFile(root, "index.html", "123");
+        assertThat(cache.get("/index.html", file).getLength(), is(3L));
+    }
+
+    @Test
+    public void shouldNotEvictExistingFilesWhenFloodedWithMissingOnes() throws IOException {
+        File file = FileUtils.writeToFile(root, "index.html", "12345");
+        FileMetadataCache cache = new FileMetadataCache(60000, 2);
+        cache.get("/index.html", file);
+
+        for (int i = 0; i < 10; i++) {
+            cache.get("/missing" + i, new File(root, "missing" + i));
+        }
+        file.delete();
+
+        assertThat(cache.get("/index.html", file).isFile(), is(true));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedMissingFiles() throws IOException {
+        FileMetadataCache cache = new FileMetadataCache(60000, 2);
+        cache.get("/a", new File(root, "a"));
+        cache.get("/b", new File(root, "b"));
+        cache.get("/c", new File(root, "c"));
+
+        FileUtils.writeToFile(root, "a", "1");
+        FileUtils.writeToFile(root, "c", "1");
+
+        assertThat(cache.get("/a", new File(root, "a")).isFile(), is(true));
+        assertThat(cache.get("/c", new File(root, "c")).isFile(), is(false));
+    }
+}
@@ -0,0 +1,108 @@
+package ro.polak.http.resource.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import ro.polak.http.FileUtils;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class MappedFileStoreTest {
+
+    private File root;
+    private MappedFileStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        root = new File(FileUtils.createTempDirectory());
+        store = new MappedFileStore(10, 4);
+    }
+
+    @After
+    public void tearDown() {
+        store.clear();
+        FileUtils.deleteRecursively(root);
+    }
+
+    @Test
+    public void shouldMapFrequentlyRequestedFiles() throws IOException {
+        File file = FileUtils.writeToFile(root, "video.mp4", "123456");
+
+        assertThat(store.get("/video.mp4", file, FileMetadataCache.Metadata.of(file)), is(nullValue()));
+        ByteBuffer buffer = store.get("/video.mp4", file, FileMetadataCache.Metadata.of(file));
+
+        assertThat(buffer, is(notNullValue()));
+        assertThat(buffer.isReadOnly(), is(true));
+        assertThat(buffer.capacity(), is(6));
+        byte[] contents = new byte[6];
+        buffer.get(contents);
+        assertThat(new String(contents), is("123456"));
+        assertThat(store.get("/video.mp4", file, FileMetadataCache.Metadata.of(file)).position(), is(0));
+        assertThat(store.getSize(), is(6L));
+    }
+
+    @Test
+    public void shouldNotMapSmallOrTooLargeFiles() throws IOException {
+        File small = FileUtils.writeToFile(root, "small", "123");
+        File large = FileUtils.writeToFile(root, "large", "12345678901");
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(store.get("/small", small, FileMetadataCache.Metadata.of(small)), is(nullValue()));
+            assertThat(store.get("/large", large, FileMetadataCache.Metadata.of(large)), is(nullValue()));
+        }
+        assertThat(store.getSize(), is(0L));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedMappings() throws IOException {
+        File first = FileUtils.writeToFile(root, "first", "12345");
+        File second = FileUtils.writeToFile(root, "second", "12345");
+        File third = FileUtils.writeToFile(root, "third", "12345");
+
+        store.get("/first", first, FileMetadataCache.Metadata.of(first));
+        store.get("/first", first, FileMetadataCache.Metadata.of(first));
+        store.get("/second", second, FileMetadataCache.Metadata.of(second));
+        store.get("/second", second, FileMetadataCache.Metadata.of(second));
+        store.get("/first", first, FileMetadataCache.Metadata.of(first));
+        store.get("/third", third, FileMetadataCache.Metadata.of(third));
+        store.get("/third", third, FileMetadataCache.Metadata.of(third));
+
+        assertThat(store.getSize(), is(10L));
+        assertThat(store.get("/first", first, FileMetadataCache.Metadata.of(first)), is(notNullValue()));
+        assertThat(store.get("/second", second, FileMetadataCache.Metadata.of(second)), is(nullValue()));
+    }
+
+    @Test
+    public void shouldRemapModifiedFiles() throws IOException {
+        File file = FileUtils.writeToFile(root, "video.mp4", "123456");
+        store.get("/video.mp4", file, FileMetadataCache.Metadata.of(file));
+        store.get("/video.mp4", file, FileMetadataCache.Metadata.of(file));
+
+        FileUtils.writeToFile(file, "1234567");
+
+        assertThat(store.get("/video.mp4", file, FileMetadataCache.Metadata.of(file)), is(nullValue()));
+        assertThat(store.getSize(), is(0L));
+        assertThat(store.get("/video.mp4", file, FileMetadataCache.Metadata.of(file)).capacity(), is(7));
+    }
+
+    @Test
+    public void shouldInvalidateMapping() throws IOException {
+        File file = FileUtils.writeToFile(root, "video.mp4", "123456");
+        store.get("/video.mp4", file, FileMetadataCache.Metadata.of(file));
+        store.get("/video.mp4", file, FileMetadataCache.Metadata.of(file));
+        assertThat(store.getSize(), is(6L));
+
+        store.invalidate("/video.mp4");
+
+        assertThat(store.getSize(), is(0L));
+        assertThat(store.get("/video.mp4", file, FileMetadataCache.Metadata.of(file)), is(nullValue()));
+    }
+}
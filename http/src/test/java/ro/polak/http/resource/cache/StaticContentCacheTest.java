@@ -0,0 +1,117 @@
+package ro.polak.http.resource.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import ro.polak.http.FileUtils;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class StaticContentCacheTest {
+
+    private File root;
+    private StaticContentCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        root = new File(FileUtils.createTempDirectory());
+        cache = new StaticContentCache(10, 6);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        cache.close();
+        FileUtils.deleteRecursively(root);
+    }
+
+    @Test
+    public void shouldCacheFileContentsAndContentType() throws IOException {
+        File file = FileUtils.writeToFile(root, "/index.html", "abc");
+
+        StaticContentCache.Entry entry = cache.load("/index.html", file, FileMetadataCache.Metadata.of(file), "text/html");
+
+        assertThat(new String(entry.getContents()), is("abc"));
+        assertThat(entry.getContentType(), is("text/html"));
+        assertThat(entry.getLength(), is(3L));
+        assertThat(entry.getLastModified().endsWith(" GMT"), is(true));
+        assertThat(cache.get("/index.html", FileMetadataCache.Metadata.of(file)) == entry, is(true));
+        assertThat(cache.get("//./index.html", FileMetadataCache.Metadata.of(file)) == entry, is(true));
+        assertThat(cache.getSize(), is(3L));
+    }
+
+    @Test
+    public void shouldNotCacheFilesLargerThanMaxEntrySize() throws IOException {
+        File file = FileUtils.writeToFile(root, "/large.bin", "1234567");
+
+        assertThat(cache.load("/large.bin", file, FileMetadataCache.Metadata.of(file), "application/octet-stream"), is(nullValue()));
+        assertThat(cache.get("/large.bin", FileMetadataCache.Metadata.of(file)), is(nullValue()));
+        assertThat(cache.getSize(), is(0L));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedEntries() throws IOException {
+        File first = FileUtils.writeToFile(root, "/first", "1234");
+        File second = FileUtils.writeToFile(root, "/second", "1234");
+        File third = FileUtils.writeToFile(root, "/third", "1234");
+
+        cache.load("/first", first, FileMetadataCache.Metadata.of(first), "text/plain");
+        cache.load("/second", second, FileMetadataCache.Metadata.of(second), "text/plain");
+        cache.get("/first", FileMetadataCache.Metadata.of(first));
+        cache.load("/third", third, FileMetadataCache.Metadata.of(third), "text/plain");
+
+        assertThat(cache.get("/first", FileMetadataCache.Metadata.of(first)), is(notNullValue()));
+        assertThat(cache.get("/second", FileMetadataCache.Metadata.of(second)), is(nullValue()));
+        assertThat(cache.get("/third", FileMetadataCache.Metadata.of(third)), is(notNullValue()));
+        assertThat(cache.getSize(), is(8L));
+    }
+
+    @Test
+    public void shouldDropEntriesOfModifiedFiles() throws IOException {
+        File file = FileUtils.writeToFile(root, "/index.html", "abc");
+        cache.load("/index.html", file, FileMetadataCache.Metadata.of(file), "text/html");
+
+        assertThat(file.setLastModified(file.lastModified() - 10000), is(true));
+
+        assertThat(cache.get("/index.html", FileMetadataCache.Metadata.of(file)), is(nullValue()));
+        assertThat(cache.getSize(), is(0L));
+    }
+
+    @Test
+    public void shouldInvalidateEntriesBelowPath() throws IOException {
+        File first = FileUtils.writeToFile(root, "/dir/first", "1");
+        File second = FileUtils.writeToFile(root, "/dir/second", "2");
+        File other = FileUtils.writeToFile(root, "/directory", "3");
+        cache.load("/dir/first", first, FileMetadataCache.Metadata.of(first), "text/plain");
+        cache.load("/dir/second", second, FileMetadataCache.Metadata.of(second), "text/plain");
+        cache.load("/directory", other, FileMetadataCache.Metadata.of(other), "text/plain");
+
+        cache.invalidate("/dir");
+
+        assertThat(cache.get("/dir/first", FileMetadataCache.Metadata.of(first)), is(nullValue()));
+        assertThat(cache.get("/dir/second", FileMetadataCache.Metadata.of(second)), is(nullValue()));
+        assertThat(cache.get("/directory", FileMetadataCache.Metadata.of(other)), is(notNullValue()));
+    }
+
+    @Test
+    public void shouldInvalidateEntriesOfFilesChangedInWatchedDirectory() throws Exception {
+        File file = FileUtils.writeToFile(root, "/assets/app.css", "body");
+        assertThat(cache.watch(root), is(true));
+        cache.load("/assets/app.css", file, FileMetadataCache.Metadata.of(file), "text/css");
+        assertThat(cache.getSize(), is(4L));
+
+        FileUtils.writeToFile(file, "html");
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (cache.getSize() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(cache.getSize(), is(0L));
+    }
+}
@@ -0,0 +1,146 @@
+package ro.polak.http.resource.router;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import ro.polak.http.resource.provider.ResourceProvider;
+import ro.polak.http.resource.provider.RoutableResourceProvider;
+import ro.polak.http.servlet.impl.HttpRequestImpl;
+import ro.polak.http.servlet.impl.HttpResponseImpl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ResourceRouterTest {
+
+    @Test
+    public void shouldResolveResourceProvidersThatCanLoadThePath() throws IOException {
+        ResourceProvider resourceProvider = mock(ResourceProvider.class);
+        when(resourceProvider.canLoad("/index.html")).thenReturn(true);
+        ResourceRouter router = new ResourceRouter(Collections.singletonList(resourceProvider));
+
+        ResolvedRoute<?> route = router.resolve("/index.html");
+        HttpRequestImpl request = mock(HttpRequestImpl.class);
+        HttpResponseImpl response = mock(HttpResponseImpl.class);
+        route.load(request, response);
+
+        assertThat(route.getResourceProvider(), is(sameInstance(resourceProvider)));
+        assertThat(route.getPath(), is("/index.html"));
+        verify(resourceProvider).load("/index.html", request, response);
+        assertThat(router.resolve("/missing.html"), is(nullValue()));
+    }
+
+    @Test
+    public void shouldAskResourceProvidersInOrder() {
+        ResourceProvider first = mock(ResourceProvider.class);
+        when(first.canLoad("/first")).thenReturn(true);
+        when(first.canLoad("/both")).thenReturn(true);
+        TestRoutableResourceProvider second = new TestRoutableResourceProvider("/");
+
+        ResourceRouter router = new ResourceRouter(Arrays.asList(first, second));
+
+        assertThat(router.resolve("/both").getResourceProvider(), is(sameInstance((ResourceProvider) first)));
+        assertThat(router.resolve("/second").getResourceProvider(), is(sameInstance((ResourceProvider) second)));
+    }
+
+    @Test
+    public void shouldPreferMostSpecificRoute() {
+        TestRoutableResourceProvider resourceProvider = new TestRoutableResourceProvider("/", "/api/1.0");
+        ResourceRouter router = new ResourceRouter(Collections.<ResourceProvider>singletonList(resourceProvider));
+
+        assertThat(router.resolve("/api/1.0/sms/inbox").getTarget(), is((Object) "/api/1.0"));
+        assertThat(router.resolve("/api/1.0").getTarget(), is((Object) "/api/1.0"));
+        assertThat(router.resolve("/api/2.0/sms/inbox").getTarget(), is((Object) "/"));
+        assertThat(router.resolve("/").getTarget(), is((Object) "/"));
+    }
+
+    @Test
+    public void shouldFallBackToLessSpecificRoute() {
+        TestRoutableResourceProvider resourceProvider = new TestRoutableResourceProvider("/", "/admin");
+        resourceProvider.rejectedPaths.add("/admin /admin/Missing");
+        ResourceRouter router = new ResourceRouter(Collections.<ResourceProvider>singletonList(resourceProvider));
+
+        assertThat(router.resolve("/admin/Missing").getTarget(), is((Object) "/"));
+    }
+
+    @Test
+    public void shouldNotAskRoutesOutsideOfTheirPrefix() {
+        TestRoutableResourceProvider resourceProvider = new TestRoutableResourceProvider("/admin");
+        ResourceRouter router = new ResourceRouter(Collections.<ResourceProvider>singletonList(resourceProvider));
+
+        assertThat(router.resolve("/administrator"), is(nullValue()));
+        assertThat(router.resolve("/other/admin"), is(nullValue()));
+        assertThat(resourceProvider.resolvedPaths, is(empty()));
+
+        router.resolve("/admin/Index");
+        assertThat(resourceProvider.resolvedPaths, contains("/admin/Index"));
+    }
+
+    @Test
+    public void shouldPassResolvedTargetOnLoad() throws IOException {
+        TestRoutableResourceProvider resourceProvider = new TestRoutableResourceProvider("/admin");
+        ResourceRouter router = new ResourceRouter(Collections.<ResourceProvider>singletonList(resourceProvider));
+
+        router.resolve("/admin/Index").load(mock(HttpRequestImpl.class), mock(HttpResponseImpl.class));
+
+        assertThat(resourceProvider.loadedTargets, contains("/admin"));
+    }
+
+    private static class TestRoutableResourceProvider implements RoutableResourceProvider {
+
+        private final List<Route<?>> routes = new ArrayList<>();
+        private final List<String> resolvedPaths = new ArrayList<>();
+        private final List<String> rejectedPaths = new ArrayList<>();
+        private final List<String> loadedTargets = new ArrayList<>();
+
+        TestRoutableResourceProvider(String... pathPrefixes) {
+            for (final String pathPrefix : pathPrefixes) {
+                routes.add(new Route<String>(pathPrefix, this) {
+                    @Override
+                    public String resolve(String path) {
+                        resolvedPaths.add(path);
+                        return rejectedPaths.contains(pathPrefix + " " + path) ? null : pathPrefix;
+                    }
+
+                    @Override
+                    public void load(String path, String target, HttpRequestImpl request,
+                                     HttpResponseImpl response) {
+                        loadedTargets.add(target);
+                    }
+                });
+            }
+        }
+
+        @Override
+        public List<Route<?>> getRoutes() {
+            return routes;
+        }
+
+        @Override
+        public boolean canLoad(String path) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void load(String path, HttpRequestImpl request, HttpResponseImpl response) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void shutdown() {
+            // Do nothing
+        }
+    }
+}
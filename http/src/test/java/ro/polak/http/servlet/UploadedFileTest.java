@@ -4,6 +4,9 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+
+import ro.polak.http.UploadMemoryBudget;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
@@ -88,6 +91,76 @@ public class UploadedFileTest {
         }
     }
 
+    @Test
+    public void shouldMoveFileKeptInMemoryAndReleaseItsMemory() throws IOException {
+        UploadMemoryBudget memoryBudget = new UploadMemoryBudget(100);
+        assertThat(memoryBudget.reserve(4), is(true));
+        UploadedFile uploadedFile = new UploadedFile("myfile", "myfile.txt", "ABCD".getBytes(), memoryBudget);
+        File movedFile = new File(tempPath + "uploadfile456.txt");
+        try {
+            assertThat(uploadedFile.isInMemory(), is(true));
+            assertThat(uploadedFile.getSize(), is(4L));
+            assertThat(uploadedFile.getFile() == null, is(true));
+
+            uploadedFile.moveTo(movedFile);
+
+            assertThat(new String(Files.readAllBytes(movedFile.toPath())), is("ABCD"));
+            assertThat(memoryBudget.getUsed(), is(0L));
+            if (uploadedFile.destroy()) {
+                fail("Memory should be already released.");
+            }
+            assertThat(memoryBudget.getUsed(), is(0L));
+        } finally {
+            cleanupFile(movedFile);
+        }
+    }
+
+    @Test
+    public void shouldMoveFileStoredOnDisk() throws IOException {
+        File file = new File(tempPath + "uploadfile.pdf");
+        File movedFile = new File(tempPath + "uploadfile789.pdf");
+        try {
+            Files.write(file.toPath(), "ABCD".getBytes());
+            UploadedFile uploadedFile = new UploadedFile("myfile", "myfile.pdf", file);
+            assertThat(uploadedFile.isInMemory(), is(false));
+            assertThat(uploadedFile.getSize(), is(4L));
+
+            uploadedFile.moveTo(movedFile);
+
+            assertThat(file.exists(), is(false));
+            assertThat(new String(Files.readAllBytes(movedFile.toPath())), is("ABCD"));
+            if (uploadedFile.destroy()) {
+                fail("Moved file should be skipped by the cleanup.");
+            }
+            assertThat(movedFile.exists(), is(true));
+        } finally {
+            cleanupFile(file);
+            cleanupFile(movedFile);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotReadDestroyedFileKeptInMemory() throws IOException {
+        UploadedFile uploadedFile = new UploadedFile("myfile", "myfile.txt", "ABCD".getBytes(), null);
+        uploadedFile.destroy();
+        uploadedFile.getInputStream();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotMoveFileTwice() throws IOException {
+        File file = new File(tempPath + "uploadfile.pdf");
+        File movedFile = new File(tempPath + "uploadfile789.pdf");
+        try {
+            Files.write(file.toPath(), "ABCD".getBytes());
+            UploadedFile uploadedFile = new UploadedFile("myfile", "myfile.pdf", file);
+            uploadedFile.moveTo(movedFile);
+            uploadedFile.moveTo(file);
+        } finally {
+            cleanupFile(file);
+            cleanupFile(movedFile);
+        }
+    }
+
     private void cleanupFile(File file) throws IOException {
         if (file.exists() && !file.delete()) {
             throw new IOException("Unable to delete " + file.getAbsolutePath());
@@ -3,6 +3,7 @@ package ro.polak.http.servlet.factory;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.net.InetAddress;
@@ -11,6 +12,9 @@ import java.net.Socket;
 import java.util.Map;
 
 import ro.polak.http.Headers;
+import ro.polak.http.exception.protocol.ExpectationFailedProtocolException;
+import ro.polak.http.exception.protocol.LengthRequiredException;
+import ro.polak.http.exception.protocol.PayloadTooLargeProtocolException;
 import ro.polak.http.exception.protocol.ProtocolException;
 import ro.polak.http.exception.protocol.UnsupportedProtocolException;
 import ro.polak.http.protocol.parser.MalformedInputException;
@@ -89,4 +93,92 @@ public class HttpServletRequestImplFactoryTest {
         assertThat(request.getCookies().length, is(0));
         assertThat(request.getHeaders().keySet().size(), is(0));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldNotConsumePipelinedRequestFollowingRequestWithoutHeaders() throws Exception {
+        InputStream in = new ByteArrayInputStream("GET /first HTTP/1.1\r\n\r\nGET /second HTTP/1.1\r\n\r\n".getBytes());
+
+        assertThat(factory.createFromSocket(socket, in).getRequestURI(), is("/first"));
+        assertThat(factory.createFromSocket(socket, in).getRequestURI(), is("/second"));
+    }
+
+    @Test
+    public void shouldLeaveBodyUnreadForTheConsumer() throws Exception {
+        headers.setHeader(Headers.HEADER_CONTENT_LENGTH, "5");
+        headers.setHeader(Headers.HEADER_CONTENT_TYPE, "application/json");
+        InputStream in = new BufferedInputStream(new ByteArrayInputStream(
+                "POST /first HTTP/1.1\r\nContent-Length: 5\r\n\r\nhelloGET /second HTTP/1.1\r\n\r\n".getBytes()));
+
+        HttpRequestImpl request = factory.createFromSocket(socket, in);
+        byte[] body = new byte[10];
+        assertThat(request.getInputStream().read(body), is(5));
+        assertThat(new String(body, 0, 5), is("hello"));
+        assertThat(request.getInputStream().read(), is(-1));
+
+        headers.setHeader(Headers.HEADER_CONTENT_LENGTH, "0");
+        assertThat(factory.createFromSocket(socket, in).getRequestURI(), is("/second"));
+    }
+
+    @Test
+    public void shouldNotLimitBodyOfOtherContentType() throws Exception {
+        headers.setHeader(Headers.HEADER_CONTENT_LENGTH, "1000000000");
+        headers.setHeader(Headers.HEADER_CONTENT_TYPE, "application/octet-stream");
+        when(socket.getInputStream()).thenReturn(new ByteArrayInputStream("POST / HTTP/1.1\r\nA: b\r\n\r\n".getBytes()));
+
+        HttpRequestImpl request = factory.createFromSocket(socket);
+        assertThat(request.getContentLength(), is(1000000000));
+    }
+
+    @Test(expected = PayloadTooLargeProtocolException.class)
+    public void shouldLimitFormBody() throws Exception {
+        headers.setHeader(Headers.HEADER_CONTENT_LENGTH, "1000000000");
+        when(socket.getInputStream()).thenReturn(new ByteArrayInputStream("POST / HTTP/1.1\r\nA: b\r\n\r\n".getBytes()));
+
+        factory.createFromSocket(socket);
+    }
+
+    @Test
+    public void shouldDecodeChunkedBody() throws Exception {
+        headers.setHeader(Headers.HEADER_TRANSFER_ENCODING, "chunked");
+        headers.setHeader(Headers.HEADER_CONTENT_TYPE, "application/json");
+        InputStream in = new BufferedInputStream(new ByteArrayInputStream(
+                "POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n3\r\nabc\r\n0\r\n\r\n".getBytes()));
+
+        HttpRequestImpl request = factory.createFromSocket(socket, in);
+        byte[] body = new byte[10];
+        assertThat(request.getInputStream().read(body), is(3));
+        assertThat(new String(body, 0, 3), is("abc"));
+        assertThat(request.getInputStream().read(), is(-1));
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void shouldRejectUnsupportedTransferCoding() throws Exception {
+        headers.setHeader(Headers.HEADER_TRANSFER_ENCODING, "gzip");
+        when(socket.getInputStream()).thenReturn(new ByteArrayInputStream("POST / HTTP/1.1\r\nA: b\r\n\r\n".getBytes()));
+
+        factory.createFromSocket(socket);
+    }
+
+    @Test(expected = LengthRequiredException.class)
+    public void shouldRequireLengthOfPostBody() throws Exception {
+        when(socket.getInputStream()).thenReturn(new ByteArrayInputStream("POST / HTTP/1.1\r\nA: b\r\n\r\n".getBytes()));
+
+        factory.createFromSocket(socket);
+    }
+
+    @Test(expected = ExpectationFailedProtocolException.class)
+    public void shouldRejectUnsupportedExpectation() throws Exception {
+        headers.setHeader(Headers.HEADER_EXPECT, "something");
+        when(socket.getInputStream()).thenReturn(new ByteArrayInputStream("GET / HTTP/1.1\r\nA: b\r\n\r\n".getBytes()));
+
+        factory.createFromSocket(socket);
+    }
+
+    @Test
+    public void shouldAcceptContinueExpectation() throws Exception {
+        headers.setHeader(Headers.HEADER_EXPECT, "100-Continue");
+        when(socket.getInputStream()).thenReturn(new ByteArrayInputStream("GET / HTTP/1.1\r\nA: b\r\n\r\n".getBytes()));
+
+        assertThat(factory.createFromSocket(socket).isContinueExpected(), is(true));
+    }
+}
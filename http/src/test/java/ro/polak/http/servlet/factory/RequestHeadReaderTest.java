@@ -0,0 +1,139 @@
+package ro.polak.http.servlet.factory;
+
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import ro.polak.http.exception.protocol.MalformedOrUnsupportedMethodProtocolException;
+import ro.polak.http.exception.protocol.RequestHeaderFieldsTooLargeProtocolException;
+import ro.polak.http.exception.protocol.StatusLineTooLongProtocolException;
+import ro.polak.http.impl.ConnectionInputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class RequestHeadReaderTest {
+
+    private static final String[] METHODS = {"GET", "POST"};
+
+    private final RequestHeadReader reader = new RequestHeadReader(METHODS, 64, 128, 3);
+
+    @Test
+    public void shouldReadHeadAndLeaveFollowingBytes() throws IOException {
+        InputStream in = getBufferedStream("\r\nGET / HTTP/1.1\r\nHost: a\r\nAccept: b\r\n\r\nBODY");
+
+        assertThat(reader.readStatusLine(in), is("GET / HTTP/1.1"));
+        assertThat(reader.readHeaders(in), is("Host: a\r\nAccept: b"));
+        assertThat(readRemaining(in), is("BODY"));
+    }
+
+    @Test
+    public void shouldReadHeadOfStreamNotSupportingMark() throws IOException {
+        InputStream in = new FilterInputStream(
+                new ByteArrayInputStream("get / HTTP/1.1\nHost: a\n\nBODY".getBytes())) {
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+
+        assertThat(reader.readStatusLine(in), is("get / HTTP/1.1"));
+        assertThat(reader.readHeaders(in), is("Host: a"));
+        assertThat(readRemaining(in), is("BODY"));
+    }
+
+    @Test
+    public void shouldReadHeadOfOtherBufferedStream() throws IOException {
+        InputStream in = new BufferedInputStream(
+                new ByteArrayInputStream("GET / HTTP/1.1\r\nHost: a\r\n\r\nBODY".getBytes()), 4);
+
+        assertThat(reader.readStatusLine(in), is("GET / HTTP/1.1"));
+        assertThat(reader.readHeaders(in), is("Host: a"));
+        assertThat(readRemaining(in), is("BODY"));
+    }
+
+    @Test
+    public void shouldReuseHeadBufferOfConnection() throws IOException {
+        ConnectionInputStream in = new ConnectionInputStream(new ByteArrayInputStream(
+                ("GET / HTTP/1.1\r\nA: " + repeat('a', 100) + "\r\n\r\nGET /next HTTP/1.1\r\n\r\n").getBytes()));
+        byte[] headBuffer = in.getHeadBuffer();
+
+        assertThat(reader.readStatusLine(in), is("GET / HTTP/1.1"));
+        assertThat(reader.readHeaders(in), is("A: " + repeat('a', 100)));
+        assertThat(reader.readStatusLine(in), is("GET /next HTTP/1.1"));
+        assertThat(in.getHeadBuffer() == headBuffer, is(true));
+    }
+
+    @Test
+    public void shouldReadEmptyHeaders() throws IOException {
+        InputStream in = getBufferedStream("GET / HTTP/1.1\r\n\r\nGET /next HTTP/1.1\r\n\r\n");
+
+        assertThat(reader.readStatusLine(in), is("GET / HTTP/1.1"));
+        assertThat(reader.readHeaders(in), is(""));
+        assertThat(reader.readStatusLine(in), is("GET /next HTTP/1.1"));
+    }
+
+    @Test
+    public void shouldNotCountFoldedLinesAsHeaderFields() throws IOException {
+        InputStream in = getBufferedStream("A: 1\r\n 2\r\n 3\r\nB: 1\r\nC: 1\r\n\r\n");
+
+        assertThat(reader.readHeaders(in), is("A: 1\r\n 2\r\n 3\r\nB: 1\r\nC: 1"));
+    }
+
+    @Test(expected = EOFException.class)
+    public void shouldThrowEOFExceptionOnEmptyStream() throws IOException {
+        reader.readStatusLine(getBufferedStream("\r\n"));
+    }
+
+    @Test(expected = MalformedOrUnsupportedMethodProtocolException.class)
+    public void shouldThrowExceptionOnUnsupportedMethod() throws IOException {
+        reader.readStatusLine(getBufferedStream("PUT / HTTP/1.1\r\n"));
+    }
+
+    @Test(expected = MalformedOrUnsupportedMethodProtocolException.class)
+    public void shouldThrowExceptionOnTooLongMethod() throws IOException {
+        reader.readStatusLine(getBufferedStream("GETGETGET / HTTP/1.1\r\n"));
+    }
+
+    @Test(expected = StatusLineTooLongProtocolException.class)
+    public void shouldThrowExceptionOnTooLongStatusLine() throws IOException {
+        reader.readStatusLine(getBufferedStream("GET /" + repeat('a', 64) + " HTTP/1.1\r\n"));
+    }
+
+    @Test(expected = RequestHeaderFieldsTooLargeProtocolException.class)
+    public void shouldThrowExceptionOnTooManyHeaderFields() throws IOException {
+        reader.readHeaders(getBufferedStream("A: 1\r\nB: 1\r\nC: 1\r\nD: 1\r\n\r\n"));
+    }
+
+    @Test(expected = RequestHeaderFieldsTooLargeProtocolException.class)
+    public void shouldThrowExceptionOnTooLargeHeaderFields() throws IOException {
+        reader.readHeaders(getBufferedStream("A: " + repeat('a', 128) + "\r\n\r\n"));
+    }
+
+    private InputStream getBufferedStream(String data) {
+        // Small buffer forces the head to span multiple buffer refills
+        return new ConnectionInputStream(new ByteArrayInputStream(data.getBytes()), 4);
+    }
+
+    private String readRemaining(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            sb.append((char) b);
+        }
+        return sb.toString();
+    }
+
+    private String repeat(char c, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
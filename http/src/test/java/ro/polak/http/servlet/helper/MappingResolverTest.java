@@ -0,0 +1,112 @@
+package ro.polak.http.servlet.helper;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import ro.polak.http.configuration.FilterMapping;
+import ro.polak.http.configuration.ServletMapping;
+import ro.polak.http.configuration.impl.FilterMappingImpl;
+import ro.polak.http.configuration.impl.ServletMappingImpl;
+import ro.polak.http.servlet.Filter;
+import ro.polak.http.servlet.loader.SampleServlet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MappingResolverTest {
+
+    private static final List<String> PATTERNS = Arrays.asList("^/Index$", "^/secured/.*$", "^/(?:Login|Logout)",
+            "^/$", "^/secured/Admin$", "^/sec.*$", "^/Index$", "^.*$");
+
+    private static final List<String> PATHS = Arrays.asList("", "/", "/Index", "/Index/", "/secured/",
+            "/secured/Admin", "/secured/a\nb", "/sec", "/Login", "/Logout", "/other", "/\n");
+
+    @Test
+    public void shouldResolveFirstMatchingServletMapping() {
+        List<ServletMapping> servletMappings = new ArrayList<>();
+        for (String pattern : PATTERNS) {
+            servletMappings.add(new ServletMappingImpl(Pattern.compile(pattern), SampleServlet.class));
+        }
+        MappingResolver mappingResolver = new MappingResolver(servletMappings,
+                Collections.<FilterMapping>emptyList());
+
+        for (String path : PATHS) {
+            ServletMapping expected = null;
+            for (ServletMapping servletMapping : servletMappings) {
+                if (servletMapping.getUrlPattern().matcher(path).matches()) {
+                    expected = servletMapping;
+                    break;
+                }
+            }
+            assertThat(path, mappingResolver.getServletMapping(path), is(expected));
+        }
+    }
+
+    @Test
+    public void shouldResolveAllMatchingFilterMappingsInOrder() {
+        List<FilterMapping> filterMappings = new ArrayList<>();
+        for (String pattern : PATTERNS) {
+            filterMappings.add(new FilterMappingImpl(Pattern.compile(pattern), Pattern.compile("^/secured/Admin$"),
+                    Filter.class));
+        }
+        filterMappings.add(new FilterMappingImpl(Pattern.compile("^/secured/.*$"), null, Filter.class));
+        MappingResolver mappingResolver = new MappingResolver(Collections.<ServletMapping>emptyList(),
+                filterMappings);
+
+        for (String path : PATHS) {
+            List<FilterMapping> expected = new ArrayList<>();
+            for (FilterMapping filterMapping : filterMappings) {
+                if (filterMapping.getUrlPattern().matcher(path).matches()
+                        && (filterMapping.getUrlExcludePattern() == null
+                        || !filterMapping.getUrlExcludePattern().matcher(path).matches())) {
+                    expected.add(filterMapping);
+                }
+            }
+            assertThat(path, mappingResolver.getFilterMappings(path), is(expected));
+        }
+    }
+
+    @Test
+    public void shouldReturnNoMappingsWhenNothingMatches() {
+        MappingResolver mappingResolver = new MappingResolver(
+                Collections.<ServletMapping>singletonList(
+                        new ServletMappingImpl(Pattern.compile("^/Index$"), SampleServlet.class)),
+                Collections.<FilterMapping>singletonList(
+                        new FilterMappingImpl(Pattern.compile("^/secured/.*$"), null, Filter.class)));
+
+        assertThat(mappingResolver.getServletMapping("/Other"), is(nullValue()));
+        assertThat(mappingResolver.getServletMapping("/Other"), is(nullValue()));
+        assertThat(mappingResolver.getFilterMappings("/Other"), is(empty()));
+    }
+
+    @Test
+    public void shouldAnalysePatternsOnce() {
+        ServletMapping servletMapping = spy(new ServletMappingImpl(Pattern.compile("^/[A-Z].*$"), SampleServlet.class));
+        FilterMapping filterMapping = mock(FilterMapping.class);
+        when(filterMapping.getUrlPattern()).thenReturn(Pattern.compile("^/[A-Z].*$"));
+        MappingResolver mappingResolver = new MappingResolver(Collections.singletonList(servletMapping),
+                Collections.singletonList(filterMapping), 1);
+
+        assertThat(mappingResolver.getServletMapping("/Index"), is(sameInstance(servletMapping)));
+        assertThat(mappingResolver.getServletMapping("/Index"), is(sameInstance(servletMapping)));
+        assertThat(mappingResolver.getFilterMappings("/Index"), contains(filterMapping));
+        assertThat(mappingResolver.getFilterMappings("/Index"), contains(filterMapping));
+
+        verify(servletMapping, times(1)).getUrlPattern();
+        verify(filterMapping, times(1)).getUrlPattern();
+    }
+}
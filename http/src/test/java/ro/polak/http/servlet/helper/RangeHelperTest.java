@@ -84,4 +84,66 @@ public class RangeHelperTest {
     public void shouldNotBeSatisfiableWhenFirstElementIsFine() {
         assertThat(rangeHelper.isSatisfiable(Arrays.asList(new Range(0, 0), new Range(-1, 0)), 5), is(false));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldComputeTotalLengthAboveIntegerRange() {
+        List<Range> ranges = new ArrayList<>();
+        ranges.add(new Range(0, 3000000000L));
+        ranges.add(new Range(4000000000L, 4000000001L));
+        assertThat(rangeHelper.getTotalLength(ranges), is(3000000003L));
+    }
+
+    @Test
+    public void shouldResolveOpenAndSuffixRanges() {
+        List<Range> ranges = rangeHelper.normalize(Collections.singletonList(new Range(10, Range.UNSPECIFIED)), 100);
+        assertThat(ranges.size(), is(1));
+        assertThat(ranges.get(0).getFrom(), is(10L));
+        assertThat(ranges.get(0).getTo(), is(99L));
+
+        ranges = rangeHelper.normalize(Collections.singletonList(new Range(Range.UNSPECIFIED, 30)), 100);
+        assertThat(ranges.get(0).getFrom(), is(70L));
+        assertThat(ranges.get(0).getTo(), is(99L));
+
+        ranges = rangeHelper.normalize(Collections.singletonList(new Range(Range.UNSPECIFIED, 300)), 100);
+        assertThat(ranges.get(0).getFrom(), is(0L));
+        assertThat(ranges.get(0).getTo(), is(99L));
+    }
+
+    @Test
+    public void shouldClampRangesExceedingStreamLength() {
+        List<Range> ranges = rangeHelper.normalize(Collections.singletonList(new Range(90, 500)), 100);
+        assertThat(ranges.size(), is(1));
+        assertThat(ranges.get(0).getFrom(), is(90L));
+        assertThat(ranges.get(0).getTo(), is(99L));
+    }
+
+    @Test
+    public void shouldDropUnsatisfiableRanges() {
+        List<Range> ranges = rangeHelper.normalize(Arrays.asList(new Range(100, 200), new Range(5, 6),
+                new Range(Range.UNSPECIFIED, 0), new Range(10, 2)), 100);
+        assertThat(ranges.size(), is(1));
+        assertThat(ranges.get(0).getFrom(), is(5L));
+        assertThat(ranges.get(0).getTo(), is(6L));
+
+        assertThat(rangeHelper.normalize(Collections.singletonList(new Range(Range.UNSPECIFIED, 10)), 0).isEmpty(),
+                is(true));
+    }
+
+    @Test
+    public void shouldTellSyntacticallyInvalidRanges() {
+        assertThat(rangeHelper.isSyntacticallyValid(Arrays.asList(new Range(0, 0), new Range(5, Range.UNSPECIFIED),
+                new Range(Range.UNSPECIFIED, 5), new Range(200, 300))), is(true));
+        assertThat(rangeHelper.isSyntacticallyValid(Arrays.asList(new Range(0, 10), new Range(5, 1))), is(false));
+    }
+
+    @Test
+    public void shouldSortAndMergeOverlappingAndAdjacentRanges() {
+        List<Range> ranges = rangeHelper.normalize(Arrays.asList(new Range(50, 60), new Range(0, 10),
+                new Range(5, 20), new Range(21, 30), new Range(55, 55), new Range(0, 10)), 100);
+        assertThat(ranges.size(), is(2));
+        assertThat(ranges.get(0).getFrom(), is(0L));
+        assertThat(ranges.get(0).getTo(), is(30L));
+        assertThat(ranges.get(1).getFrom(), is(50L));
+        assertThat(ranges.get(1).getTo(), is(60L));
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.Test;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.regex.Pattern;
 
@@ -98,6 +99,25 @@ public class ServletContextHelperTest {
         assertThat(servletContextHelper.getFilterMappingsForPath(servletContext, "/context/secured/abc/excluded"), hasSize(1));
     }
 
+    @Test
+    public void shouldResolveCompiledMappings() {
+        ServletMapping servletMapping1 = new ServletMappingImpl(Pattern.compile("^/(?:Login|Logout)$"), SampleServlet.class);
+        ServletMapping servletMapping2 = new ServletMappingImpl(Pattern.compile("^/somepath.*$"), SampleServlet.class);
+        List<FilterMapping> filterMappings = new ArrayList<>();
+        filterMappings.add(new FilterMappingImpl(Pattern.compile("^/somepath/.*$"), null, FakeFilter.class));
+        filterMappings.add(new FilterMappingImpl(Pattern.compile("^.*$"), Pattern.compile("^/somepath/excluded$"), FakeFilter.class));
+        ServletContextImpl compiledServletContext = new ServletContextImpl("/context",
+                Arrays.asList(servletMapping1, servletMapping2), filterMappings,
+                Collections.<String, Object>emptyMap(), null, null);
+        compiledServletContext.compileMappings();
+
+        assertThat(servletContextHelper.getResolvedServletMapping(compiledServletContext, "/context/Login"), is(servletMapping1));
+        assertThat(servletContextHelper.getResolvedServletMapping(compiledServletContext, "/context/somepath/x"), is(servletMapping2));
+        assertThat(servletContextHelper.getResolvedServletMapping(compiledServletContext, "/context/other"), is(nullValue()));
+        assertThat(servletContextHelper.getFilterMappingsForPath(compiledServletContext, "/context/somepath/x"), hasSize(2));
+        assertThat(servletContextHelper.getFilterMappingsForPath(compiledServletContext, "/context/somepath/excluded"), hasSize(1));
+    }
+
     public static class FakeFilter implements Filter {
 
         @Override
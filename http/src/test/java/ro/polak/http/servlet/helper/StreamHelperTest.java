@@ -4,16 +4,26 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.internal.matchers.ArrayEquals;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
 import ro.polak.http.RangePartHeader;
+import ro.polak.http.impl.ConnectionOutputStream;
 import ro.polak.http.protocol.serializer.impl.RangePartHeaderSerializer;
 import ro.polak.http.servlet.Range;
 import ro.polak.http.servlet.helper.RangeHelper;
@@ -84,6 +94,131 @@ public class StreamHelperTest {
         assertThat(out, new ArrayEquals(inputBytesSliced));
     }
 
+    @Test
+    public void shouldServeRangesFarBeyondTheBufferedStreamBuffer() throws IOException {
+        byte[] largeInputBytes = new byte[1024 * 64];
+        new Random().nextBytes(largeInputBytes);
+        List<Range> ranges = new ArrayList<>();
+        ranges.add(new Range(20000, 20100));
+        ranges.add(new Range(50000, 60000));
+
+        streamHelper.serveMultiRangeStream(new BufferedInputStream(new ByteArrayInputStream(largeInputBytes), 1024),
+                outputStream, ranges.get(1));
+        assertThat(outputStream.toByteArray(), new ArrayEquals(
+                sliceHelper.getSliceForRanges(largeInputBytes, Collections.singletonList(ranges.get(1)))));
+
+        outputStream.reset();
+        streamHelper.serveMultiRangeStream(new BufferedInputStream(new ByteArrayInputStream(largeInputBytes), 1024),
+                outputStream, ranges, BOUNDARY, CONTENT_TYPE, TOTAL_LENGTH);
+        assertThat(outputStream.toByteArray().length, is(equalTo((int) (rangeHelper.getTotalLength(ranges)
+                + rangePartHeaderSerializer.getPartHeadersLength(ranges, BOUNDARY, CONTENT_TYPE, TOTAL_LENGTH)))));
+    }
+
+    @Test
+    public void shouldServeFileRangesUsingPositionalReads() throws IOException {
+        List<Range> ranges = new ArrayList<>();
+        ranges.add(new Range(3000, 5000));
+        ranges.add(new Range(10, 20));
+
+        byte[] out = serveFileRanges(ranges, outputStream);
+
+        assertThat(out, new ArrayEquals(sliceHelper.getSliceForRanges(inputBytes, ranges)));
+    }
+
+    @Test
+    public void shouldServeFileRangesTransferringToConnectionChannel() throws IOException {
+        List<Range> ranges = new ArrayList<>();
+        ranges.add(new Range(0, 550));
+        ranges.add(new Range(1024, 5119));
+
+        ConnectionOutputStream connectionOutputStream = new ConnectionOutputStream(outputStream, 8192,
+                Channels.newChannel(outputStream));
+        serveFileRanges(ranges, connectionOutputStream);
+        connectionOutputStream.flushConnection();
+        byte[] out = outputStream.toByteArray();
+
+        assertThat(out, new ArrayEquals(sliceHelper.getSliceForRanges(inputBytes, ranges)));
+
+        outputStream.reset();
+        File file = writeTempFile();
+        try (FileInputStream fileInputStream = new FileInputStream(file)) {
+            streamHelper.serveFileChannel(fileInputStream.getChannel(), connectionOutputStream, new Range(100, 5119));
+        } finally {
+            file.delete();
+        }
+
+        assertThat(outputStream.toByteArray(), new ArrayEquals(
+                sliceHelper.getSliceForRanges(inputBytes, Collections.singletonList(new Range(100, 5119)))));
+    }
+
+    @Test
+    public void shouldServeWholeFile() throws IOException {
+        File file = writeTempFile();
+        try (FileInputStream fileInputStream = new FileInputStream(file)) {
+            streamHelper.serveFileChannel(fileInputStream.getChannel(), outputStream, inputBytes.length);
+            assertThat(outputStream.toByteArray(), new ArrayEquals(inputBytes));
+
+            outputStream.reset();
+            ConnectionOutputStream connectionOutputStream = new ConnectionOutputStream(outputStream, 8192,
+                    Channels.newChannel(outputStream));
+            streamHelper.serveFileChannel(fileInputStream.getChannel(), connectionOutputStream, inputBytes.length);
+            assertThat(outputStream.toByteArray(), new ArrayEquals(inputBytes));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void shouldServeBufferRanges() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(inputBytes).asReadOnlyBuffer();
+        List<Range> ranges = new ArrayList<>();
+        ranges.add(new Range(0, 550));
+        ranges.add(new Range(1024, 5119));
+
+        streamHelper.serveBuffer(buffer, outputStream, ranges, BOUNDARY, CONTENT_TYPE, TOTAL_LENGTH);
+        assertThat(outputStream.toByteArray(), new ArrayEquals(sliceHelper.getSliceForRanges(inputBytes, ranges)));
+
+        outputStream.reset();
+        ConnectionOutputStream connectionOutputStream = new ConnectionOutputStream(outputStream, 8192,
+                Channels.newChannel(outputStream));
+        streamHelper.serveBuffer(buffer, connectionOutputStream, new Range(100, 5119));
+        streamHelper.serveBuffer(buffer, connectionOutputStream);
+        connectionOutputStream.flushConnection();
+
+        byte[] expected = new byte[5020 + inputBytes.length];
+        System.arraycopy(inputBytes, 100, expected, 0, 5020);
+        System.arraycopy(inputBytes, 0, expected, 5020, inputBytes.length);
+        assertThat(outputStream.toByteArray(), new ArrayEquals(expected));
+        assertThat(buffer.position(), is(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldThrowExceptionWhenFileEndsBeforeRange() throws IOException {
+        File file = writeTempFile();
+        try (FileInputStream fileInputStream = new FileInputStream(file)) {
+            streamHelper.serveFileChannel(fileInputStream.getChannel(), outputStream, new Range(5000, 6000));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private byte[] serveFileRanges(List<Range> ranges, OutputStream out) throws IOException {
+        File file = writeTempFile();
+        try (FileInputStream fileInputStream = new FileInputStream(file)) {
+            FileChannel fileChannel = fileInputStream.getChannel();
+            streamHelper.serveFileChannel(fileChannel, out, ranges, BOUNDARY, CONTENT_TYPE, TOTAL_LENGTH);
+        } finally {
+            file.delete();
+        }
+        return outputStream.toByteArray();
+    }
+
+    private File writeTempFile() throws IOException {
+        File file = File.createTempFile("stream-helper", ".bin");
+        Files.write(file.toPath(), inputBytes);
+        return file;
+    }
+
     @Test
     public void shouldServeTheSameBytesForMultipleRangeSmallerThanTheBuffer() throws IOException {
         List<Range> ranges = new ArrayList<>();
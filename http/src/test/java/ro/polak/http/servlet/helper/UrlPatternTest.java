@@ -0,0 +1,68 @@
+package ro.polak.http.servlet.helper;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class UrlPatternTest {
+
+    private static final String[] PATHS = {"", "/", "/Index", "/Index/", "/index", "/Indexes", "/secured/",
+            "/secured/abc", "/secured/a\nb", "/secured\n", "/sms/inbox", "/Login", "/a.b", "/axb"};
+
+    @Test
+    public void shouldRecognizeLiterals() {
+        assertType("^/Index$", UrlPattern.Type.LITERAL, "/Index");
+        assertType("^/sms/inbox", UrlPattern.Type.LITERAL, "/sms/inbox");
+        assertType("/Index", UrlPattern.Type.LITERAL, "/Index");
+        assertType("^/$", UrlPattern.Type.LITERAL, "/");
+        assertType("^$", UrlPattern.Type.LITERAL, "");
+    }
+
+    @Test
+    public void shouldRecognizePrefixes() {
+        assertType("^/secured/.*$", UrlPattern.Type.PREFIX, "/secured/");
+        assertType("^/Index.*", UrlPattern.Type.PREFIX, "/Index");
+        assertType("^.*$", UrlPattern.Type.PREFIX, "");
+    }
+
+    @Test
+    public void shouldRecognizeRegexes() {
+        for (String regex : Arrays.asList("^/(?:Login|Logout)", "^/a.b$", "^/a\\.b$", "^/secured/\\.*$",
+                "^/Index\\$", "^/Index/?$", "^/[a-z]+$", "^/a+.*$")) {
+            UrlPattern urlPattern = UrlPattern.compile(Pattern.compile(regex));
+            assertThat(regex, urlPattern.getType(), is(UrlPattern.Type.REGEX));
+            assertThat(urlPattern.getValue(), is(nullValue()));
+        }
+    }
+
+    @Test
+    public void shouldTreatPatternsWithFlagsAsRegexes() {
+        UrlPattern urlPattern = UrlPattern.compile(Pattern.compile("^/Index$", Pattern.CASE_INSENSITIVE));
+
+        assertThat(urlPattern.getType(), is(UrlPattern.Type.REGEX));
+        assertThat(urlPattern.matches("/index"), is(true));
+    }
+
+    @Test
+    public void shouldMatchLikeTheRegex() {
+        for (String regex : Arrays.asList("^/Index$", "^/sms/inbox", "^/$", "^/secured/.*$", "^/Index.*",
+                "^.*$", "^/(?:Login|Logout)", "^/a.b$", "^/a\\.b$")) {
+            Pattern pattern = Pattern.compile(regex);
+            UrlPattern urlPattern = UrlPattern.compile(pattern);
+            for (String path : PATHS) {
+                assertThat(regex + " " + path, urlPattern.matches(path), is(pattern.matcher(path).matches()));
+            }
+        }
+    }
+
+    private void assertType(String regex, UrlPattern.Type type, String value) {
+        UrlPattern urlPattern = UrlPattern.compile(Pattern.compile(regex));
+        assertThat(regex, urlPattern.getType(), is(type));
+        assertThat(regex, urlPattern.getValue(), is(value));
+    }
+}
@@ -4,8 +4,11 @@ import org.hamcrest.Matchers;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.SocketTimeoutException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -15,7 +18,12 @@ import java.util.Locale;
 import java.util.Map;
 
 import ro.polak.http.Headers;
+import ro.polak.http.MultipartRequestHandler;
 import ro.polak.http.RequestStatus;
+import ro.polak.http.exception.protocol.ProtocolException;
+import ro.polak.http.protocol.parser.Parser;
+import ro.polak.http.protocol.parser.impl.CookieParser;
+import ro.polak.http.protocol.parser.impl.QueryStringParser;
 import ro.polak.http.servlet.Cookie;
 import ro.polak.http.servlet.UploadedFile;
 
@@ -28,7 +36,12 @@ import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
 import static org.hamcrest.collection.IsMapContaining.hasKey;
 import static org.hamcrest.core.IsCollectionContaining.hasItems;
 import static org.hamcrest.core.IsNot.not;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class HttpRequestImplTest {
@@ -182,6 +195,17 @@ public class HttpRequestImplTest {
         httpRequestImpl.setHeaders(headers);
 
         assertThat(httpRequestImpl.getContentLength(), is(1234));
+        assertThat(httpRequestImpl.getContentLengthLong(), is(1234L));
+    }
+
+    @Test
+    public void shouldReturnLongContentLength() {
+        Headers headers = new Headers();
+        headers.setHeader(Headers.HEADER_CONTENT_LENGTH, "3000000000");
+        httpRequestImpl.setHeaders(headers);
+
+        assertThat(httpRequestImpl.getContentLength(), is(-1));
+        assertThat(httpRequestImpl.getContentLengthLong(), is(3000000000L));
     }
 
     @Test
@@ -257,4 +281,123 @@ public class HttpRequestImplTest {
         httpRequestImpl.setHeaders(headers);
         assertThat(httpRequestImpl.getRequestURL().toString(), is("http://example.com:8080/someuri"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldParseQueryStringAndCookiesOnlyOnFirstAccess() throws Exception {
+        Parser<Map<String, String>> queryStringParser = spy(new QueryStringParser());
+        Parser<Map<String, Cookie>> cookieParser = spy(new CookieParser());
+        headers.setHeader(Headers.HEADER_COOKIE, "name=value");
+
+        HttpRequestImpl request = new HttpRequestImpl();
+        request.setStatus(requestStatus);
+        request.setHeaders(headers);
+        request.setQueryStringParser(queryStringParser);
+        request.setCookieParser(cookieParser);
+
+        verify(queryStringParser, never()).parse(anyString());
+        verify(cookieParser, never()).parse(anyString());
+
+        assertThat(request.getParameter("a"), is("1"));
+        assertThat(request.getParameter("b"), is("2"));
+        assertThat(request.getCookie("name").getValue(), is("value"));
+        assertThat(request.getCookies().length, is(1));
+
+        verify(queryStringParser, times(1)).parse(anyString());
+        verify(cookieParser, times(1)).parse(anyString());
+    }
+
+    @Test
+    public void shouldParsePostBodyOnFirstAccess() {
+        requestStatus.setMethod(HttpRequestImpl.METHOD_POST);
+        HttpRequestImpl request = new HttpRequestImpl();
+        request.setStatus(requestStatus);
+        request.setHeaders(headers);
+        request.setQueryStringParser(new QueryStringParser());
+        request.setInputStream(new ByteArrayInputStream("x=1&y=%C5%BC".getBytes()));
+
+        assertThat(request.getPostParameter("x"), is("1"));
+        assertThat(request.getPostParameter("y"), is("\u017C"));
+        assertThat(((Map<String, String>) request.getParameterMap()).size(), is(2));
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void shouldNotParseIncompletePostBody() {
+        requestStatus.setMethod(HttpRequestImpl.METHOD_POST);
+        HttpRequestImpl request = new HttpRequestImpl();
+        request.setStatus(requestStatus);
+        request.setHeaders(headers);
+        request.setQueryStringParser(new QueryStringParser());
+        request.setInputStream(new SequenceInputStream(new ByteArrayInputStream("x=1&y=".getBytes()),
+                new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new SocketTimeoutException();
+                    }
+                }));
+
+        request.getPostParameter("x");
+    }
+
+    @Test
+    public void shouldNotDecodeBodyOfOtherContentType() {
+        requestStatus.setMethod(HttpRequestImpl.METHOD_POST);
+        headers.setHeader(Headers.HEADER_CONTENT_TYPE, "application/json");
+        HttpRequestImpl request = new HttpRequestImpl();
+        request.setStatus(requestStatus);
+        request.setHeaders(headers);
+        request.setQueryStringParser(new QueryStringParser());
+        request.setInputStream(new ByteArrayInputStream("x=1".getBytes()));
+
+        assertThat(request.isFormUrlEncoded(), is(false));
+        assertThat(request.getPostParameter("x"), is(nullValue()));
+    }
+
+    @Test
+    public void shouldHandleMultipartBodyOnFirstAccess() throws Exception {
+        MultipartRequestHandler multipartRequestHandler = mock(MultipartRequestHandler.class);
+        Map<String, String> post = new HashMap<>();
+        post.put("x", "1");
+        when(multipartRequestHandler.getPost()).thenReturn(post);
+        when(multipartRequestHandler.getUploadedFiles()).thenReturn(Collections.<UploadedFile>emptyList());
+        HttpRequestImpl request = new HttpRequestImpl();
+        request.setMultipart(true);
+        request.setMultipartRequestHandler(multipartRequestHandler);
+
+        assertThat(request.isMultipartBodyPending(), is(true));
+        verify(multipartRequestHandler, never()).handle();
+
+        assertThat(request.getPostParameter("x"), is("1"));
+        assertThat(request.getUploadedFiles(), hasSize(0));
+        assertThat(request.isMultipartBodyPending(), is(false));
+        verify(multipartRequestHandler, times(1)).handle();
+    }
+
+    @Test
+    public void shouldNotSpoolStreamedMultipartBody() throws Exception {
+        MultipartRequestHandler multipartRequestHandler = mock(MultipartRequestHandler.class);
+        HttpRequestImpl request = new HttpRequestImpl();
+        request.setMultipart(true);
+        request.setMultipartRequestHandler(multipartRequestHandler);
+
+        request.getPartIterator();
+
+        assertThat(request.getPostParameter("x"), is(nullValue()));
+        assertThat(request.getUploadedFiles(), hasSize(0));
+        verify(multipartRequestHandler, never()).handle();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotStreamPartsOfNonMultipartRequest() {
+        new HttpRequestImpl().getPartIterator();
+    }
+
+    @Test
+    public void shouldReturnEmptyParametersWithoutParser() {
+        HttpRequestImpl request = new HttpRequestImpl();
+        request.setStatus(requestStatus);
+        request.setHeaders(new Headers());
+
+        assertThat(request.getParameter("a"), is(nullValue()));
+        assertThat(request.getCookies(), is(Matchers.<Cookie>emptyArray()));
+    }
+}
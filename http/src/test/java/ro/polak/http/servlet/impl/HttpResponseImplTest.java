@@ -3,14 +3,17 @@ package ro.polak.http.servlet.impl;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
 import ro.polak.http.Headers;
+import ro.polak.http.impl.ConnectionOutputStream;
 import ro.polak.http.protocol.serializer.Serializer;
 import ro.polak.http.servlet.helper.StreamHelper;
 
 import static junit.framework.TestCase.fail;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
@@ -36,6 +39,47 @@ public class HttpResponseImplTest {
         httpResponseImpl.flushHeaders();
     }
 
+    @Test
+    public void shouldAddDateHeaderWhenFlushingHeaders() throws IOException {
+        httpResponseImpl.flushHeaders();
+
+        assertThat(httpResponseImpl.getHeaders().getHeader(Headers.HEADER_DATE).endsWith(" GMT"), is(true));
+    }
+
+    @Test
+    public void shouldNotOverwriteDateHeader() throws IOException {
+        httpResponseImpl.getHeaders().setHeader(Headers.HEADER_DATE, "Sun, 06 Nov 1994 08:49:37 GMT");
+        httpResponseImpl.flushHeaders();
+
+        assertThat(httpResponseImpl.getHeaders().getHeader(Headers.HEADER_DATE), is("Sun, 06 Nov 1994 08:49:37 GMT"));
+    }
+
+    @Test
+    public void shouldSetConnectionBufferSizeUntilCommitted() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConnectionOutputStream connectionOutputStream = new ConnectionOutputStream(out, 512);
+        HttpResponseImpl response = new HttpResponseImpl(mock(Serializer.class),
+                mock(Serializer.class), mock(StreamHelper.class), connectionOutputStream);
+        assertThat(response.getBufferSize(), is(512));
+
+        response.setBufferSize(4096);
+        assertThat(connectionOutputStream.getBufferSize(), is(4096));
+
+        response.getOutputStream().write("body".getBytes());
+        assertThat(out.size(), is(0));
+
+        response.flushBuffer();
+        assertThat(response.isCommitted(), is(true));
+        assertThat(out.toString().endsWith("body"), is(true));
+
+        try {
+            response.setBufferSize(8192);
+            fail("Buffer size should not be changed once committed");
+        } catch (IllegalStateException e) {
+            assertThat(connectionOutputStream.getBufferSize(), is(4096));
+        }
+    }
+
     @Test
     public void shouldRedirectProperly() throws IOException {
         String url = "/SomeUrl";
@@ -53,8 +97,11 @@ public class HttpResponseImplTest {
     public void shouldSetHeadersProperly() {
         httpResponseImpl.setHeader("StringValue", "value");
         httpResponseImpl.setIntHeader("IntValue", 1);
+        httpResponseImpl.addHeader("MultiValue", "a");
+        httpResponseImpl.addHeader("MultiValue", "b");
 
         assertThat(httpResponseImpl.getHeaders().getHeader("StringValue"), is("value"));
         assertThat(httpResponseImpl.getHeaders().getHeader("IntValue"), is("1"));
+        assertThat(httpResponseImpl.getHeaders().getHeaderValues("MultiValue"), contains("a", "b"));
     }
 }
\ No newline at end of file
@@ -4,10 +4,16 @@ import org.hamcrest.CoreMatchers;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static ro.polak.http.ExtraMarchers.utilityClass;
 
 public class DateUtilitiesTest {
@@ -21,4 +27,64 @@ public class DateUtilitiesTest {
     public void shouldFormatDate() {
         assertThat(DateUtilities.dateFormat(new Date(1520881821937L)), is("Mon, 12 Mar 2018 19:10:21 GMT"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldFormatDateWithTwoDigitDay() {
+        assertThat(DateUtilities.dateFormat(784111777000L), is("Sun, 06 Nov 1994 08:49:37 GMT"));
+        assertThat(DateUtilities.dateFormat(0), is("Thu, 01 Jan 1970 00:00:00 GMT"));
+        assertThat(DateUtilities.dateFormat(-1), is("Wed, 31 Dec 1969 23:59:59 GMT"));
+        assertThat(DateUtilities.dateFormat(951782400000L), is("Tue, 29 Feb 2000 00:00:00 GMT"));
+    }
+
+    @Test
+    public void shouldFormatLikeSimpleDateFormat() {
+        SimpleDateFormat simpleDateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss z", Locale.US);
+        simpleDateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            long millis = (long) (random.nextDouble() * 4102444800000L);
+            assertThat(DateUtilities.dateFormat(millis), is(simpleDateFormat.format(new Date(millis))));
+            assertThat(DateUtilities.parseDate(DateUtilities.dateFormat(millis)), is(millis / 1000 * 1000));
+        }
+    }
+
+    @Test
+    public void shouldParseAllHttpDateFormats() {
+        assertThat(DateUtilities.parseDate("Sun, 06 Nov 1994 08:49:37 GMT"), is(784111777000L));
+        assertThat(DateUtilities.parseDate("Sun, 6 Nov 1994 08:49:37 GMT"), is(784111777000L));
+        assertThat(DateUtilities.parseDate("Sunday, 06-Nov-94 08:49:37 GMT"), is(784111777000L));
+        assertThat(DateUtilities.parseDate("Sun Nov  6 08:49:37 1994"), is(784111777000L));
+    }
+
+    @Test
+    public void shouldNotParseMalformedDates() {
+        assertThat(DateUtilities.parseDate(null), is(-1L));
+        assertThat(DateUtilities.parseDate(""), is(-1L));
+        assertThat(DateUtilities.parseDate("Malformed Value"), is(-1L));
+        assertThat(DateUtilities.parseDate("Sun, 06 Nov 1994 08:49:37 CET"), is(-1L));
+        assertThat(DateUtilities.parseDate("Sun, 06 Xyz 1994 08:49:37 GMT"), is(-1L));
+        assertThat(DateUtilities.parseDate("Sun, 06 Nov 1994 25:49:37 GMT"), is(-1L));
+        assertThat(DateUtilities.parseDate("Sun, 06 Nov 1994 08:49:37 GMT trailing"), is(-1L));
+    }
+
+    @Test
+    public void shouldReuseFormattedCurrentDate() {
+        DateProvider dateProvider = mock(DateProvider.class);
+        when(dateProvider.now()).thenReturn(new Date(784111777000L), new Date(784111777999L),
+                new Date(784111778000L));
+
+        String first = DateUtilities.currentDateFormat(dateProvider);
+        String second = DateUtilities.currentDateFormat(dateProvider);
+        String third = DateUtilities.currentDateFormat(dateProvider);
+
+        assertThat(first, is("Sun, 06 Nov 1994 08:49:37 GMT"));
+        assertThat(first == second, is(true));
+        assertThat(third, is("Sun, 06 Nov 1994 08:49:38 GMT"));
+    }
+
+    @Test
+    public void shouldFormatCurrentDate() {
+        long now = System.currentTimeMillis();
+        assertThat(Math.abs(DateUtilities.parseDate(DateUtilities.currentDateFormat()) - now) < 2000, is(true));
+    }
+}
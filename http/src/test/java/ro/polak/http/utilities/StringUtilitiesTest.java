@@ -4,6 +4,7 @@ import org.junit.Test;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static ro.polak.http.ExtraMarchers.utilityClass;
 
@@ -32,4 +33,40 @@ public class StringUtilitiesTest {
         assertThat(StringUtilities.isEmpty(" "), is(false));
         assertThat(StringUtilities.isEmpty("a"), is(false));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldReturnSameInstanceWhenThereIsNothingToDecode() {
+        String text = "nothing_to-decode.txt";
+        assertThat(StringUtilities.urlDecode(text), is(sameInstance(text)));
+        String path = "/path/a+b";
+        assertThat(StringUtilities.percentDecode(path), is(sameInstance(path)));
+    }
+
+    @Test
+    public void shouldDecodeLikeUrlDecoder() throws Exception {
+        String[] inputs = {"a+b%20c", "%C5%BC%C3%B3%C5%82w", "%e2%82%ac", "%F0%9F%98%80x", "x=%3D&y", "%25", "%2B+"};
+        for (String input : inputs) {
+            assertThat(StringUtilities.urlDecode(input), is(java.net.URLDecoder.decode(input, "UTF-8")));
+        }
+    }
+
+    @Test
+    public void shouldNotDecodePlusInPath() {
+        assertThat(StringUtilities.percentDecode("/a+b/c%20d"), is("/a+b/c d"));
+    }
+
+    @Test
+    public void shouldLeaveMalformedEscapesUndecoded() {
+        assertThat(StringUtilities.urlDecode("100%"), is("100%"));
+        assertThat(StringUtilities.urlDecode("%4"), is("%4"));
+        assertThat(StringUtilities.urlDecode("%zz%41"), is("%zzA"));
+    }
+
+    @Test
+    public void shouldReplaceInvalidUtf8Sequences() {
+        assertThat(StringUtilities.urlDecode("%C5x"), is("\uFFFDx"));
+        assertThat(StringUtilities.urlDecode("%FFa"), is("\uFFFDa"));
+        assertThat(StringUtilities.urlDecode("%C0%AF"), is("\uFFFD\uFFFD"));
+        assertThat(StringUtilities.urlDecode("%ED%A0%80"), is("\uFFFD"));
+    }
+}